@@ -104,6 +104,10 @@ sourceSets {
             compileClasspath = sourceSets.main.get().compileClasspath
         }
     }
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
 }
 
 val shade: Configuration by configurations.creating
@@ -115,6 +119,9 @@ configurations {
     testImplementation {
         extendsFrom(getByName("minecraft"))
     }
+    getByName("jmhImplementation") {
+        extendsFrom(implementation.get(), testImplementation.get())
+    }
 }
 
 repositories {
@@ -161,6 +168,9 @@ dependencies {
     testImplementation("org.spongepowered:launchwrappertestsuite:1.0-SNAPSHOT")
     compileOnly("io.github.opencubicchunks:cubicchunks-api:1.12.2-0.0-SNAPSHOT")
 
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+
     if (hasCubicChunksBuild) {
         testImplementation("io.github.opencubicchunks:cubicchunks-api:1.12.2-0.0-SNAPSHOT")
         runtimeOnly("io.github.opencubicchunks:cubicchunks:1.12.2-0.0-SNAPSHOT")
@@ -216,6 +226,20 @@ tasks {
         }
     }
 
+    // run with ./gradlew jmh -Pjmh.include=<regex> to select benchmarks
+    register<JavaExec>("jmh") {
+        group = "verification"
+        description = "Runs JMH benchmarks"
+        dependsOn("jmhClasses")
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        val resultFile = file("$buildDir/reports/jmh/results.json")
+        args(project.findProperty("jmh.include")?.toString() ?: ".*", "-rf", "json", "-rff", resultFile.absolutePath)
+        doFirst {
+            resultFile.parentFile.mkdirs()
+        }
+    }
+
     compileJava {
         options.isDeprecation = true
         options.compilerArgs.add("-Xlint:unchecked")
@@ -0,0 +1,83 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import io.github.opencubicchunks.cubicchunks.cubicgen.common.biome.CubicBiome;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeProvider;
+import net.minecraft.world.biome.BiomeProviderSingle;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Minimal environment for running world generation outside of the game. Vanilla and cubic biomes are registered, and
+ * the world is a mock that only provides the seed.
+ * <p>
+ * Mixins are not applied, so noise uses flow-noise gradient vectors instead of the ones copied from vanilla. Values
+ * are slightly different from the game, but they take the same time to compute.
+ */
+public class BenchmarkEnvironment {
+
+    public static final long SEED = 123456789L;
+
+    private static boolean isInit = false;
+
+    public static synchronized void init() {
+        if (isInit) {
+            return;
+        }
+        isInit = true;
+        Bootstrap.register();
+        CustomCubicMod.LOGGER = LogManager.getLogger(CustomCubicMod.MODID);
+        CubicBiome.init();
+        CubicBiome.postInit();
+    }
+
+    public static World createWorld() {
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorld.class));
+        when(world.getSeed()).thenReturn(SEED);
+        return world;
+    }
+
+    public static BiomeProvider createBiomeProvider() {
+        return new BiomeProviderSingle(Biomes.PLAINS);
+    }
+
+    /**
+     * Default preset with strongholds disabled, they need real world storage.
+     */
+    public static CustomGeneratorSettings createSettings() {
+        CustomGeneratorSettings settings = CustomGeneratorSettings.defaults();
+        settings.strongholds = false;
+        return settings;
+    }
+}
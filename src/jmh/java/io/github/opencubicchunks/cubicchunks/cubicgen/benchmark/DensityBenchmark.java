@@ -0,0 +1,107 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
+import net.minecraft.util.math.Vec3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Density function evaluation, using the density function of a CustomTerrainGenerator with the default preset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DensityBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private IBuilder perlin;
+    private IBuilder terrain;
+    private Vec3i latticeStep;
+    private int cubeX;
+
+    @Setup
+    public void setUp() {
+        BenchmarkEnvironment.init();
+        CustomGeneratorSettings conf = BenchmarkEnvironment.createSettings();
+
+        boolean compileDensityFunction = CustomCubicConfig.compileDensityFunction;
+        CustomCubicConfig.compileDensityFunction = compiled;
+        try {
+            CustomTerrainGenerator generator = new CustomTerrainGenerator(BenchmarkEnvironment.createWorld(),
+                    BenchmarkEnvironment.createBiomeProvider(), conf, BenchmarkEnvironment.SEED);
+            this.terrain = generator.getDensityBuilder();
+            this.latticeStep = generator.getLatticeStep();
+        } finally {
+            CustomCubicConfig.compileDensityFunction = compileDensityFunction;
+        }
+
+        perlin = NoiseSource.perlin()
+                .seed(BenchmarkEnvironment.SEED)
+                .normalizeTo(-1, 1)
+                .frequency(conf.lowNoiseFrequencyX, conf.lowNoiseFrequencyY, conf.lowNoiseFrequencyZ)
+                .octaves(conf.lowNoiseOctaves)
+                .create();
+    }
+
+    @Benchmark
+    public void forEachScaled(Blackhole bh) {
+        // move to a new cube each time, like generating a row of cubes
+        int x = cubeX++;
+        int pointsXZ = ICube.SIZE / latticeStep.getX();
+        int pointsY = ICube.SIZE / latticeStep.getY();
+        Vec3i start = new Vec3i(x * pointsXZ, 0, 0);
+        Vec3i end = new Vec3i(x * pointsXZ + pointsXZ, pointsY, pointsXZ);
+        terrain.forEachScaled(start, end, latticeStep, (bx, by, bz, dx, dy, dz, v) -> bh.consume(v));
+    }
+
+    @Benchmark
+    public double perlinSample() {
+        int x = cubeX++;
+        return perlin.get(x * 4, x & 255, x * 7);
+    }
+}
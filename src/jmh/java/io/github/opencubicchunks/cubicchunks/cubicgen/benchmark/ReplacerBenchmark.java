@@ -0,0 +1,105 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiomeBlockReplacer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerColumn;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces all blocks of a cube crossing the surface with each replacer type from the default preset, one column at a
+ * time like the generator does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacerBenchmark {
+
+    @Param({
+            "DensityRangeReplacerConfig",
+            "RandomYGradientReplacerConfig",
+            "MainSurfaceReplacerConfig",
+            "NoiseBasedSurfaceDecorationConfig",
+            "MesaSurfaceReplacerConfig",
+            "DepthBasedSurfaceReplacerConfig"
+    })
+    public String replacerConfig;
+
+    private IBiomeBlockReplacer replacer;
+    private final ReplacerColumn column = new ReplacerColumn();
+    private final IBlockState[] blocks = new IBlockState[ReplacerColumn.SIZE];
+    private int cubeX;
+
+    @Setup
+    public void setUp() {
+        BenchmarkEnvironment.init();
+        CustomGeneratorSettings conf = BenchmarkEnvironment.createSettings();
+        CustomGeneratorSettings.ReplacerConfig config = conf.replacers.stream()
+                .filter(c -> c.getClass().getSimpleName().equals(replacerConfig))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No " + replacerConfig + " in default preset"));
+        replacer = IBiomeBlockReplacer.create(BenchmarkEnvironment.SEED, config);
+        column.biome = Biomes.PLAINS;
+        column.minY = 56;
+        for (int i = 0; i < ReplacerColumn.SIZE; i++) {
+            column.density[i] = 64 - (column.minY + i);
+            column.dy[i] = -1;
+            blocks[i] = column.density[i] > 0 ? Blocks.STONE.getDefaultState() : Blocks.AIR.getDefaultState();
+        }
+    }
+
+    @Benchmark
+    public void replaceCube(Blackhole bh) {
+        int minX = (cubeX++) * 16;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                column.x = minX + x;
+                column.z = z;
+                System.arraycopy(blocks, 0, column.blocks, 0, ReplacerColumn.SIZE);
+                replacer.replaceColumn(column);
+                bh.consume(column.blocks);
+            }
+        }
+    }
+}
@@ -50,6 +50,38 @@ public class CustomCubicConfig {
     @Config.Comment("GUI scroll animation time (not in any specific unit, more = slower)")
     public static int guiScrollAnimationTime = 300;
 
+    @Config.LangKey("cubicgen.config.compile_density_function")
+    @Config.Comment("Flattens the terrain density function into specialized evaluators when the generator is created. "
+            + "Generated terrain is exactly the same, this only affects generation speed.")
+    public static boolean compileDensityFunction = false;
+
+    @Config.LangKey("cubicgen.config.compile_replacers")
+    @Config.Comment("Generates specialized code for the block replacers of each biome when the generator is created. "
+            + "Generated terrain is exactly the same, this only affects generation speed.")
+    public static boolean compileReplacers = false;
+
+    @Config.LangKey("cubicgen.config.concurrent_generation")
+    @Config.Comment("Gives each thread its own terrain generator caches, so that cubes can be generated from multiple threads at once. "
+            + "Required by the /customcubic_genbench command. Only works for worlds and cube areas with a single biome, "
+            + "vanilla biome generation can't run outside the server thread.")
+    @Config.RequiresWorldRestart
+    public static boolean concurrentGeneration = false;
+
+    @Config.LangKey("cubicgen.config.profile_generation")
+    @Config.Comment("Measures time spent in each terrain generation and population stage. "
+            + "Use /customcubic_profiler to see the results. Has a small performance cost.")
+    public static boolean profileGeneration = false;
+
+    @Config.LangKey("cubicgen.config.profiler_export_interval")
+    @Config.Comment("When profiling is enabled, write the results to profilerExportFile every this many seconds, "
+            + "in Prometheus text format. 0 disables writing.")
+    @Config.RangeInt(min = 0)
+    public static int profilerExportInterval = 0;
+
+    @Config.LangKey("cubicgen.config.profiler_export_file")
+    @Config.Comment("File to write profiler results to, relative to the server directory.")
+    public static String profilerExportFile = "cubicgen-profile.prom";
+
     @SubscribeEvent
     public static void onConfigChanged(ConfigChangedEvent.OnConfigChangedEvent event) {
         if (event.getModID().equals(CustomCubicMod.MODID)) {
@@ -40,6 +40,8 @@ import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.Snow
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.SwampDecorator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.TaigaDecorator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.flat.FlatCubicWorldType;
+import io.github.opencubicchunks.cubicchunks.cubicgen.pregen.GenerationBenchmarkCommand;
+import io.github.opencubicchunks.cubicchunks.cubicgen.profiler.ProfilerCommand;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
@@ -113,6 +115,8 @@ public class CustomCubicMod {
     public void serverStarting(FMLServerStartingEvent evt)
     {
         PermissionAPI.registerNode(MODID + ".command.reload_preset", DefaultPermissionLevel.OP, "Allows to run the /customcubic_reload command");
+        PermissionAPI.registerNode(GenerationBenchmarkCommand.PERMISSION, DefaultPermissionLevel.OP, "Allows to run the /customcubic_genbench command");
+        PermissionAPI.registerNode(ProfilerCommand.PERMISSION, DefaultPermissionLevel.OP, "Allows to run the /customcubic_profiler command");
 
         evt.registerServerCommand(new CommandBase() {
             @Override
@@ -154,6 +158,8 @@ public class CustomCubicMod {
                 }
             }
         });
+        evt.registerServerCommand(new GenerationBenchmarkCommand());
+        evt.registerServerCommand(new ProfilerCommand());
     }
 
     @Mod.EventHandler
@@ -0,0 +1,113 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Random number stream for populating a cube, based on {@link RngHash#xxHash64}. Each value is the hash of the stream
+ * seed and the number of values drawn so far, so there is no shared atomic state like in {@link Random}.
+ * <p>
+ * Population stages get their own stream with {@link #fork(Random, String)}. The seed of a forked stream only depends on
+ * the parent stream seed and the stage name, so what one stage draws doesn't affect other stages, and stages can be
+ * skipped or reordered without changing the blocks placed by the others. Stage names should come from what the stage
+ * is, not its position in a list, see {@link StageNames}.
+ * <p>
+ * Not thread safe.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class PopulationRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    // not initialized in field declarations, Random constructor already sets them through setSeed
+    private long streamSeed;
+    private long counter;
+
+    private PopulationRandom(long streamSeed) {
+        super(streamSeed);
+    }
+
+    /**
+     * Creates the root stream for populating the given cube.
+     */
+    public static PopulationRandom forCube(long worldSeed, int cubeX, int cubeY, int cubeZ) {
+        return new PopulationRandom(RngHash.xxHash64(worldSeed, cubeX, cubeY, cubeZ, 0));
+    }
+
+    /**
+     * Returns a new stream for the given stage, independent of how many values were drawn from this stream.
+     */
+    public PopulationRandom fork(int stage) {
+        return new PopulationRandom(RngHash.xxHash64(streamSeed, stage, 0, 0, 1));
+    }
+
+    /**
+     * Returns a new stream for the given stage if {@code random} is a {@link PopulationRandom}. Any other random is
+     * returned unchanged, so that all stages keep sharing it.
+     */
+    public static Random fork(Random random, int stage) {
+        return random instanceof PopulationRandom ? ((PopulationRandom) random).fork(stage) : random;
+    }
+
+    /**
+     * Same as {@link #fork(Random, int)}, using the hash code of the stage name.
+     */
+    public static Random fork(Random random, String stage) {
+        return fork(random, stage.hashCode());
+    }
+
+    @Override public void setSeed(long seed) {
+        super.setSeed(seed);
+        this.streamSeed = seed;
+        this.counter = 0;
+    }
+
+    @Override protected int next(int bits) {
+        long value = RngHash.xxHash64(streamSeed, (int) counter, (int) (counter >>> 32), 0, 0);
+        counter++;
+        return (int) (value >>> (64 - bits));
+    }
+
+    /**
+     * Stage numbers for a list of stages named by what they are. Stages with the same name are numbered in the order
+     * they are added, so adding or removing a stage with a different name doesn't change the streams of the others.
+     */
+    public static final class StageNames {
+
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        public int stage(String name) {
+            int count = counts.merge(name, 1, Integer::sum) - 1;
+            return (count == 0 ? name : name + "#" + count).hashCode();
+        }
+    }
+}
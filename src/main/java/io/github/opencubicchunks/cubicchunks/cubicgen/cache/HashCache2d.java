@@ -25,46 +25,53 @@ package io.github.opencubicchunks.cubicchunks.cubicgen.cache;
 
 import mcp.MethodsReturnNonnullByDefault;
 
-import java.util.function.Function;
-import java.util.function.ToIntFunction;
-
 import javax.annotation.ParametersAreNonnullByDefault;
 
+/**
+ * Fixed size cache of values computed from x and z coordinates. An entry is replaced when another key maps to the same
+ * slot. Keys are packed into a long, so lookups don't allocate key objects.
+ */
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
-public class HashCache<K, V> {
+public class HashCache2d<V> {
 
     private final V[] cache;
-    private final K[] keys;
-    private final ToIntFunction<K> hashFunction;
-    private final Function<K, V> source;
+    private final long[] keys;
+    private final boolean[] filled;
+    private final CoordHash2d hashFunction;
+    private final Source<V> source;
 
-    @SuppressWarnings("uncecked")
-    private HashCache(int size, ToIntFunction<K> hashCode, Function<K, V> source) {
+    @SuppressWarnings("unchecked")
+    private HashCache2d(int size, CoordHash2d hashCode, Source<V> source) {
         this.cache = (V[]) new Object[size];
-        this.keys = (K[]) new Object[size];
+        this.keys = new long[size];
+        this.filled = new boolean[size];
         this.hashFunction = hashCode;
         this.source = source;
     }
 
-    public V get(K key) {
-        int index = index(hashFunction.applyAsInt(key));
-        if (!key.equals(keys[index])) {
+    public V get(int x, int z) {
+        int index = Math.floorMod(hashFunction.hash(x, z), cache.length);
+        long key = pack(x, z);
+        if (!filled[index] || keys[index] != key) {
             keys[index] = key;
-            cache[index] = source.apply(key);
+            cache[index] = source.get(x, z);
+            filled[index] = true;
         }
         return cache[index];
     }
 
-    private int index(int hash) {
-        return Math.floorMod(hash, cache.length);
+    static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
     }
 
-    public static <K, V> HashCache<K, V> create(int size, Function<K, V> source) {
-        return create(size, k -> k.hashCode(), source);
+    public static <V> HashCache2d<V> create(int size, CoordHash2d hashCode, Source<V> source) {
+        return new HashCache2d<>(size, hashCode, source);
     }
 
-    public static <K, V> HashCache<K, V> create(int size, ToIntFunction<K> hashCode, Function<K, V> source) {
-        return new HashCache<>(size, hashCode, source);
+    @FunctionalInterface
+    public interface Source<V> {
+
+        V get(int x, int z);
     }
 }
@@ -25,46 +25,48 @@ package io.github.opencubicchunks.cubicchunks.cubicgen.cache;
 
 import mcp.MethodsReturnNonnullByDefault;
 
-import java.util.function.ToDoubleFunction;
-import java.util.function.ToIntFunction;
-
 import javax.annotation.ParametersAreNonnullByDefault;
 
+/**
+ * Fixed size cache of doubles computed from x and z coordinates. An entry is replaced when another key maps to the same
+ * slot. Keys are packed into a long, so lookups don't allocate key objects.
+ */
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
-public class HashCacheDoubles<K> {
+public class HashCacheDoubles2d {
 
     private final double[] cache;
-    private final K[] keys;
-    private final ToIntFunction<K> hashFunction;
-    private final ToDoubleFunction<K> source;
+    private final long[] keys;
+    private final boolean[] filled;
+    private final CoordHash2d hashFunction;
+    private final Source source;
 
-    @SuppressWarnings("unchecked")
-    private HashCacheDoubles(int size, ToIntFunction<K> hashCode, ToDoubleFunction<K> source) {
+    private HashCacheDoubles2d(int size, CoordHash2d hashCode, Source source) {
         this.cache = new double[size];
-        this.keys = (K[]) new Object[size];
+        this.keys = new long[size];
+        this.filled = new boolean[size];
         this.hashFunction = hashCode;
         this.source = source;
     }
 
-    public double get(K key) {
-        int index = index(hashFunction.applyAsInt(key));
-        if (!key.equals(keys[index])) {
+    public double get(int x, int z) {
+        int index = Math.floorMod(hashFunction.hash(x, z), cache.length);
+        long key = HashCache2d.pack(x, z);
+        if (!filled[index] || keys[index] != key) {
             keys[index] = key;
-            cache[index] = source.applyAsDouble(key);
+            cache[index] = source.get(x, z);
+            filled[index] = true;
         }
         return cache[index];
     }
 
-    private int index(int hash) {
-        return Math.floorMod(hash, cache.length);
+    public static HashCacheDoubles2d create(int size, CoordHash2d hashCode, Source source) {
+        return new HashCacheDoubles2d(size, hashCode, source);
     }
 
-    public static <K> HashCacheDoubles<K> create(int size, ToDoubleFunction<K> source) {
-        return create(size, k -> k.hashCode(), source);
-    }
+    @FunctionalInterface
+    public interface Source {
 
-    public static <K> HashCacheDoubles<K> create(int size, ToIntFunction<K> hashCode, ToDoubleFunction<K> source) {
-        return new HashCacheDoubles<K>(size, hashCode, source);
+        double get(int x, int z);
     }
 }
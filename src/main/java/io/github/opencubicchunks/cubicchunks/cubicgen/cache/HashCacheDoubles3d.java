@@ -0,0 +1,76 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.cache;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Fixed size cache of doubles computed from x, y and z coordinates. An entry is replaced when another key maps to the
+ * same slot. Keys are stored as primitives, so lookups don't allocate key objects. X and z are packed into one long, y
+ * is stored separately.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class HashCacheDoubles3d {
+
+    private final double[] cache;
+    private final long[] keysXZ;
+    private final int[] keysY;
+    private final boolean[] filled;
+    private final CoordHash3d hashFunction;
+    private final Source source;
+
+    private HashCacheDoubles3d(int size, CoordHash3d hashCode, Source source) {
+        this.cache = new double[size];
+        this.keysXZ = new long[size];
+        this.keysY = new int[size];
+        this.filled = new boolean[size];
+        this.hashFunction = hashCode;
+        this.source = source;
+    }
+
+    public double get(int x, int y, int z) {
+        int index = Math.floorMod(hashFunction.hash(x, y, z), cache.length);
+        long keyXZ = HashCache2d.pack(x, z);
+        if (!filled[index] || keysXZ[index] != keyXZ || keysY[index] != y) {
+            keysXZ[index] = keyXZ;
+            keysY[index] = y;
+            cache[index] = source.get(x, y, z);
+            filled[index] = true;
+        }
+        return cache[index];
+    }
+
+    public static HashCacheDoubles3d create(int size, CoordHash3d hashCode, Source source) {
+        return new HashCacheDoubles3d(size, hashCode, source);
+    }
+
+    @FunctionalInterface
+    public interface Source {
+
+        double get(int x, int y, int z);
+    }
+}
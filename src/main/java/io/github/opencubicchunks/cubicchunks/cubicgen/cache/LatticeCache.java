@@ -0,0 +1,135 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.cache;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Stores values at points of an integer lattice, in blocks of neighbouring points. Each block remembers which of its
+ * points are known, so a block can be filled in by several partially overlapping regions. Blocks are kept in a table
+ * of fixed size, and a block is evicted when another one maps to the same slot.
+ * <p>
+ * Coordinates are in lattice units, so neighbouring points differ by 1.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class LatticeCache {
+
+    private final int blockSizeX, blockSizeY, blockSizeZ;
+    private final int blockVolume;
+    private final int slotMask;
+
+    private final int[] keysX, keysY, keysZ;
+    // bit i is set if point i of the block is known, 0 also marks unused slots
+    private final long[] known;
+    private final double[] values;
+
+    // slot of the last block accessed, most accesses are to points in the same block
+    private int lastSlot = -1;
+
+    private LatticeCache(int size, int blockSizeX, int blockSizeY, int blockSizeZ) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of 2 but was " + size);
+        }
+        this.blockSizeX = blockSizeX;
+        this.blockSizeY = blockSizeY;
+        this.blockSizeZ = blockSizeZ;
+        this.blockVolume = blockSizeX * blockSizeY * blockSizeZ;
+        if (blockVolume > Long.SIZE) {
+            throw new IllegalArgumentException("Block can have at most " + Long.SIZE + " points but has " + blockVolume);
+        }
+        this.slotMask = size - 1;
+        this.keysX = new int[size];
+        this.keysY = new int[size];
+        this.keysZ = new int[size];
+        this.known = new long[size];
+        this.values = new double[size * blockVolume];
+    }
+
+    /**
+     * Copies the value at the given point to out[index] if it's known.
+     *
+     * @return true if the value was known
+     */
+    public boolean get(int x, int y, int z, double[] out, int index) {
+        int blockX = Math.floorDiv(x, blockSizeX), blockY = Math.floorDiv(y, blockSizeY), blockZ = Math.floorDiv(z, blockSizeZ);
+        int slot = findSlot(blockX, blockY, blockZ);
+        if (slot < 0) {
+            return false;
+        }
+        int i = pointIndex(x - blockX * blockSizeX, y - blockY * blockSizeY, z - blockZ * blockSizeZ);
+        if ((known[slot] & (1L << i)) == 0) {
+            return false;
+        }
+        out[index] = values[slot * blockVolume + i];
+        return true;
+    }
+
+    public void put(int x, int y, int z, double value) {
+        int blockX = Math.floorDiv(x, blockSizeX), blockY = Math.floorDiv(y, blockSizeY), blockZ = Math.floorDiv(z, blockSizeZ);
+        int slot = findSlot(blockX, blockY, blockZ);
+        if (slot < 0) {
+            slot = slot(blockX, blockY, blockZ);
+            keysX[slot] = blockX;
+            keysY[slot] = blockY;
+            keysZ[slot] = blockZ;
+            known[slot] = 0;
+            lastSlot = slot;
+        }
+        int i = pointIndex(x - blockX * blockSizeX, y - blockY * blockSizeY, z - blockZ * blockSizeZ);
+        known[slot] |= 1L << i;
+        values[slot * blockVolume + i] = value;
+    }
+
+    private int findSlot(int blockX, int blockY, int blockZ) {
+        int slot = lastSlot;
+        if (slot >= 0 && known[slot] != 0 && keysX[slot] == blockX && keysY[slot] == blockY && keysZ[slot] == blockZ) {
+            return slot;
+        }
+        slot = slot(blockX, blockY, blockZ);
+        if (known[slot] != 0 && keysX[slot] == blockX && keysY[slot] == blockY && keysZ[slot] == blockZ) {
+            lastSlot = slot;
+            return slot;
+        }
+        return -1;
+    }
+
+    private int slot(int blockX, int blockY, int blockZ) {
+        int hash = blockX * 0x9E3779B1 + blockY * 0x85EBCA77 + blockZ * 0xC2B2AE3D;
+        return (hash ^ hash >>> 16) & slotMask;
+    }
+
+    private int pointIndex(int localX, int localY, int localZ) {
+        return (localY * blockSizeZ + localZ) * blockSizeX + localX;
+    }
+
+    /**
+     * @param size amount of blocks, must be a power of 2
+     */
+    public static LatticeCache create(int size, int blockSizeX, int blockSizeY, int blockSizeZ) {
+        return new LatticeCache(size, blockSizeX, blockSizeY, blockSizeZ);
+    }
+}
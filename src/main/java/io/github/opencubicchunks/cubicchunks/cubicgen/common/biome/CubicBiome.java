@@ -26,6 +26,7 @@ package io.github.opencubicchunks.cubicchunks.cubicgen.common.biome;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.CubicPopulatorList;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.ICubicPopulator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import io.github.opencubicchunks.cubicchunks.cubicgen.PopulationRandom;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.AnimalsPopulator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.DefaultDecorator;
@@ -113,7 +114,14 @@ public final class CubicBiome extends IForgeRegistryEntry.Impl<CubicBiome> {
         this.originalBiome = builder.biome;
         this.decoratorProvider = conf -> {
             CubicPopulatorList list = new CubicPopulatorList();
-            builder.decorators.forEach(func -> list.add(func.apply(conf)));
+            PopulationRandom.StageNames stages = new PopulationRandom.StageNames();
+            for (Function<CustomGeneratorSettings, ICubicPopulator> provider : builder.decorators) {
+                ICubicPopulator decorator = provider.apply(conf);
+                // lambda class names aren't the same in every run
+                Class<?> decoratorClass = decorator.getClass();
+                int stage = stages.stage(decoratorClass.isSynthetic() ? "decorator" : decoratorClass.getName());
+                list.add((world, random, pos, biome) -> decorator.generate(world, PopulationRandom.fork(random, stage), pos, biome));
+            }
             return list;
         };
 
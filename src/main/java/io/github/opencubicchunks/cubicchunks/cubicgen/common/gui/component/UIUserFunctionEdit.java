@@ -430,27 +430,30 @@ public class UIUserFunctionEdit extends UIComponent<UIUserFunctionEdit> implemen
 
         double lastYVal = dragging.y;
 
-        dragging.y = (float) DrawUtils.posToX(getWidthFlip(), localX, xOffset(), xScale());
-        dragging.v = (float) DrawUtils.posToY(getHeightFlip(), localY, yOffset(), yScale());
+        double newY = (float) DrawUtils.posToX(getWidthFlip(), localX, xOffset(), xScale());
+        double newV = (float) DrawUtils.posToY(getHeightFlip(), localY, yOffset(), yScale());
 
         CustomGeneratorSettings.UserFunction.Entry otherClosest = getClosest(entries, localX, localY, true, e -> e != dragging);
         Set<Double> allYValues = entries.stream().filter(e -> e != dragging).map(e -> e.y).collect(Collectors.toSet());
 
         if (otherClosest != null) {
             Boolean goUp = null;
-            if (lastYVal < otherClosest.y && dragging.y >= otherClosest.y) {
-                dragging.y = Math.min(dragging.y, otherClosest.y);
+            if (lastYVal < otherClosest.y && newY >= otherClosest.y) {
+                newY = Math.min(newY, otherClosest.y);
                 goUp = false;
-            } else if (lastYVal > otherClosest.y && dragging.y <= otherClosest.y) {
-                dragging.y = Math.max(dragging.y, otherClosest.y);
+            } else if (lastYVal > otherClosest.y && newY <= otherClosest.y) {
+                newY = Math.max(newY, otherClosest.y);
                 goUp = true;
             }
             if (goUp != null) {
-                while (allYValues.contains(dragging.y)) {
-                    dragging.y = goUp ? Math.nextUp(dragging.y) : Math.nextDown(dragging.y);
+                while (allYValues.contains(newY)) {
+                    newY = goUp ? Math.nextUp(newY) : Math.nextDown(newY);
                 }
             }
         }
+        CustomGeneratorSettings.UserFunction.Entry moved = new CustomGeneratorSettings.UserFunction.Entry(newY, newV);
+        replace(entries, dragging, moved);
+        dragging = moved;
         entries.sort(Comparator.comparingDouble(e -> e.y));
         return true;
     }
@@ -483,7 +486,7 @@ public class UIUserFunctionEdit extends UIComponent<UIUserFunctionEdit> implemen
         CustomGeneratorSettings.UserFunction.Entry closest = getClosest(entries, mouseX, mouseY, true);
 
         if (closest != null) {
-            closest.v = currV;
+            replace(entries, closest, new CustomGeneratorSettings.UserFunction.Entry(closest.y, currV));
         } else {
             CustomGeneratorSettings.UserFunction.Entry newEntry = new CustomGeneratorSettings.UserFunction.Entry(currY, currV);
 
@@ -492,6 +495,17 @@ public class UIUserFunctionEdit extends UIComponent<UIUserFunctionEdit> implemen
         }
     }
 
+    // entries are immutable, and equal when only Y is the same
+    private static void replace(List<CustomGeneratorSettings.UserFunction.Entry> entries,
+            CustomGeneratorSettings.UserFunction.Entry old, CustomGeneratorSettings.UserFunction.Entry replacement) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i) == old) {
+                entries.set(i, replacement);
+                return;
+            }
+        }
+    }
+
     // render
 
     @Override
@@ -549,11 +563,8 @@ public class UIUserFunctionEdit extends UIComponent<UIUserFunctionEdit> implemen
                 flipXY ? xScale() : yScale());
 
         if (dragging == null && this.isInteractionEnabled) {
-            List<CustomGeneratorSettings.UserFunction.Entry> predictedEntries = new ArrayList<>();
-            // clone because entries are mutable
-            for (CustomGeneratorSettings.UserFunction.Entry e : entries) {
-                predictedEntries.add(new CustomGeneratorSettings.UserFunction.Entry(e.y, e.v));
-            }
+            // entries are replaced when modified, so copying the list is enough
+            List<CustomGeneratorSettings.UserFunction.Entry> predictedEntries = new ArrayList<>(entries);
             modifyForClick(predictedEntries);
             drawGraph(predictedEntries, 100);
         }
@@ -0,0 +1,134 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.IntAABB;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Terrain generators for cube areas, created when a cube in the area is first generated or populated. Areas with
+ * identical settings share one generator, and generators that haven't been used for a while are dropped and created
+ * again when needed.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class CubeAreaGenerators {
+
+    static final long UNUSED_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final CubeAreaIndex<Slot> index;
+    private final Slot[] slots;
+    private final Function<CustomGeneratorSettings, CustomTerrainGenerator> factory;
+    private volatile long nextEvictionCheck;
+
+    CubeAreaGenerators(List<Map.Entry<IntAABB, CustomGeneratorSettings>> areas,
+            Function<CustomGeneratorSettings, CustomTerrainGenerator> factory) {
+        this.factory = factory;
+        Map<String, Slot> slotsBySettings = new HashMap<>();
+        List<Map.Entry<IntAABB, Slot>> slotAreas = new ArrayList<>();
+        for (Map.Entry<IntAABB, CustomGeneratorSettings> area : areas) {
+            CustomGeneratorSettings settings = area.getValue();
+            Slot slot = slotsBySettings.computeIfAbsent(settings.toJsonObject().toJson(), json -> new Slot(settings));
+            slotAreas.add(new AbstractMap.SimpleImmutableEntry<>(area.getKey(), slot));
+        }
+        this.index = new CubeAreaIndex<>(slotAreas);
+        this.slots = slotsBySettings.values().toArray(new Slot[0]);
+        this.nextEvictionCheck = System.nanoTime() + UNUSED_TIMEOUT_NANOS;
+    }
+
+    boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * Returns the generator for the first area containing the given cube, or null if there is none.
+     */
+    @Nullable
+    CustomTerrainGenerator get(int cubeX, int cubeY, int cubeZ) {
+        Slot slot = index.get(cubeX, cubeY, cubeZ);
+        if (slot == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        CustomTerrainGenerator generator = slot.get(now, factory);
+        if (now - nextEvictionCheck >= 0) {
+            evictUnused(now);
+        }
+        return generator;
+    }
+
+    private synchronized void evictUnused(long now) {
+        if (now - nextEvictionCheck < 0) {
+            return;
+        }
+        for (Slot slot : slots) {
+            slot.evictIfUnused(now);
+        }
+        nextEvictionCheck = now + UNUSED_TIMEOUT_NANOS;
+    }
+
+    private static final class Slot {
+
+        private final CustomGeneratorSettings settings;
+        @Nullable private volatile CustomTerrainGenerator generator;
+        private volatile long lastUsed;
+
+        Slot(CustomGeneratorSettings settings) {
+            this.settings = settings;
+        }
+
+        CustomTerrainGenerator get(long now, Function<CustomGeneratorSettings, CustomTerrainGenerator> factory) {
+            lastUsed = now;
+            CustomTerrainGenerator gen = generator;
+            if (gen == null) {
+                synchronized (this) {
+                    gen = generator;
+                    if (gen == null) {
+                        gen = factory.apply(settings);
+                        generator = gen;
+                    }
+                }
+            }
+            return gen;
+        }
+
+        // threads still using an evicted generator keep their reference, the next lookup creates a new one
+        synchronized void evictIfUnused(long now) {
+            if (now - lastUsed >= UNUSED_TIMEOUT_NANOS) {
+                generator = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.IntAABB;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Finds the cube area containing a cube. Areas are split into Y bands at every area Y boundary, so that a lookup only
+ * checks areas overlapping the cube's Y band, found by binary search.
+ * <p>
+ * When areas overlap, the one that comes first in the list has priority.
+ *
+ * @param <T> value associated with each area
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class CubeAreaIndex<T> {
+
+    // band i contains cube Y coordinates from bandStarts[i] to bandStarts[i + 1] - 1
+    private final long[] bandStarts;
+    private final Area<T>[][] bandAreas;
+
+    @SuppressWarnings("unchecked")
+    public CubeAreaIndex(List<? extends Map.Entry<IntAABB, T>> areas) {
+        List<Area<T>> nonEmpty = new ArrayList<>();
+        long[] boundaries = new long[areas.size() * 2];
+        int boundaryCount = 0;
+        for (Map.Entry<IntAABB, T> entry : areas) {
+            IntAABB box = entry.getKey();
+            if (box.minX > box.maxX || box.minY > box.maxY || box.minZ > box.maxZ) {
+                continue;
+            }
+            nonEmpty.add(new Area<>(box, entry.getValue()));
+            boundaries[boundaryCount++] = box.minY;
+            boundaries[boundaryCount++] = box.maxY + 1L;
+        }
+        Arrays.sort(boundaries, 0, boundaryCount);
+        int uniqueCount = 0;
+        for (int i = 0; i < boundaryCount; i++) {
+            if (uniqueCount == 0 || boundaries[uniqueCount - 1] != boundaries[i]) {
+                boundaries[uniqueCount++] = boundaries[i];
+            }
+        }
+        this.bandStarts = Arrays.copyOf(boundaries, uniqueCount);
+
+        // every area either covers a whole band or doesn't overlap it, as all area boundaries are band boundaries
+        int bandCount = Math.max(0, uniqueCount - 1);
+        this.bandAreas = new Area[bandCount][];
+        List<Area<T>> inBand = new ArrayList<>();
+        for (int band = 0; band < bandCount; band++) {
+            inBand.clear();
+            for (Area<T> area : nonEmpty) {
+                if (area.box.minY <= bandStarts[band] && area.box.maxY >= bandStarts[band]) {
+                    inBand.add(area);
+                }
+            }
+            bandAreas[band] = inBand.toArray(new Area[0]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return bandAreas.length == 0;
+    }
+
+    /**
+     * Returns the value for the first area containing the given cube, or null if there is none.
+     */
+    @Nullable
+    public T get(int cubeX, int cubeY, int cubeZ) {
+        int band = Arrays.binarySearch(bandStarts, cubeY);
+        if (band < 0) {
+            // insertion point - 1 is the last band starting below cubeY
+            band = -band - 2;
+        }
+        if (band < 0 || band >= bandAreas.length) {
+            return null;
+        }
+        for (Area<T> area : bandAreas[band]) {
+            IntAABB box = area.box;
+            if (cubeX >= box.minX && cubeX <= box.maxX && cubeZ >= box.minZ && cubeZ <= box.maxZ) {
+                return area.value;
+            }
+        }
+        return null;
+    }
+
+    private static final class Area<T> {
+
+        final IntAABB box;
+        final T value;
+
+        Area(IntAABB box, T value) {
+            this.box = box;
+            this.value = value;
+        }
+    }
+}
@@ -83,6 +83,7 @@ public class CustomGeneratorSettings {
      * Page 1
      */
     public boolean caves = true;
+    public boolean noiseCaves = false;
 
     public boolean strongholds = true;
     public boolean alternateStrongholdsPositions = false; // TODO: add to gui
@@ -157,6 +158,45 @@ public class CustomGeneratorSettings {
     public float highNoiseFrequencyY = ConversionUtils.VANILLA_LOWHIGH_NOISE_FREQUENCY_Y;
     public float highNoiseFrequencyZ = ConversionUtils.VANILLA_LOWHIGH_NOISE_FREQUENCY_XZ;
     public int highNoiseOctaves = 16;
+
+    /**
+     * Noise caves, see {@link io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicNoiseCaveGenerator}
+     */
+
+    public float noiseCaveFrequencyX = 0.01f;
+    public float noiseCaveFrequencyY = 0.02f;
+    public float noiseCaveFrequencyZ = 0.01f;
+    public int noiseCaveOctaves = 4;
+    public float noiseCaveThreshold = 0.55f;// >= 1 disables large caves
+
+    public float noiseTunnelFrequencyX = 0.02f;
+    public float noiseTunnelFrequencyY = 0.04f;
+    public float noiseTunnelFrequencyZ = 0.02f;
+    public int noiseTunnelOctaves = 2;
+    public float noiseTunnelWidth = 0.08f;// <= 0 disables tunnels
+
+    /**
+     * Distance between points of the terrain density lattice along X and Z, and along Y. Density between the points is
+     * interpolated. Rounded down to a power of 2 between 1 and 16.
+     */
+    public int densityLatticeStepXZ = 4;
+    public int densityLatticeStepY = 8;
+    /**
+     * Samples density on a lattice twice as coarse first, and computes the points between only where density is close
+     * to 0 or changes quickly, see
+     * {@link io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder#adaptiveLattice}. Elsewhere
+     * they are interpolated, which changes density deep underground and high in the air, so it's off by default.
+     */
+    public boolean adaptiveDensityLattice = false;
+    public float adaptiveDensityLatticeThreshold = 8;
+
+    /**
+     * Gives each population stage its own random number stream, see
+     * {@link io.github.opencubicchunks.cubicchunks.cubicgen.PopulationRandom}. Changes what is populated compared to a
+     * single shared Random, so it's off for existing presets.
+     */
+    public boolean populationRandomStreams = false;
+
     public List<ReplacerConfig> replacers = new ArrayList<>();
 
     // note: the AABB uses cube coords to simplify the generator
@@ -1481,8 +1521,10 @@ public class CustomGeneratorSettings {
 
     public static class UserFunction {
 
-        // TODO: flatten to float array for performance?
+        // not modified in place, assign a new array to change the function
         public Entry[] values;
+        // lookup tables for values, created on first use and again when values is replaced
+        @Nullable private Compiled compiled;
 
         public UserFunction() {
             values = new Entry[0];
@@ -1500,29 +1542,113 @@ public class CustomGeneratorSettings {
         }
 
         public double getValue(double y) {
-            if (values.length == 0) {
-                return 0;
-            }
-            if (values.length == 1) {
-                return values[0].v;
-            }
-            Entry e1 = values[0];
-            Entry e2 = values[1];
-            // TODO: binary search? do we want to support functions complex enough for it to be needed? Will it improve performance?
-            for (int i = 2; i < values.length; i++) {
-                if (values[i - 1].y < y) {
-                    e1 = e2;
-                    e2 = values[i];
-                }
+            Compiled c = compiled;
+            if (c == null || c.source != values) {
+                compiled = c = new Compiled(values);
             }
-            double yFract = MathUtil.unlerp(y, e1.y, e2.y);
-            return MathUtil.lerp(yFract, e1.v, e2.v);
+            return c.getValue(y);
         }
 
         public static Builder builder() {
             return new Builder();
         }
 
+        /**
+         * Entries flattened to arrays, and values at integer coordinates precomputed for the range between the first
+         * and last control points. Results are exactly the same as interpolating between entries found by a linear scan.
+         */
+        private static final class Compiled {
+
+            private static final int MAX_TABLE_SIZE = 4096;
+
+            final Entry[] source;
+            private final double[] ys;
+            private final double[] vs;
+            // entries set directly (for example when loaded from a preset) may not be sorted
+            private final boolean sorted;
+            private final int tableMinY;
+            @Nullable private final double[] table;
+
+            Compiled(Entry[] source) {
+                this.source = source;
+                int n = source.length;
+                this.ys = new double[n];
+                this.vs = new double[n];
+                boolean sorted = true;
+                for (int i = 0; i < n; i++) {
+                    ys[i] = source[i].y;
+                    vs[i] = source[i].v;
+                    if (Double.isNaN(ys[i]) || (i > 0 && ys[i] < ys[i - 1])) {
+                        sorted = false;
+                    }
+                }
+                this.sorted = sorted;
+
+                // only the first and last segments are used outside of this range
+                double tableStart = n >= 3 ? Math.floor(ys[1]) : 0;
+                double tableEnd = n >= 3 ? Math.ceil(ys[n - 2]) : 0;
+                if (sorted && n >= 3 && tableStart >= Integer.MIN_VALUE && tableEnd <= Integer.MAX_VALUE
+                        && tableEnd - tableStart < MAX_TABLE_SIZE) {
+                    this.tableMinY = (int) tableStart;
+                    this.table = new double[(int) (tableEnd - tableStart) + 1];
+                    for (int i = 0; i < table.length; i++) {
+                        table[i] = interpolate(tableMinY + i);
+                    }
+                } else {
+                    this.tableMinY = 0;
+                    this.table = null;
+                }
+            }
+
+            double getValue(double y) {
+                if (table != null) {
+                    int intY = (int) y;
+                    int idx = intY - tableMinY;
+                    // -0.0 could give a different result than 0.0
+                    if (intY == y && idx >= 0 && idx < table.length && (intY != 0 || Double.doubleToRawLongBits(y) == 0)) {
+                        return table[idx];
+                    }
+                }
+                return interpolate(y);
+            }
+
+            private double interpolate(double y) {
+                int n = ys.length;
+                if (n == 0) {
+                    return 0;
+                }
+                if (n == 1) {
+                    return vs[0];
+                }
+                int i1 = 0;
+                int i2 = 1;
+                if (sorted) {
+                    // the linear scan moves to the next segment while ys[i - 1] < y, for i from 2 to n - 1
+                    int low = 1;
+                    int high = n - 1;
+                    while (low < high) {
+                        int mid = (low + high) >>> 1;
+                        if (ys[mid] < y) {
+                            low = mid + 1;
+                        } else {
+                            high = mid;
+                        }
+                    }
+                    i1 = low - 1;
+                    i2 = low;
+                } else {
+                    for (int i = 2; i < n; i++) {
+                        if (ys[i - 1] < y) {
+                            i1 = i2;
+                            i2 = i;
+                        }
+                    }
+                }
+                double yFract = MathUtil.unlerp(y, ys[i1], ys[i2]);
+                return MathUtil.lerp(yFract, vs[i1], vs[i2]);
+            }
+        }
+
         public static class Builder {
 
             private Map<Double, Double> map = new HashMap<>();
@@ -1537,13 +1663,13 @@ public class CustomGeneratorSettings {
             }
         }
 
-        public static class Entry {
-
-            public double y;
-            public double v;
+        /**
+         * A control point. Immutable, so that lookup tables created from the entries stay valid.
+         */
+        public static final class Entry {
 
-            public Entry() {
-            }
+            public final double y;
+            public final double v;
 
             public Entry(double key, double value) {
                 this.y = key;
@@ -36,16 +36,27 @@ import io.github.opencubicchunks.cubicchunks.api.worldgen.structure.event.InitCu
 import io.github.opencubicchunks.cubicchunks.api.worldgen.structure.feature.CubicFeatureGenerator;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.structure.feature.ICubicFeatureGenerator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.BasicCubeGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
 import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import io.github.opencubicchunks.cubicchunks.cubicgen.PopulationRandom;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash2d;
 import io.github.opencubicchunks.cubicchunks.cubicgen.common.biome.CubicBiome;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiomeBlockReplacer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChain;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChainCompiler;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerColumn;
 import io.github.opencubicchunks.cubicchunks.cubicgen.common.world.storage.IWorldInfoAccess;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.BiomeSource;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Interval;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseConsumer;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicCaveGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicNoiseCaveGenerator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicRavineGenerator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.feature.CubicStrongholdGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.profiler.GenerationProfiler;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
@@ -54,6 +65,7 @@ import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.BiomeProvider;
+import net.minecraft.world.biome.BiomeProviderSingle;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.terraingen.InitMapGenEvent.EventType;
 import net.minecraftforge.fml.common.FMLCommonHandler;
@@ -62,10 +74,13 @@ import org.lwjgl.input.Keyboard;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Random;
-import java.util.function.ToIntFunction;
+import java.util.function.Consumer;
 
 import static io.github.opencubicchunks.cubicchunks.api.util.Coords.blockToLocal;
 
@@ -77,24 +92,47 @@ import static io.github.opencubicchunks.cubicchunks.api.util.Coords.blockToLocal
 public class CustomTerrainGenerator extends BasicCubeGenerator {
 
     private static final int CACHE_SIZE_2D = 16 * 16;
-    private static final int CACHE_SIZE_3D = 16 * 16 * 16;
-    private static final ToIntFunction<Vec3i> HASH_2D = (v) -> v.getX() + v.getZ() * 5;
-    private static final ToIntFunction<Vec3i> HASH_3D = (v) -> v.getX() + v.getZ() * 5 + v.getY() * 25;
-    private final Map<CustomGeneratorSettings.IntAABB, CustomTerrainGenerator> areaGenerators = new HashMap<>();
+    // amount of cubes the density lattice cache keeps lattice points for
+    private static final int LATTICE_CACHE_SIZE = 4096;
+    private static final CoordHash2d HASH_2D = (x, z) -> x + z * 5;
+    // longest vertical run of cubes that density is evaluated for at once
+    private static final int MAX_DENSITY_STACK = 8;
+    private CubeAreaGenerators areaGenerators;
     // Number of octaves for the noise function
     private IBuilder terrainBuilder;
+    // terrainBuilder before compiling, compiled builders don't compute bounds
+    private IBuilder terrainBuilderTree;
+    // distance between density lattice points, see CustomGeneratorSettings.densityLatticeStepXZ
+    private Vec3i latticeStep;
     private BiomeSource biomeSource;
     private CustomGeneratorSettings conf;
     private final Map<Biome, ICubicPopulator> populators = new HashMap<>();
 
     private boolean fillCubeBiomes;
+    // see isConcurrent
+    private boolean concurrent;
 
     //TODO: Implement more structures
     private ICubicStructureGenerator caveGenerator;
+    private ICubicStructureGenerator noiseCaveGenerator;
     private ICubicStructureGenerator ravineGenerator;
     private ICubicFeatureGenerator strongholds;
 
     private IBiomeBlockReplacer[] replacers;
+    // indices of all replacers, used for cubes where no replacer can be skipped
+    private int[] allReplacers;
+    private ReplacerChainCompiler replacerChains;
+    // chain lookup of each biome, created with the generator and only read afterwards
+    private Map<Biome, ReplacerChainCompiler.BiomeChains> biomeChains;
+
+    private final ThreadLocal<ColumnStack> columnStacks = ThreadLocal.withInitial(ColumnStack::new);
+
+    // only turned off by tests, to compare with evaluating density for every cube
+    boolean generateWithoutDensity = true;
+    // only turned off by tests, to compare with running every replacer on every cube
+    boolean skipNoOpReplacers = true;
+    // only set by tests, called with the replacer chain of each column
+    @Nullable Consumer<ReplacerChain> replacerChainListener;
 
     public CustomTerrainGenerator(World world, final long seed) {
         this(world, world.getBiomeProvider(), CustomGeneratorSettings.getFromWorld(world), seed);
@@ -117,6 +155,8 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
 
     private void init(World world, BiomeProvider biomeProvider, CustomGeneratorSettings settings, long seed, boolean isMainLayer) {
         this.conf = settings;
+        this.concurrent = CustomCubicConfig.concurrentGeneration
+                && biomeProvider.getClass() == BiomeProviderSingle.class && !areasUseGenLayers(settings);
 
         this.populators.clear();
 
@@ -137,19 +177,16 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
         this.caveGenerator = caveEvent.getNewGen();
         this.strongholds = (CubicFeatureGenerator) strongholdsEvent.getNewGen();
         this.ravineGenerator = ravineEvent.getNewGen();
+        this.noiseCaveGenerator = new CubicNoiseCaveGenerator(conf, seed);
 
         this.fillCubeBiomes = !isMainLayer;
         this.biomeSource = new BiomeSource(world, conf.replacers, biomeProvider, 2);
         initGenerator(seed);
 
-        this.areaGenerators.clear();
-
-        if (settings.cubeAreas != null) {
-            for (Map.Entry<CustomGeneratorSettings.IntAABB, CustomGeneratorSettings> entry : settings.cubeAreas.map) {
-                this.areaGenerators.put(entry.getKey(), new CustomTerrainGenerator(world, CustomCubicWorldType.makeBiomeProvider(world,
-                        entry.getValue()), entry.getValue(), seed, false));
-            }
-        }
+        this.areaGenerators = new CubeAreaGenerators(
+                settings.cubeAreas == null ? Collections.emptyList() : settings.cubeAreas.map,
+                areaSettings -> new CustomTerrainGenerator(world, CustomCubicWorldType.makeBiomeProvider(world, areaSettings),
+                        areaSettings, seed, false));
     }
 
     private void initGenerator(long seed) {
@@ -191,25 +228,83 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
                 .mul(0.2 * 17 / 64.0)
                 .cached2d(CACHE_SIZE_2D, HASH_2D);
 
+        // biome height and volatility don't depend on Y, cached2d evaluates them once for all lattice points of a column
         IBuilder height = ((IBuilder) biomeSource::getHeight)
+                .withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> biomeSource.getHeightBounds(minX, minZ, maxX, maxZ))
+                .cached2d(CACHE_SIZE_2D, HASH_2D)
                 .mul(conf.heightFactor)
                 .add(conf.heightOffset);
 
         double specialVariationFactor = conf.specialHeightVariationFactorBelowAverageY;
+        IBuilder specialVariation = ((IBuilder) (x, y, z) -> height.get(x, y, z) > y ? specialVariationFactor : 1)
+                .withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> {
+                    Interval heightBounds = height.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+                    if (heightBounds.min > maxY) {
+                        return Interval.of(specialVariationFactor);
+                    }
+                    if (heightBounds.max <= minY) {
+                        return Interval.of(1);
+                    }
+                    return Interval.of(specialVariationFactor, 1);
+                });
         IBuilder volatility = ((IBuilder) biomeSource::getVolatility)
-                .mul((x, y, z) -> height.get(x, y, z) > y ? specialVariationFactor : 1)
+                .withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> biomeSource.getVolatilityBounds(minX, minZ, maxX, maxZ))
+                .cached2d(CACHE_SIZE_2D, HASH_2D)
+                .mul(specialVariation)
                 .mul(conf.heightVariationFactor)
                 .add(conf.heightVariationOffset);
 
-        this.terrainBuilder = selector
+        IBuilder blockY = ((IBuilder) (x, y, z) -> y)
+                .withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> Interval.of(minY, maxY));
+
+        IBuilder terrain = selector
                 .lerp(low, high).add(randomHeight2d).mul(volatility).add(height)
-                .sub(volatility.signum().mul((x, y, z) -> y))
-                .cached(CACHE_SIZE_3D, HASH_3D);
+                .sub(volatility.signum().mul(blockY));
+        int stepXZ = latticeStep(conf.densityLatticeStepXZ);
+        int stepY = latticeStep(conf.densityLatticeStepY);
+        this.latticeStep = new Vec3i(stepXZ, stepY, stepXZ);
+        // each lattice point is shared by up to 8 cubes, with the default step one block of the cache holds the lattice
+        // points of one cube
+        int blockSizeXZ = Math.min(ICube.SIZE / stepXZ, 4);
+        terrain = terrain.cachedLattice(LATTICE_CACHE_SIZE, stepXZ, stepY, stepXZ,
+                blockSizeXZ, Math.min(ICube.SIZE / stepY, 4), blockSizeXZ);
+        if (conf.adaptiveDensityLattice) {
+            // coarse steps have to divide cube size too, so that every run of cubes starts on the coarse lattice
+            int factorXZ = stepXZ < ICube.SIZE ? 2 : 1;
+            terrain = terrain.adaptiveLattice(factorXZ, stepY < ICube.SIZE ? 2 : 1, factorXZ, conf.adaptiveDensityLatticeThreshold);
+        }
+        this.terrainBuilder = CustomCubicConfig.compileDensityFunction ? terrain.compile() : terrain;
+        this.terrainBuilderTree = terrain;
 
         this.replacers = new IBiomeBlockReplacer[conf.replacers.size()];
+        this.allReplacers = new int[conf.replacers.size()];
         for (int i = 0; i < conf.replacers.size(); i++) {
             this.replacers[i] = IBiomeBlockReplacer.create(seed, conf.replacers.get(i));
+            this.allReplacers[i] = i;
+        }
+        this.replacerChains = new ReplacerChainCompiler(replacers, CustomCubicConfig.compileReplacers);
+        this.biomeChains = new IdentityHashMap<>();
+        for (Biome biome : ForgeRegistries.BIOMES) {
+            biomeChains.put(biome, replacerChains.forBiome(biomeSource.getReplacerFlags(biome)));
+        }
+    }
+
+    // area generators create their biome providers from settings, see CustomCubicWorldType.makeBiomeProvider
+    private static boolean areasUseGenLayers(CustomGeneratorSettings settings) {
+        if (settings.cubeAreas == null) {
+            return false;
         }
+        for (Map.Entry<CustomGeneratorSettings.IntAABB, CustomGeneratorSettings> area : settings.cubeAreas.map) {
+            if (area.getValue().biome < 0 || areasUseGenLayers(area.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // lattice steps have to divide cube size
+    private static int latticeStep(int step) {
+        return Integer.highestOneBit(Math.max(1, Math.min(step, ICube.SIZE)));
     }
 
     @Override
@@ -220,21 +315,63 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
     @Override
     public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ, CubePrimer primer) {
         if (!areaGenerators.isEmpty()) {
-            for (CustomGeneratorSettings.IntAABB aabb : areaGenerators.keySet()) {
-                if (!aabb.contains(cubeX, cubeY, cubeZ)) {
-                    continue;
-                }
-                return areaGenerators.get(aabb).generateCube(cubeX, cubeY, cubeZ, primer);
+            CustomTerrainGenerator areaGenerator = areaGenerators.get(cubeX, cubeY, cubeZ);
+            if (areaGenerator != null) {
+                return areaGenerator.generateCube(cubeX, cubeY, cubeZ, primer);
             }
         }
-        generate(primer, cubeX, cubeY, cubeZ);
-        generateStructures(primer, new CubePos(cubeX, cubeY, cubeZ));
-        if (fillCubeBiomes) {
-            fill3dBiomes(cubeX, cubeY, cubeZ, primer);
-        }
+        CubePrimer[] primers = {primer};
+        generateStack(primers, 0, 1, cubeX, cubeY, cubeZ);
         return primer;
     }
 
+    /**
+     * Generates a vertical stack of cubes in one column, the same way {@link #generateCube(int, int, int, CubePrimer)}
+     * does for each of them. Work that doesn't depend on Y, like biome data of the column and 2d noise, is done once
+     * for the whole stack instead of once per cube.
+     *
+     * @param primers primers for cubes from minCubeY upwards, entries are replaced with the generated cubes. Null
+     *        entries are filled with new primers.
+     * @return the primers array
+     */
+    public CubePrimer[] generateCubeStack(int cubeX, int minCubeY, int cubeZ, CubePrimer[] primers) {
+        for (int i = 0; i < primers.length; i++) {
+            if (primers[i] == null) {
+                primers[i] = new CubePrimer();
+            }
+        }
+        if (areaGenerators.isEmpty()) {
+            generateStack(primers, 0, primers.length, cubeX, minCubeY, cubeZ);
+            return primers;
+        }
+        // cubes in areas with different settings fall back to the single cube path, the rest is still batched
+        int runStart = 0;
+        for (int i = 0; i < primers.length; i++) {
+            CustomTerrainGenerator areaGenerator = areaGenerators.get(cubeX, minCubeY + i, cubeZ);
+            if (areaGenerator != null) {
+                generateStack(primers, runStart, i - runStart, cubeX, minCubeY + runStart, cubeZ);
+                primers[i] = areaGenerator.generateCube(cubeX, minCubeY + i, cubeZ, primers[i]);
+                runStart = i + 1;
+            }
+        }
+        generateStack(primers, runStart, primers.length - runStart, cubeX, minCubeY + runStart, cubeZ);
+        return primers;
+    }
+
+    private void generateStack(CubePrimer[] primers, int offset, int count, int cubeX, int minCubeY, int cubeZ) {
+        if (count == 0) {
+            return;
+        }
+        generate(primers, offset, count, cubeX, minCubeY, cubeZ);
+        for (int i = 0; i < count; i++) {
+            int cubeY = minCubeY + i;
+            generateStructures(primers[offset + i], new CubePos(cubeX, cubeY, cubeZ));
+            if (fillCubeBiomes) {
+                fill3dBiomes(cubeX, cubeY, cubeZ, primers[offset + i]);
+            }
+        }
+    }
+
     private void fill3dBiomes(int cubeX, int cubeY, int cubeZ, CubePrimer primer) {
         int minX = cubeX * 4;
         int minY = cubeY * 4;
@@ -251,11 +388,9 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
 
     @Override public void populate(ICube cube) {
         if (!areaGenerators.isEmpty()) {
-            for (CustomGeneratorSettings.IntAABB aabb : areaGenerators.keySet()) {
-                if (!aabb.contains(cube.getX(), cube.getY(), cube.getZ())) {
-                    continue;
-                }
-                areaGenerators.get(aabb).populate(cube);
+            CustomTerrainGenerator areaGenerator = areaGenerators.get(cube.getX(), cube.getY(), cube.getZ());
+            if (areaGenerator != null) {
+                areaGenerator.populate(cube);
                 return;
             }
         }
@@ -273,37 +408,57 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
             // that depends only in world seed and cube X/Z
             // but using this for surface generation doesn't cause any
             // noticeable issues
-            Random rand = Coords.coordsSeedRandom(cube.getWorld().getSeed(), cube.getX(), cube.getY(), cube.getZ());
+            Random rand = conf.populationRandomStreams ?
+                    PopulationRandom.forCube(cube.getWorld().getSeed(), cube.getX(), cube.getY(), cube.getZ()) :
+                    Coords.coordsSeedRandom(cube.getWorld().getSeed(), cube.getX(), cube.getY(), cube.getZ());
 
             MinecraftForge.EVENT_BUS.post(new PopulateCubeEvent.Pre(world, rand, pos.getX(), pos.getY(), pos.getZ(), false));
-            strongholds.generateStructure(world, rand, pos);
-            populators.get(cubicBiome.getBiome()).generate(world, rand, pos, cubicBiome.getBiome());
+            long time = GenerationProfiler.start();
+            synchronized (strongholds) {
+                strongholds.generateStructure(world, PopulationRandom.fork(rand, "strongholds"), pos);
+            }
+            GenerationProfiler.end(GenerationProfiler.Stage.STRONGHOLDS, time);
+
+            time = GenerationProfiler.start();
+            populators.get(cubicBiome.getBiome()).generate(world, PopulationRandom.fork(rand, "decorators"), pos, cubicBiome.getBiome());
+            GenerationProfiler.endDecorator(cubicBiome.getBiome(), time);
+
             MinecraftForge.EVENT_BUS.post(new PopulateCubeEvent.Post(world, rand, pos.getX(), pos.getY(), pos.getZ(), false));
-            CubeGeneratorsRegistry.generateWorld(world, rand, pos, cubicBiome.getBiome()); }
+
+            time = GenerationProfiler.start();
+            CubeGeneratorsRegistry.generateWorld(world, PopulationRandom.fork(rand, "populators"), pos, cubicBiome.getBiome());
+            GenerationProfiler.end(GenerationProfiler.Stage.POPULATORS, time);
+        }
     }
 
     @Override
     public void recreateStructures(ICube cube) {
-        this.strongholds.generate(world, null, cube.getCoords());
+        synchronized (this.strongholds) {
+            this.strongholds.generate(world, null, cube.getCoords());
+        }
     }
 
     @Nullable @Override
     public BlockPos getClosestStructure(String name, BlockPos pos, boolean findUnexplored) {
         if ("Stronghold".equals(name)) {
-            return strongholds.getNearestStructurePos((World) world, pos, true);
+            synchronized (strongholds) {
+                return strongholds.getNearestStructurePos((World) world, pos, true);
+            }
         }
         return null;
     }
 
     /**
-     * Generate the cube as the specified location
+     * Generate terrain of a vertical stack of cubes
      *
-     * @param cubePrimer cube primer to use
+     * @param primers cube primers to use
+     * @param offset index of the primer for the lowest cube
+     * @param count amount of cubes
      * @param cubeX cube x location
-     * @param cubeY cube y location
+     * @param minCubeY y location of the lowest cube
      * @param cubeZ cube z location
      */
-    private void generate(final CubePrimer cubePrimer, int cubeX, int cubeY, int cubeZ) {
+    private void generate(CubePrimer[] primers, int offset, int count, int cubeX, int minCubeY, int cubeZ) {
         // when debugging is enabled, allow reloading generator settings after pressing L
         // no need to restart after applying changes.
         // Seed it changed to some constant because world isn't easily accessible here
@@ -311,48 +466,171 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
             initGenerator(42);
         }
 
-        BlockPos start = new BlockPos(cubeX * 4, cubeY * 2, cubeZ * 4);
-        BlockPos end = start.add(4, 2, 4);
-        terrainBuilder.forEachScaled(start, end, new Vec3i(4, 8, 4),
-                (x, y, z, dx, dy, dz, v) ->
-                        cubePrimer.setBlockState(
-                                blockToLocal(x), blockToLocal(y), blockToLocal(z),
-                                getBlock(x, y, z, dx, dy, dz, v))
-        );
+        int minX = Coords.cubeToMinBlock(cubeX);
+        int minZ = Coords.cubeToMinBlock(cubeZ);
+        ColumnStack stack = columnStacks.get();
+        stack.loadBiomes(biomeSource, biomeChains, minX, Coords.cubeToMinBlock(minCubeY), minZ);
+
+        // cubes that need density are collected into runs, density of each run is evaluated at once
+        int runLength = 0;
+        for (int i = 0; i < count; i++) {
+            int cubeY = minCubeY + i;
+            int minY = Coords.cubeToMinBlock(cubeY);
+            // the density lattice used for the cube includes points on the min corner of neighbor cubes
+            Interval bounds = terrainBuilderTree.getBounds(minX, minY, minZ, minX + ICube.SIZE, minY + ICube.SIZE, minZ + ICube.SIZE);
+            // interpolation accumulates some rounding error
+            bounds = bounds.expand(Math.max(Math.abs(bounds.min), Math.abs(bounds.max)) * 1e-9 + 1e-9);
+            // gradients are differences of interpolated values divided by lattice step
+            double maxGradient = (bounds.max - bounds.min) / Math.min(latticeStep.getX(), latticeStep.getY());
+            int[] activeReplacers = getActiveReplacers(minY, minY + ICube.SIZE - 1, bounds, maxGradient);
+            CubeReplacers cubeReplacers = new CubeReplacers(activeReplacers, replacerChains.select(activeReplacers, minY, minY + ICube.SIZE - 1));
+
+            if (generateWithoutDensity && tryGenerateWithoutDensity(primers[offset + i], minX, minY, minZ, bounds, maxGradient, cubeReplacers, stack)) {
+                generateWithDensity(primers, offset + i - runLength, runLength, cubeX, cubeY - runLength, cubeZ, stack);
+                runLength = 0;
+                continue;
+            }
+            stack.runReplacers[runLength++] = cubeReplacers;
+            if (runLength == MAX_DENSITY_STACK) {
+                generateWithDensity(primers, offset + i + 1 - runLength, runLength, cubeX, cubeY + 1 - runLength, cubeZ, stack);
+                runLength = 0;
+            }
+        }
+        generateWithDensity(primers, offset + count - runLength, runLength, cubeX, minCubeY + count - runLength, cubeZ, stack);
+    }
+
+    /**
+     * Evaluates density for a run of cubes collected by {@link #generate(CubePrimer[], int, int, int, int, int)}, and
+     * generates them.
+     */
+    private void generateWithDensity(CubePrimer[] primers, int offset, int count, int cubeX, int minCubeY, int cubeZ, ColumnStack stack) {
+        if (count == 0) {
+            return;
+        }
+        int pointsXZ = ICube.SIZE / latticeStep.getX();
+        int pointsY = ICube.SIZE / latticeStep.getY();
+        BlockPos start = new BlockPos(cubeX * pointsXZ, minCubeY * pointsY, cubeZ * pointsXZ);
+        BlockPos end = start.add(pointsXZ, pointsY * count, pointsXZ);
+        stack.startRun(minCubeY, count);
+        // gradient components no active replacer uses aren't computed
+        Gradients gradients = Gradients.NONE;
+        for (int i = 0; i < count; i++) {
+            for (int replacer : stack.runReplacers[i].activeReplacers) {
+                gradients = gradients.union(replacers[replacer].getUsedGradients());
+            }
+        }
+
+        long time = GenerationProfiler.start();
+        terrainBuilder.forEachScaled(start, end, latticeStep, stack, gradients);
+        GenerationProfiler.end(GenerationProfiler.Stage.DENSITY, time);
+
+        time = GenerationProfiler.start();
+        int minX = Coords.cubeToMinBlock(cubeX);
+        int minZ = Coords.cubeToMinBlock(cubeZ);
+        for (int i = 0; i < count; i++) {
+            replaceColumns(primers[offset + i], stack.runColumns[i], minX, Coords.cubeToMinBlock(minCubeY + i), minZ,
+                    stack.runReplacers[i], stack);
+        }
+        GenerationProfiler.end(GenerationProfiler.Stage.REPLACERS, time);
+    }
 
+    /**
+     * Returns indices of replacers that may change any block in the given Y range, given density bounds. Replacers
+     * working only near the surface are skipped for cubes that are entirely above or below it.
+     */
+    private int[] getActiveReplacers(int minY, int maxY, Interval bounds, double maxGradient) {
+        if (!skipNoOpReplacers) {
+            return allReplacers;
+        }
+        int[] active = new int[replacers.length];
+        int count = 0;
+        for (int i = 0; i < replacers.length; i++) {
+            if (!replacers[i].isNoOp(minY, maxY, bounds.min, bounds.max, maxGradient)) {
+                active[count++] = i;
+            }
+        }
+        return count == replacers.length ? allReplacers : Arrays.copyOf(active, count);
     }
 
     /**
-     * Retrieve the blockstate appropriate for the specified builder entry
+     * Generates the cube without evaluating density, if bounds of the density function show that no replacer would
+     * produce different blocks depending on the exact density value. This is the case for most cubes far above or
+     * below the surface.
      *
-     * @return The block state
+     * @return true if the cube has been generated
      */
-    private IBlockState getBlock(int x, int y, int z, double dx, double dy, double dz, double density) {
-        // TODO: generate bytecode for this method with the main loop unrolled and types inlined\
-        BiomeSource.ReplacerData biomeData = biomeSource.getReplacers(x, y, z);
-        Biome biome = biomeData.biome;
-        long[] replacerFlags = biomeData.replacerFlags;
-        IBlockState block = Blocks.AIR.getDefaultState();
-        int size = replacers.length;
-        for (int i = 0; i < size; i++) {
-            if ((replacerFlags[i >> 6] & (1L << (i & 63))) == 0) {
-                continue;
+    private boolean tryGenerateWithoutDensity(CubePrimer cubePrimer, int minX, int minY, int minZ,
+            Interval bounds, double maxGradient, CubeReplacers cubeReplacers, ColumnStack stack) {
+        if (!bounds.isBounded()) {
+            return false;
+        }
+        for (int i : cubeReplacers.activeReplacers) {
+            if (!replacers[i].isDensityIndependent(minY, minY + ICube.SIZE - 1, bounds.min, bounds.max, maxGradient)) {
+                return false;
+            }
+        }
+        CubeColumns columns = stack.constantColumns;
+        columns.fill(bounds.min);
+
+        long time = GenerationProfiler.start();
+        replaceColumns(cubePrimer, columns, minX, minY, minZ, cubeReplacers, stack);
+        GenerationProfiler.end(GenerationProfiler.Stage.REPLACERS, time);
+        return true;
+    }
+
+    /**
+     * Applies block replacers to each column of the cube, and sets the resulting blocks in the primer
+     */
+    private void replaceColumns(CubePrimer cubePrimer, CubeColumns columns, int minX, int minY, int minZ,
+            CubeReplacers cubeReplacers, ColumnStack stack) {
+        IBlockState air = Blocks.AIR.getDefaultState();
+        for (int localX = 0; localX < ICube.SIZE; localX++) {
+            for (int localZ = 0; localZ < ICube.SIZE; localZ++) {
+                ReplacerColumn column = columns.get(localX, localZ);
+                column.x = minX + localX;
+                column.z = minZ + localZ;
+                column.minY = minY;
+                int index = CubeColumns.index(localX, localZ);
+                column.biome = stack.biomes[index];
+                Arrays.fill(column.blocks, air);
+
+                ReplacerChain chain = cubeReplacers.getChain(stack.biomeChains[index]);
+                if (replacerChainListener != null) {
+                    replacerChainListener.accept(chain);
+                }
+                chain.replaceColumn(column);
+
+                for (int localY = 0; localY < ICube.SIZE; localY++) {
+                    cubePrimer.setBlockState(localX, localY, localZ, column.blocks[localY]);
+                }
             }
-            block = replacers[i].getReplacedBlock(block, biome, x, y, z, dx, dy, dz, density);
         }
-        return block;
     }
 
     public void generateStructures(CubePrimer cube, CubePos cubePos) {
         // generate world populator
         if (this.conf.caves) {
+            long time = GenerationProfiler.start();
             this.caveGenerator.generate(world, cube, cubePos);
+            GenerationProfiler.end(GenerationProfiler.Stage.CAVES, time);
+        }
+        if (this.conf.noiseCaves) {
+            long time = GenerationProfiler.start();
+            this.noiseCaveGenerator.generate(world, cube, cubePos);
+            GenerationProfiler.end(GenerationProfiler.Stage.NOISE_CAVES, time);
         }
         if (this.conf.ravines) {
+            long time = GenerationProfiler.start();
             this.ravineGenerator.generate(world, cube, cubePos);
+            GenerationProfiler.end(GenerationProfiler.Stage.RAVINES, time);
         }
         if (this.conf.strongholds) {
-            this.strongholds.generate(world, cube, cubePos);
+            long time = GenerationProfiler.start();
+            // structure data is shared, and cubes may be generated from multiple threads with concurrentGeneration
+            synchronized (this.strongholds) {
+                this.strongholds.generate(world, cube, cubePos);
+            }
+            GenerationProfiler.end(GenerationProfiler.Stage.STRONGHOLDS, time);
         }
     }
 
@@ -372,7 +650,142 @@ public class CustomTerrainGenerator extends BasicCubeGenerator {
         return conf;
     }
 
+    /**
+     * The terrain density function used to generate cubes, compiled if enabled in config
+     */
+    public IBuilder getDensityBuilder() {
+        return terrainBuilder;
+    }
+
+    /**
+     * Distance between density lattice points the density function is evaluated at
+     */
+    public Vec3i getLatticeStep() {
+        return latticeStep;
+    }
+
     public Map<Biome, ICubicPopulator> getPopulators() {
         return populators;
     }
+
+    /**
+     * Returns true if terrain can be generated from multiple threads at once. This is the case when the generator was
+     * built with {@link CustomCubicConfig#concurrentGeneration} enabled, and neither it nor its cube areas use vanilla
+     * GenLayer biome generation, which shares static state with the server thread.
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Replacers selected for one cube. Neighbouring columns are mostly the same biome, so the last chain is remembered.
+     */
+    private static final class CubeReplacers {
+
+        final int[] activeReplacers;
+        private final ReplacerChainCompiler.Selection selection;
+        @Nullable private ReplacerChainCompiler.BiomeChains lastBiome;
+        @Nullable private ReplacerChain lastChain;
+
+        CubeReplacers(int[] activeReplacers, ReplacerChainCompiler.Selection selection) {
+            this.activeReplacers = activeReplacers;
+            this.selection = selection;
+        }
+
+        ReplacerChain getChain(ReplacerChainCompiler.BiomeChains biome) {
+            if (biome != lastBiome) {
+                lastChain = biome.getChain(selection);
+                lastBiome = biome;
+            }
+            return lastChain;
+        }
+    }
+
+    /**
+     * Density values and gradients of one cube, stored by column.
+     */
+    private static final class CubeColumns implements NoiseConsumer {
+
+        private final ReplacerColumn[] columns = new ReplacerColumn[ICube.SIZE * ICube.SIZE];
+
+        CubeColumns() {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ReplacerColumn();
+            }
+        }
+
+        static int index(int localX, int localZ) {
+            return localX * ICube.SIZE + localZ;
+        }
+
+        ReplacerColumn get(int localX, int localZ) {
+            return columns[index(localX, localZ)];
+        }
+
+        @Override public void accept(int x, int y, int z, double dx, double dy, double dz, double density) {
+            ReplacerColumn column = get(blockToLocal(x), blockToLocal(z));
+            int localY = blockToLocal(y);
+            column.dx[localY] = dx;
+            column.dy[localY] = dy;
+            column.dz[localY] = dz;
+            column.density[localY] = density;
+        }
+
+        // constant density and zero gradient everywhere
+        void fill(double density) {
+            for (ReplacerColumn column : columns) {
+                Arrays.fill(column.dx, 0);
+                Arrays.fill(column.dy, 0);
+                Arrays.fill(column.dz, 0);
+                Arrays.fill(column.density, density);
+            }
+        }
+    }
+
+    /**
+     * Per-thread state for generating a vertical stack of cubes in one column. Biome data is resolved once for the
+     * column, and density of a run of cubes is stored by cube.
+     */
+    private static final class ColumnStack implements NoiseConsumer {
+
+        // biome and its replacer chains of each block column, indexed like CubeColumns
+        final Biome[] biomes = new Biome[ICube.SIZE * ICube.SIZE];
+        final ReplacerChainCompiler.BiomeChains[] biomeChains = new ReplacerChainCompiler.BiomeChains[ICube.SIZE * ICube.SIZE];
+
+        final CubeColumns constantColumns = new CubeColumns();
+        // columns are created on first use, most runs are only a few cubes around the surface
+        final CubeColumns[] runColumns = new CubeColumns[MAX_DENSITY_STACK];
+        final CubeReplacers[] runReplacers = new CubeReplacers[MAX_DENSITY_STACK];
+        private int runMinCubeY;
+
+        void loadBiomes(BiomeSource biomeSource, Map<Biome, ReplacerChainCompiler.BiomeChains> chains, int minX, int minY, int minZ) {
+            Biome lastBiome = null;
+            ReplacerChainCompiler.BiomeChains lastChains = null;
+            for (int localX = 0; localX < ICube.SIZE; localX++) {
+                for (int localZ = 0; localZ < ICube.SIZE; localZ++) {
+                    Biome biome = biomeSource.getReplacers(minX + localX, minY, minZ + localZ).biome;
+                    if (biome != lastBiome) {
+                        lastChains = chains.get(biome);
+                        lastBiome = biome;
+                    }
+                    int index = CubeColumns.index(localX, localZ);
+                    biomes[index] = biome;
+                    biomeChains[index] = lastChains;
+                }
+            }
+        }
+
+        void startRun(int minCubeY, int count) {
+            this.runMinCubeY = minCubeY;
+            for (int i = 0; i < count; i++) {
+                if (runColumns[i] == null) {
+                    runColumns[i] = new CubeColumns();
+                }
+            }
+        }
+
+        @Override public void accept(int x, int y, int z, double dx, double dy, double dz, double density) {
+            runColumns[Coords.blockToCube(y) - runMinCubeY].accept(x, y, z, dx, dy, dz, density);
+        }
+    }
 }
@@ -27,12 +27,12 @@ import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
 import io.github.opencubicchunks.cubicchunks.api.world.ICube;
 import io.github.opencubicchunks.cubicchunks.cubicgen.ConversionUtils;
-import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCache;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash2d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCache2d;
 import io.github.opencubicchunks.cubicchunks.cubicgen.common.biome.CubicBiome;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import mcp.MethodsReturnNonnullByDefault;
-import net.minecraft.util.math.ChunkPos;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.BiomeProvider;
@@ -41,8 +41,8 @@ import net.minecraftforge.fml.common.registry.ForgeRegistries;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.ToIntFunction;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 // a small hack to get biome generation working with the new system
@@ -59,8 +59,11 @@ public class BiomeSource {
     private static final int SECTIONS_CACHE_RADIUS = 16;
     private static final int SECTIONS_CACHE_SIZE = SECTIONS_CACHE_RADIUS * SECTIONS_CACHE_RADIUS;
 
-    private static final ToIntFunction<ChunkPos> HASH_CHUNKS = v -> v.x * CHUNKS_CACHE_RADIUS + v.z;
-    private static final ToIntFunction<Vec3i> HASH_SECTIONS = v -> v.getX() * SECTIONS_CACHE_RADIUS + v.getZ();
+    private static final CoordHash2d HASH_CHUNKS = (x, z) -> x * CHUNKS_CACHE_RADIUS + z;
+    private static final CoordHash2d HASH_SECTIONS = (x, z) -> x * SECTIONS_CACHE_RADIUS + z;
+
+    // larger areas fall back to bounds over all biomes instead of looking at every section
+    private static final int MAX_BOUNDS_AREA_SECTIONS = 16 * 16;
 
     private final Map<Biome, ReplacerData> biomeBlockReplacers = new IdentityHashMap<>();
     private final double[] nearBiomeWeightArray;
@@ -69,14 +72,12 @@ public class BiomeSource {
     private final int smoothRadius;
     private final int smoothDiameter;
 
-    /** Mapping from chunk position to 4x4 sections 4x4 blocks each */
-    private final HashCache<ChunkPos, CubicBiome[]> biomeCacheSectionsChunk;
-    /** Mapping from chunk positions to Cache with sections of 16x16 blocks (chunk) */
-    private final HashCache<ChunkPos, CubicBiome[]> biomeCacheBlocks;
-    /** Mapping from chunk positions to Cache with sections of 16x16 blocks (chunk) */
-    private final HashCache<ChunkPos, ReplacerData[]> biomeBlockReplacerCache;
+    private final Interval heightBounds;
+    private final Interval volatilityBounds;
 
-    private final HashCache<Vec3i, BiomeTerrainData> biomeDataCache;
+    // with concurrent generation each thread has its own caches
+    @Nullable private final Caches caches;
+    @Nullable private final ThreadLocal<Caches> threadCaches;
 
     public BiomeSource(World world, List<CustomGeneratorSettings.ReplacerConfig> replacers, BiomeProvider biomeGen, int smoothRadius) {
         this.biomeGen = biomeGen;
@@ -92,15 +93,30 @@ public class BiomeSource {
             }
         }
 
-        this.biomeCacheSectionsChunk = HashCache.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, this::generateBiomeSections);
-        this.biomeCacheBlocks = HashCache.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, this::generateBiomes);
-        this.biomeDataCache = HashCache.create(SECTIONS_CACHE_SIZE, HASH_SECTIONS, this::generateBiomeTerrainData);
-        this.biomeBlockReplacerCache = HashCache.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, this::generateReplacers);
+        if (CustomCubicConfig.concurrentGeneration) {
+            this.caches = null;
+            this.threadCaches = ThreadLocal.withInitial(Caches::new);
+        } else {
+            this.caches = new Caches();
+            this.threadCaches = null;
+        }
 
+        float minHeight = Float.POSITIVE_INFINITY, maxHeight = Float.NEGATIVE_INFINITY;
+        float minVolatility = Float.POSITIVE_INFINITY, maxVolatility = Float.NEGATIVE_INFINITY;
         for (Biome biome : ForgeRegistries.BIOMES) {
             long[] replacerFlags = replacerFlagsForBiome(biome, replacers);
             biomeBlockReplacers.put(biome, new ReplacerData(replacerFlags, biome));
+            minHeight = Math.min(minHeight, biome.getBaseHeight());
+            maxHeight = Math.max(maxHeight, biome.getBaseHeight());
+            minVolatility = Math.min(minVolatility, biome.getHeightVariation());
+            maxVolatility = Math.max(maxVolatility, biome.getHeightVariation());
         }
+        // Height and volatility are weighted averages of biome values, and the conversions are increasing functions.
+        // The margin is for rounding errors.
+        this.heightBounds = Interval.of(ConversionUtils.biomeHeightVanilla(minHeight), ConversionUtils.biomeHeightVanilla(maxHeight))
+                .expand(1e-3);
+        this.volatilityBounds = Interval.of(ConversionUtils.biomeHeightVariationVanilla(minVolatility),
+                ConversionUtils.biomeHeightVariationVanilla(maxVolatility)).expand(1e-3);
     }
 
     private long[] replacerFlagsForBiome(Biome biome, List<CustomGeneratorSettings.ReplacerConfig> replacers) {
@@ -114,24 +130,24 @@ public class BiomeSource {
         return array;
     }
 
-    private ReplacerData[] generateReplacers(ChunkPos pos) {
-        CubicBiome[] biomes = biomeCacheBlocks.get(pos);
+    private ReplacerData[] generateReplacers(int cubeX, int cubeZ) {
+        CubicBiome[] biomes = caches().biomeCacheBlocks.get(cubeX, cubeZ);
         return this.mapToReplacers(biomes);
     }
 
-    private BiomeTerrainData generateBiomeTerrainData(Vec3i pos) {
+    private BiomeTerrainData generateBiomeTerrainData(int sectionX, int sectionZ) {
 
         // Calculate weighted average of nearby biomes height and volatility
         double smoothVolatility = 0.0F;
         double smoothHeight = 0.0F;
 
         double biomeWeightSum = 0.0F;
-        final Biome centerBiomeConfig = getBiomeForSection(pos.getX(), pos.getZ()).getBiome();
+        final Biome centerBiomeConfig = getBiomeForSection(sectionX, sectionZ).getBiome();
         final int lookRadius = this.smoothRadius;
 
         for (int nextX = -lookRadius; nextX <= lookRadius; nextX++) {
             for (int nextZ = -lookRadius; nextZ <= lookRadius; nextZ++) {
-                final Biome biome = getBiomeForSection(pos.getX() + nextX, pos.getZ() + nextZ).getBiome();
+                final Biome biome = getBiomeForSection(sectionX + nextX, sectionZ + nextZ).getBiome();
 
                 final double biomeHeight = biome.getBaseHeight();
                 final double biomeVolatility = biome.getHeightVariation();
@@ -161,17 +177,20 @@ public class BiomeSource {
         return data;
     }
 
-    private CubicBiome[] generateBiomes(ChunkPos pos) {
-        return mapToCubic(biomeGen.getBiomes(null,
-                Coords.cubeToMinBlock(pos.x),
-                Coords.cubeToMinBlock(pos.z),
-                ICube.SIZE, ICube.SIZE));
+    private CubicBiome[] generateBiomes(int cubeX, int cubeZ) {
+        // only called from multiple threads for providers without GenLayers, see CustomTerrainGenerator.isConcurrent
+        Biome[] biomes = biomeGen.getBiomes(null,
+                Coords.cubeToMinBlock(cubeX),
+                Coords.cubeToMinBlock(cubeZ),
+                ICube.SIZE, ICube.SIZE);
+        return mapToCubic(biomes);
     }
 
-    private CubicBiome[] generateBiomeSections(ChunkPos pos) {
-        return mapToCubic(biomeGen.getBiomesForGeneration(null,
-                pos.x * SECTION_SIZE, pos.z * SECTION_SIZE,
-                SECTION_SIZE, SECTION_SIZE));
+    private CubicBiome[] generateBiomeSections(int chunkX, int chunkZ) {
+        Biome[] biomes = biomeGen.getBiomesForGeneration(null,
+                chunkX * SECTION_SIZE, chunkZ * SECTION_SIZE,
+                SECTION_SIZE, SECTION_SIZE);
+        return mapToCubic(biomes);
     }
 
     private CubicBiome[] mapToCubic(Biome[] vanillaBiomes) {
@@ -191,21 +210,95 @@ public class BiomeSource {
     }
 
     public double getHeight(int x, int y, int z) {
-        return biomeDataCache.get(new Vec3i(x / 4.0, 0, z / 4.0)).height;
+        return caches().biomeDataCache.get(Math.floorDiv(x, 4), Math.floorDiv(z, 4)).height;
     }
 
     public double getVolatility(int x, int y, int z) {
-        return biomeDataCache.get(new Vec3i(x / 4.0, 0, z / 4.0)).heightVariation;
+        return caches().biomeDataCache.get(Math.floorDiv(x, 4), Math.floorDiv(z, 4)).heightVariation;
+    }
+
+    /**
+     * Returns range of values {@link #getHeight(int, int, int)} can return anywhere.
+     */
+    public Interval getHeightBounds() {
+        return heightBounds;
+    }
+
+    /**
+     * Returns range of values {@link #getVolatility(int, int, int)} can return anywhere.
+     */
+    public Interval getVolatilityBounds() {
+        return volatilityBounds;
+    }
+
+    /**
+     * Returns range of values {@link #getHeight(int, int, int)} can return for blocks with X and Z coordinates between
+     * the given min and max coordinates (inclusive).
+     */
+    public Interval getHeightBounds(int minX, int minZ, int maxX, int maxZ) {
+        return getColumnBounds(minX, minZ, maxX, maxZ).height;
+    }
+
+    /**
+     * Returns range of values {@link #getVolatility(int, int, int)} can return for blocks with X and Z coordinates
+     * between the given min and max coordinates (inclusive).
+     */
+    public Interval getVolatilityBounds(int minX, int minZ, int maxX, int maxZ) {
+        return getColumnBounds(minX, minZ, maxX, maxZ).volatility;
     }
 
     public CubicBiome getBiome(int blockX, int blockY, int blockZ) {
-        ChunkPos pos = new ChunkPos(Coords.blockToCube(blockX), Coords.blockToCube(blockZ));
-        return biomeCacheBlocks.get(pos)[Coords.blockToLocal(blockZ) << 4 | Coords.blockToLocal(blockX)];
+        return caches().biomeCacheBlocks.get(Coords.blockToCube(blockX), Coords.blockToCube(blockZ))[Coords.blockToLocal(blockZ) << 4 | Coords.blockToLocal(blockX)];
+    }
+
+    /**
+     * Returns bit set of replacers enabled for the biome
+     */
+    public long[] getReplacerFlags(Biome biome) {
+        return biomeBlockReplacers.get(biome).replacerFlags;
     }
 
     public ReplacerData getReplacers(int blockX, int blockY, int blockZ) {
-        ChunkPos pos = new ChunkPos(Coords.blockToCube(blockX), Coords.blockToCube(blockZ));
-        return biomeBlockReplacerCache.get(pos)[Coords.blockToLocal(blockZ) << 4 | Coords.blockToLocal(blockX)];
+        return caches().biomeBlockReplacerCache.get(Coords.blockToCube(blockX), Coords.blockToCube(blockZ))[Coords.blockToLocal(blockZ) << 4 | Coords.blockToLocal(blockX)];
+    }
+
+    private ColumnBounds getColumnBounds(int minX, int minZ, int maxX, int maxZ) {
+        int cubeX = Coords.blockToCube(minX);
+        int cubeZ = Coords.blockToCube(minZ);
+        // the density lattice for a cube includes the min corner of +X and +Z neighbors, so that's what gets cached
+        if (minX == Coords.cubeToMinBlock(cubeX) && minZ == Coords.cubeToMinBlock(cubeZ)
+                && maxX == minX + ICube.SIZE && maxZ == minZ + ICube.SIZE) {
+            return caches().columnBoundsCache.get(cubeX, cubeZ);
+        }
+        return generateColumnBounds(minX, minZ, maxX, maxZ);
+    }
+
+    private ColumnBounds generateCubeColumnBounds(int cubeX, int cubeZ) {
+        int minX = Coords.cubeToMinBlock(cubeX);
+        int minZ = Coords.cubeToMinBlock(cubeZ);
+        return generateColumnBounds(minX, minZ, minX + ICube.SIZE, minZ + ICube.SIZE);
+    }
+
+    private ColumnBounds generateColumnBounds(int minX, int minZ, int maxX, int maxZ) {
+        int minSectionX = Math.floorDiv(minX, SECTION_SIZE), maxSectionX = Math.floorDiv(maxX, SECTION_SIZE);
+        int minSectionZ = Math.floorDiv(minZ, SECTION_SIZE), maxSectionZ = Math.floorDiv(maxZ, SECTION_SIZE);
+        if ((long) (maxSectionX - minSectionX + 1) * (maxSectionZ - minSectionZ + 1) > MAX_BOUNDS_AREA_SECTIONS) {
+            return new ColumnBounds(heightBounds, volatilityBounds);
+        }
+        double minHeight = Double.POSITIVE_INFINITY, maxHeight = Double.NEGATIVE_INFINITY;
+        double minVolatility = Double.POSITIVE_INFINITY, maxVolatility = Double.NEGATIVE_INFINITY;
+        HashCache2d<BiomeTerrainData> biomeData = caches().biomeDataCache;
+        for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++) {
+            for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++) {
+                BiomeTerrainData data = biomeData.get(sectionX, sectionZ);
+                minHeight = Math.min(minHeight, data.height);
+                maxHeight = Math.max(maxHeight, data.height);
+                minVolatility = Math.min(minVolatility, data.heightVariation);
+                maxVolatility = Math.max(maxVolatility, data.heightVariation);
+            }
+        }
+        // these are exactly the values getHeight and getVolatility return, no margin needed
+        return new ColumnBounds(Interval.of(minHeight, maxHeight), Interval.of(minVolatility, maxVolatility));
     }
 
     private CubicBiome getBiomeForSection(int x, int z) {
@@ -215,13 +308,40 @@ public class BiomeSource {
         int chunkX = Math.floorDiv(x, 4);
         int chunkZ = Math.floorDiv(z, 4);
 
-        return biomeCacheSectionsChunk.get(new ChunkPos(chunkX, chunkZ))[localX + localZ * 4];
+        return caches().biomeCacheSectionsChunk.get(chunkX, chunkZ)[localX + localZ * 4];
     }
 
     private double calcBiomeWeight(int nextX, int nextZ, double biomeHeight) {
         return this.nearBiomeWeightArray[nextX + this.smoothRadius + (nextZ + this.smoothRadius) * this.smoothDiameter] / (biomeHeight + 2.0F);
     }
 
+    private Caches caches() {
+        return caches != null ? caches : threadCaches.get();
+    }
+
+    private final class Caches {
+        /** Mapping from chunk position to 4x4 sections 4x4 blocks each */
+        final HashCache2d<CubicBiome[]> biomeCacheSectionsChunk = HashCache2d.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, BiomeSource.this::generateBiomeSections);
+        /** Mapping from chunk positions to Cache with sections of 16x16 blocks (chunk) */
+        final HashCache2d<CubicBiome[]> biomeCacheBlocks = HashCache2d.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, BiomeSource.this::generateBiomes);
+        /** Mapping from chunk positions to Cache with sections of 16x16 blocks (chunk) */
+        final HashCache2d<ReplacerData[]> biomeBlockReplacerCache = HashCache2d.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, BiomeSource.this::generateReplacers);
+
+        final HashCache2d<BiomeTerrainData> biomeDataCache = HashCache2d.create(SECTIONS_CACHE_SIZE, HASH_SECTIONS, BiomeSource.this::generateBiomeTerrainData);
+        /** Mapping from chunk positions to height and volatility bounds of that chunk, including the min corner of +X/+Z neighbors */
+        final HashCache2d<ColumnBounds> columnBoundsCache = HashCache2d.create(CHUNKS_CACHE_SIZE, HASH_CHUNKS, BiomeSource.this::generateCubeColumnBounds);
+    }
+
+    private static final class ColumnBounds {
+
+        final Interval height, volatility;
+
+        ColumnBounds(Interval height, Interval volatility) {
+            this.height = height;
+            this.volatility = volatility;
+        }
+    }
+
     private static final class BiomeTerrainData {
 
         double height, heightVariation;
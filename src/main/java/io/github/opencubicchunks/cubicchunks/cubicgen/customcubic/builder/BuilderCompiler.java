@@ -0,0 +1,496 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import gnu.trove.function.TDoubleFunction;
+import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Flattens {@link BuilderNode} expression trees into a smaller tree of specialized evaluators.
+ * <p>
+ * Each run of operations with constant arguments ({@code add(c)}, {@code mul(c)}, {@code clamp}, {@code divIf}...) is
+ * fused into a single node that evaluates all of them in one loop, and the well known conditions from {@link IBuilder}
+ * are tested inline. The operations are done in exactly the same order as in the original tree, so the results are
+ * bit-for-bit identical.
+ * <p>
+ * The evaluators are a fixed set of classes, no bytecode is generated. A density function is made of few, large
+ * nodes that already loop over whole arrays in {@link IBuilder#fill}, so generated code would mostly save virtual
+ * calls that are paid once per array. Replacers are called once per block, so {@link
+ * io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChainCompiler} does generate classes for
+ * them, using the ASM library that comes with Forge.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class BuilderCompiler {
+
+    public static IBuilder compile(IBuilder builder) {
+        return compile(builder, new IdentityHashMap<>());
+    }
+
+    // nodes used in more than one place are compiled only once, so that they still share caches
+    private static IBuilder compile(IBuilder builder, Map<IBuilder, IBuilder> compiled) {
+        IBuilder result = compiled.get(builder);
+        if (result == null) {
+            result = compileNode(builder, compiled);
+            compiled.put(builder, result);
+        }
+        return result;
+    }
+
+    private static IBuilder compileNode(IBuilder builder, Map<IBuilder, IBuilder> compiled) {
+        if (builder instanceof BuilderNode.Apply) {
+            return compileChain((BuilderNode.Apply) builder, compiled);
+        }
+        if (builder instanceof BuilderNode.Binary) {
+            BuilderNode.Binary node = (BuilderNode.Binary) builder;
+            IBuilder left = compile(node.left, compiled);
+            IBuilder right = compile(node.right, compiled);
+            switch (node.op) {
+                case ADD:
+                    return new Add(left, right);
+                case SUB:
+                    return new Sub(left, right);
+                case MUL:
+                    return new Mul(left, right, node.right);
+                case DIV:
+                    return new Div(left, right);
+                default:
+                    throw new AssertionError();
+            }
+        }
+        if (builder instanceof BuilderNode.BinaryIf) {
+            BuilderNode.BinaryIf node = (BuilderNode.BinaryIf) builder;
+            return new BuilderNode.BinaryIf(node.op, compile(node.left, compiled), node.condition, compile(node.right, compiled));
+        }
+        if (builder instanceof BuilderNode.Lerp) {
+            BuilderNode.Lerp node = (BuilderNode.Lerp) builder;
+            return new Lerp(compile(node.selector, compiled), compile(node.low, compiled), compile(node.high, compiled), node.high);
+        }
+        if (builder instanceof BuilderNode.Cached) {
+            BuilderNode.Cached node = (BuilderNode.Cached) builder;
+            return new BuilderNode.Cached(compile(node.source, compiled), node.cacheSize, node.hash);
+        }
+        if (builder instanceof BuilderNode.CachedLattice) {
+            BuilderNode.CachedLattice node = (BuilderNode.CachedLattice) builder;
+            return new BuilderNode.CachedLattice(compile(node.source, compiled), node.cacheSize, node.stepX, node.stepY, node.stepZ,
+                    node.blockSizeX, node.blockSizeY, node.blockSizeZ);
+        }
+        if (builder instanceof BuilderNode.AdaptiveLattice) {
+            BuilderNode.AdaptiveLattice node = (BuilderNode.AdaptiveLattice) builder;
+            return new BuilderNode.AdaptiveLattice(compile(node.source, compiled), node.factorX, node.factorY, node.factorZ, node.threshold);
+        }
+        if (builder instanceof BuilderNode.Cached2d) {
+            BuilderNode.Cached2d node = (BuilderNode.Cached2d) builder;
+            return new BuilderNode.Cached2d(compile(node.source, compiled), node.cacheSize, node.hash);
+        }
+        if (builder instanceof BuilderNode.WithBounds) {
+            BuilderNode.WithBounds node = (BuilderNode.WithBounds) builder;
+            return new BuilderNode.WithBounds(compile(node.source, compiled), node.bounds);
+        }
+        // opaque leaf
+        return builder;
+    }
+
+    private static IBuilder compileChain(BuilderNode.Apply outer, Map<IBuilder, IBuilder> compiled) {
+        List<BuilderNode.Apply> chain = new ArrayList<>();
+        IBuilder source = outer;
+        while (source instanceof BuilderNode.Apply) {
+            chain.add((BuilderNode.Apply) source);
+            source = ((BuilderNode.Apply) source).source;
+        }
+        Collections.reverse(chain);
+
+        List<Integer> ops = new ArrayList<>();
+        List<Integer> conditions = new ArrayList<>();
+        List<Double> args1 = new ArrayList<>();
+        List<Double> args2 = new ArrayList<>();
+        List<Object> objects = new ArrayList<>();
+        for (int i = 0; i < chain.size(); i++) {
+            BuilderNode.Apply node = chain.get(i);
+            BuilderNode.Apply next = i + 1 < chain.size() ? chain.get(i + 1) : null;
+            int condition = conditionCode(node.condition);
+            // the common "mul(factor).add(offset)" pattern
+            if (node.op == BuilderNode.Op.MUL && condition == COND_NONE
+                    && next != null && next.op == BuilderNode.Op.ADD && next.condition == null) {
+                ops.add(OP_MUL_ADD);
+                conditions.add(COND_NONE);
+                args1.add(node.arg1);
+                args2.add(next.arg1);
+                objects.add(null);
+                i++;
+                continue;
+            }
+            ops.add(opCode(node.op));
+            conditions.add(condition);
+            args1.add(node.arg1);
+            args2.add(node.arg2);
+            objects.add(condition == COND_CUSTOM ? node.condition : node.function);
+        }
+        return new OpChain(compile(source, compiled), toIntArray(ops), toIntArray(conditions),
+                toDoubleArray(args1), toDoubleArray(args2), objects.toArray());
+    }
+
+    private static final int OP_ADD = 0;
+    private static final int OP_SUB = 1;
+    private static final int OP_MUL = 2;
+    private static final int OP_DIV = 3;
+    private static final int OP_CLAMP = 4;
+    private static final int OP_SIGNUM = 5;
+    private static final int OP_FUNCTION = 6;
+    private static final int OP_MUL_ADD = 7;
+
+    private static final int COND_NONE = 0;
+    private static final int COND_NEGATIVE = 1;
+    private static final int COND_POSITIVE = 2;
+    private static final int COND_NOT_NEGATIVE = 3;
+    private static final int COND_NOT_POSITIVE = 4;
+    private static final int COND_CUSTOM = 5;
+
+    private static int opCode(BuilderNode.Op op) {
+        switch (op) {
+            case ADD:
+                return OP_ADD;
+            case SUB:
+                return OP_SUB;
+            case MUL:
+                return OP_MUL;
+            case DIV:
+                return OP_DIV;
+            case CLAMP:
+                return OP_CLAMP;
+            case SIGNUM:
+                return OP_SIGNUM;
+            case FUNCTION:
+                return OP_FUNCTION;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static int conditionCode(@Nullable DoublePredicate condition) {
+        if (condition == null) {
+            return COND_NONE;
+        }
+        if (condition == IBuilder.NEGATIVE) {
+            return COND_NEGATIVE;
+        }
+        if (condition == IBuilder.POSITIVE) {
+            return COND_POSITIVE;
+        }
+        if (condition == IBuilder.NOT_NEGATIVE) {
+            return COND_NOT_NEGATIVE;
+        }
+        if (condition == IBuilder.NOT_POSITIVE) {
+            return COND_NOT_POSITIVE;
+        }
+        return COND_CUSTOM;
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] arr = new int[list.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = list.get(i);
+        }
+        return arr;
+    }
+
+    private static double[] toDoubleArray(List<Double> list) {
+        double[] arr = new double[list.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = list.get(i);
+        }
+        return arr;
+    }
+
+    private static final class OpChain implements IBuilder {
+        private final IBuilder source;
+        private final int[] ops;
+        private final int[] conditions;
+        private final double[] args1;
+        private final double[] args2;
+        // custom conditions and functions
+        private final Object[] objects;
+
+        OpChain(IBuilder source, int[] ops, int[] conditions, double[] args1, double[] args2, Object[] objects) {
+            this.source = source;
+            this.ops = ops;
+            this.conditions = conditions;
+            this.args1 = args1;
+            this.args2 = args2;
+            this.objects = objects;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            double v = source.get(x, y, z);
+            for (int i = 0; i < ops.length; i++) {
+                if (matches(i, v)) {
+                    v = apply(i, v);
+                }
+            }
+            return v;
+        }
+
+        // every operation is applied to all values before the next one, each value still sees them in the same order
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            int count = sizeX * sizeY * sizeZ;
+            for (int i = 0; i < ops.length; i++) {
+                if (conditions[i] != COND_NONE) {
+                    for (int j = 0; j < count; j++) {
+                        if (matches(i, out[j])) {
+                            out[j] = apply(i, out[j]);
+                        }
+                    }
+                    continue;
+                }
+                double arg1 = args1[i], arg2 = args2[i];
+                switch (ops[i]) {
+                    case OP_ADD:
+                        for (int j = 0; j < count; j++) {
+                            out[j] += arg1;
+                        }
+                        break;
+                    case OP_SUB:
+                        for (int j = 0; j < count; j++) {
+                            out[j] -= arg1;
+                        }
+                        break;
+                    case OP_MUL:
+                        for (int j = 0; j < count; j++) {
+                            out[j] *= arg1;
+                        }
+                        break;
+                    case OP_DIV:
+                        for (int j = 0; j < count; j++) {
+                            out[j] /= arg1;
+                        }
+                        break;
+                    case OP_MUL_ADD:
+                        for (int j = 0; j < count; j++) {
+                            out[j] = out[j] * arg1 + arg2;
+                        }
+                        break;
+                    default:
+                        for (int j = 0; j < count; j++) {
+                            out[j] = apply(i, out[j]);
+                        }
+                }
+            }
+        }
+
+        private boolean matches(int i, double v) {
+            switch (conditions[i]) {
+                case COND_NONE:
+                    return true;
+                case COND_NEGATIVE:
+                    return v < 0;
+                case COND_POSITIVE:
+                    return v > 0;
+                case COND_NOT_NEGATIVE:
+                    return v >= 0;
+                case COND_NOT_POSITIVE:
+                    return v <= 0;
+                case COND_CUSTOM:
+                    return ((DoublePredicate) objects[i]).test(v);
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        private double apply(int i, double v) {
+            switch (ops[i]) {
+                case OP_ADD:
+                    return v + args1[i];
+                case OP_SUB:
+                    return v - args1[i];
+                case OP_MUL:
+                    return v * args1[i];
+                case OP_DIV:
+                    return v / args1[i];
+                case OP_CLAMP:
+                    return MathHelper.clamp(v, args1[i], args2[i]);
+                case OP_SIGNUM:
+                    return Math.signum(v);
+                case OP_FUNCTION:
+                    return ((TDoubleFunction) objects[i]).execute(v);
+                case OP_MUL_ADD:
+                    return v * args1[i] + args2[i];
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        @Override public String toString() {
+            return "chain[" + ops.length + "](" + source + ")";
+        }
+    }
+
+    private static final class Add implements IBuilder {
+        private final IBuilder left, right;
+
+        Add(IBuilder left, IBuilder right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return left.get(x, y, z) + right.get(x, y, z);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            int count = sizeX * sizeY * sizeZ;
+            double[] rightValues = new double[count];
+            left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            right.fill(rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            for (int i = 0; i < count; i++) {
+                out[i] += rightValues[i];
+            }
+        }
+
+        @Override public String toString() {
+            return "add(" + left + ", " + right + ")";
+        }
+    }
+
+    private static final class Sub implements IBuilder {
+        private final IBuilder left, right;
+
+        Sub(IBuilder left, IBuilder right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return left.get(x, y, z) - right.get(x, y, z);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            int count = sizeX * sizeY * sizeZ;
+            double[] rightValues = new double[count];
+            left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            right.fill(rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            for (int i = 0; i < count; i++) {
+                out[i] -= rightValues[i];
+            }
+        }
+
+        @Override public String toString() {
+            return "sub(" + left + ", " + right + ")";
+        }
+    }
+
+    private static final class Mul implements IBuilder {
+        private final IBuilder left, right;
+        // the original right side, compiled builders don't have bounds
+        private final IBuilder rightBounds;
+
+        Mul(IBuilder left, IBuilder right, IBuilder rightBounds) {
+            this.left = left;
+            this.right = right;
+            this.rightBounds = rightBounds;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return left.get(x, y, z) * right.get(x, y, z);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            BuilderNode.fillMul(left, right, rightBounds, out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+
+        @Override public String toString() {
+            return "mul(" + left + ", " + right + ")";
+        }
+    }
+
+    private static final class Div implements IBuilder {
+        private final IBuilder left, right;
+
+        Div(IBuilder left, IBuilder right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return left.get(x, y, z) / right.get(x, y, z);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            int count = sizeX * sizeY * sizeZ;
+            double[] rightValues = new double[count];
+            left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            right.fill(rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            for (int i = 0; i < count; i++) {
+                out[i] /= rightValues[i];
+            }
+        }
+
+        @Override public String toString() {
+            return "div(" + left + ", " + right + ")";
+        }
+    }
+
+    private static final class Lerp implements IBuilder {
+        private final IBuilder selector, low, high;
+        // the original high builder, compiled builders don't have bounds
+        private final IBuilder highBounds;
+
+        Lerp(IBuilder selector, IBuilder low, IBuilder high, IBuilder highBounds) {
+            this.selector = selector;
+            this.low = low;
+            this.high = high;
+            this.highBounds = highBounds;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return MathUtil.lerp(selector.get(x, y, z), low.get(x, y, z), high.get(x, y, z));
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            BuilderNode.fillLerp(selector, low, high, highBounds, out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+
+        @Override public String toString() {
+            return "lerp(" + selector + ", " + low + ", " + high + ")";
+        }
+    }
+}
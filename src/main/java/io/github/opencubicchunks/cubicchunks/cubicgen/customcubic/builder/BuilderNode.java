@@ -0,0 +1,930 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
+import gnu.trove.function.TDoubleFunction;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash2d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash3d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCacheDoubles2d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCacheDoubles3d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.LatticeCache;
+import io.github.opencubicchunks.cubicchunks.cubicgen.profiler.GenerationProfiler;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.Arrays;
+import java.util.function.DoublePredicate;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Node of an {@link IBuilder} expression tree. All combinators in {@link IBuilder} return one of these, so the structure
+ * of a builder remains inspectable after it's created, and can be optimized by {@link BuilderCompiler}.
+ * <p>
+ * Any IBuilder that isn't a BuilderNode (noise sources, lambdas) is treated as an opaque leaf.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public abstract class BuilderNode implements IBuilder {
+
+    private static final double NO_OVERFLOW_LIMIT = 1e300;
+
+    public enum Op {
+        ADD, SUB, MUL, DIV, CLAMP, SIGNUM, FUNCTION
+    }
+
+    /**
+     * Combines values of 2 builders using one of the basic arithmetic operations.
+     */
+    public static final class Binary extends BuilderNode {
+        public final Op op;
+        public final IBuilder left;
+        public final IBuilder right;
+
+        public Binary(Op op, IBuilder left, IBuilder right) {
+            if (op != Op.ADD && op != Op.SUB && op != Op.MUL && op != Op.DIV) {
+                throw new IllegalArgumentException("Not a binary operation: " + op);
+            }
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            switch (op) {
+                case ADD:
+                    return left.get(x, y, z) + right.get(x, y, z);
+                case SUB:
+                    return left.get(x, y, z) - right.get(x, y, z);
+                case MUL:
+                    return left.get(x, y, z) * right.get(x, y, z);
+                case DIV:
+                    return left.get(x, y, z) / right.get(x, y, z);
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            if (op == Op.MUL) {
+                fillMul(left, right, right, out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+                return;
+            }
+            int count = sizeX * sizeY * sizeZ;
+            double[] rightValues = new double[count];
+            left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            right.fill(rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            combine(op, out, rightValues, count);
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return combine(op, left.getBounds(minX, minY, minZ, maxX, maxY, maxZ), right.getBounds(minX, minY, minZ, maxX, maxY, maxZ));
+        }
+
+        @Override public String toString() {
+            return op.name().toLowerCase() + "(" + left + ", " + right + ")";
+        }
+    }
+
+    /**
+     * Applies an operation with constant arguments to the source value, optionally only when the value matches a condition.
+     * For {@link Op#CLAMP} the arguments are min and max, for {@link Op#SIGNUM} and {@link Op#FUNCTION} they are unused.
+     */
+    public static final class Apply extends BuilderNode {
+        public final IBuilder source;
+        @Nullable public final DoublePredicate condition;
+        public final Op op;
+        public final double arg1, arg2;
+        @Nullable public final TDoubleFunction function;
+
+        public Apply(IBuilder source, @Nullable DoublePredicate condition, Op op, double arg1, double arg2, @Nullable TDoubleFunction function) {
+            if (op == Op.FUNCTION && function == null) {
+                throw new IllegalArgumentException("No function given for FUNCTION operation");
+            }
+            this.source = source;
+            this.condition = condition;
+            this.op = op;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.function = function;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            double value = source.get(x, y, z);
+            if (condition != null && !condition.test(value)) {
+                return value;
+            }
+            return apply(value);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            int count = sizeX * sizeY * sizeZ;
+            if (condition != null) {
+                for (int i = 0; i < count; i++) {
+                    if (condition.test(out[i])) {
+                        out[i] = apply(out[i]);
+                    }
+                }
+                return;
+            }
+            switch (op) {
+                case ADD:
+                    for (int i = 0; i < count; i++) {
+                        out[i] += arg1;
+                    }
+                    break;
+                case SUB:
+                    for (int i = 0; i < count; i++) {
+                        out[i] -= arg1;
+                    }
+                    break;
+                case MUL:
+                    for (int i = 0; i < count; i++) {
+                        out[i] *= arg1;
+                    }
+                    break;
+                case DIV:
+                    for (int i = 0; i < count; i++) {
+                        out[i] /= arg1;
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        out[i] = apply(out[i]);
+                    }
+            }
+        }
+
+        // with a condition, only some values are changed
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            Interval bounds = source.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+            Interval applied = apply(bounds);
+            return condition == null ? applied : bounds.union(applied);
+        }
+
+        private Interval apply(Interval bounds) {
+            switch (op) {
+                case ADD:
+                    return bounds.add(Interval.of(arg1));
+                case SUB:
+                    return bounds.sub(Interval.of(arg1));
+                case MUL:
+                    return bounds.mul(Interval.of(arg1));
+                case DIV:
+                    return bounds.div(Interval.of(arg1));
+                case CLAMP:
+                    return bounds.clamp(arg1, arg2);
+                case SIGNUM:
+                    return bounds.signum();
+                case FUNCTION:
+                    return Interval.UNBOUNDED;
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        double apply(double value) {
+            switch (op) {
+                case ADD:
+                    return value + arg1;
+                case SUB:
+                    return value - arg1;
+                case MUL:
+                    return value * arg1;
+                case DIV:
+                    return value / arg1;
+                case CLAMP:
+                    return MathHelper.clamp(value, arg1, arg2);
+                case SIGNUM:
+                    return Math.signum(value);
+                case FUNCTION:
+                    return function.execute(value);
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        @Override public String toString() {
+            String args;
+            switch (op) {
+                case CLAMP:
+                    args = ", " + arg1 + ", " + arg2;
+                    break;
+                case SIGNUM:
+                    args = "";
+                    break;
+                case FUNCTION:
+                    args = ", " + function;
+                    break;
+                default:
+                    args = ", " + arg1;
+            }
+            return op.name().toLowerCase() + (condition == null ? "" : "If[" + conditionName(condition) + "]") + "(" + source + args + ")";
+        }
+    }
+
+    /**
+     * Combines values of 2 builders using one of the basic arithmetic operations, but only if value of the first one
+     * matches a condition. The second builder is not evaluated otherwise.
+     */
+    public static final class BinaryIf extends BuilderNode {
+        public final Op op;
+        public final IBuilder left;
+        public final DoublePredicate condition;
+        public final IBuilder right;
+
+        public BinaryIf(Op op, IBuilder left, DoublePredicate condition, IBuilder right) {
+            if (op != Op.ADD && op != Op.SUB && op != Op.MUL && op != Op.DIV) {
+                throw new IllegalArgumentException("Not a binary operation: " + op);
+            }
+            this.op = op;
+            this.left = left;
+            this.condition = condition;
+            this.right = right;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            double value = left.get(x, y, z);
+            if (!condition.test(value)) {
+                return value;
+            }
+            switch (op) {
+                case ADD:
+                    return value + right.get(x, y, z);
+                case SUB:
+                    return value - right.get(x, y, z);
+                case MUL:
+                    return value * right.get(x, y, z);
+                case DIV:
+                    return value / right.get(x, y, z);
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            // the right side is only evaluated where it's actually needed, exactly like in get()
+            int count = sizeX * sizeY * sizeZ;
+            boolean[] needed = new boolean[count];
+            int neededCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (condition.test(out[i])) {
+                    needed[i] = true;
+                    neededCount++;
+                }
+            }
+            if (neededCount == 0) {
+                return;
+            }
+            double[] rightValues = new double[count];
+            fillWhere(right, needed, neededCount, rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            for (int i = 0; i < count; i++) {
+                if (!needed[i]) {
+                    continue;
+                }
+                switch (op) {
+                    case ADD:
+                        out[i] += rightValues[i];
+                        break;
+                    case SUB:
+                        out[i] -= rightValues[i];
+                        break;
+                    case MUL:
+                        out[i] *= rightValues[i];
+                        break;
+                    case DIV:
+                        out[i] /= rightValues[i];
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            }
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            Interval bounds = left.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+            return bounds.union(combine(op, bounds, right.getBounds(minX, minY, minZ, maxX, maxY, maxZ)));
+        }
+
+        @Override public String toString() {
+            return op.name().toLowerCase() + "If[" + conditionName(condition) + "](" + left + ", " + right + ")";
+        }
+    }
+
+    /**
+     * See {@link IBuilder#lerp(IBuilder, IBuilder)}
+     */
+    public static final class Lerp extends BuilderNode {
+        public final IBuilder selector;
+        public final IBuilder low;
+        public final IBuilder high;
+
+        public Lerp(IBuilder selector, IBuilder low, IBuilder high) {
+            this.selector = selector;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return MathUtil.lerp(selector.get(x, y, z), low.get(x, y, z), high.get(x, y, z));
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            fillLerp(selector, low, high, high, out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return Interval.lerp(selector.getBounds(minX, minY, minZ, maxX, maxY, maxZ),
+                    low.getBounds(minX, minY, minZ, maxX, maxY, maxZ), high.getBounds(minX, minY, minZ, maxX, maxY, maxZ));
+        }
+
+        @Override public String toString() {
+            return "lerp(" + selector + ", " + low + ", " + high + ")";
+        }
+    }
+
+    /**
+     * See {@link IBuilder#cached(int, CoordHash3d)}. With {@link CustomCubicConfig#concurrentGeneration} each thread gets
+     * its own cache.
+     */
+    public static final class Cached extends BuilderNode {
+        public final IBuilder source;
+        public final int cacheSize;
+        public final CoordHash3d hash;
+        @Nullable private final HashCacheDoubles3d cache;
+        @Nullable private final ThreadLocal<HashCacheDoubles3d> threadCaches;
+
+        public Cached(IBuilder source, int cacheSize, CoordHash3d hash) {
+            this.source = source;
+            this.cacheSize = cacheSize;
+            this.hash = hash;
+            if (CustomCubicConfig.concurrentGeneration) {
+                this.cache = null;
+                this.threadCaches = ThreadLocal.withInitial(() -> HashCacheDoubles3d.create(cacheSize, hash, source::get));
+            } else {
+                this.cache = HashCacheDoubles3d.create(cacheSize, hash, source::get);
+                this.threadCaches = null;
+            }
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return (cache != null ? cache : threadCaches.get()).get(x, y, z);
+        }
+
+        // bulk evaluation bypasses the cache, as every grid point is computed only once anyway
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return source.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        @Override public String toString() {
+            return "cached(" + source + ")";
+        }
+    }
+
+    /**
+     * See {@link IBuilder#cached2d(int, CoordHash2d)}
+     */
+    public static final class Cached2d extends BuilderNode {
+        public final IBuilder source;
+        public final int cacheSize;
+        public final CoordHash2d hash;
+        @Nullable private final HashCacheDoubles2d cache;
+        @Nullable private final ThreadLocal<HashCacheDoubles2d> threadCaches;
+
+        public Cached2d(IBuilder source, int cacheSize, CoordHash2d hash) {
+            this.source = source;
+            this.cacheSize = cacheSize;
+            this.hash = hash;
+            if (CustomCubicConfig.concurrentGeneration) {
+                this.cache = null;
+                this.threadCaches = ThreadLocal.withInitial(() -> HashCacheDoubles2d.create(cacheSize, hash, (x, z) -> source.get(x, 0, z)));
+            } else {
+                this.cache = HashCacheDoubles2d.create(cacheSize, hash, (x, z) -> source.get(x, 0, z));
+                this.threadCaches = null;
+            }
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return (cache != null ? cache : threadCaches.get()).get(x, z);
+        }
+
+        /**
+         * Bulk evaluation bypasses the cache. Only one layer is computed and then copied to all the other layers.
+         */
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            int layerSize = sizeX * sizeZ;
+            source.fill(out, startX, 0, startZ, sizeX, 1, sizeZ, stepX, stepY, stepZ);
+            for (int iy = 1; iy < sizeY; iy++) {
+                System.arraycopy(out, 0, out, iy * layerSize, layerSize);
+            }
+        }
+
+        // the source is always evaluated at y=0
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return source.getBounds(minX, 0, minZ, maxX, 0, maxZ);
+        }
+
+        @Override public String toString() {
+            return "cached2d(" + source + ")";
+        }
+    }
+
+    /**
+     * See {@link IBuilder#cachedLattice(int, int, int, int, int, int, int)}. With {@link CustomCubicConfig#concurrentGeneration}
+     * each thread gets its own cache.
+     */
+    public static final class CachedLattice extends BuilderNode {
+        public final IBuilder source;
+        public final int cacheSize;
+        public final int stepX, stepY, stepZ;
+        public final int blockSizeX, blockSizeY, blockSizeZ;
+        // created on first use, the uncompiled copy of a compiled builder never needs it
+        @Nullable private LatticeCache cache;
+        @Nullable private final ThreadLocal<LatticeCache> threadCaches;
+
+        public CachedLattice(IBuilder source, int cacheSize, int stepX, int stepY, int stepZ, int blockSizeX, int blockSizeY, int blockSizeZ) {
+            this.source = source;
+            this.cacheSize = cacheSize;
+            this.stepX = stepX;
+            this.stepY = stepY;
+            this.stepZ = stepZ;
+            this.blockSizeX = blockSizeX;
+            this.blockSizeY = blockSizeY;
+            this.blockSizeZ = blockSizeZ;
+            this.threadCaches = CustomCubicConfig.concurrentGeneration
+                    ? ThreadLocal.withInitial(() -> LatticeCache.create(cacheSize, blockSizeX, blockSizeY, blockSizeZ))
+                    : null;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return source.get(x, y, z);
+        }
+
+        /**
+         * Known points are copied from the cache, and the smallest box containing all the other points is computed in
+         * one bulk fill of the source. Fills with a step that isn't a multiple of the lattice step, or not aligned to the
+         * lattice, bypass the cache.
+         */
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            if (stepX % this.stepX != 0 || stepY % this.stepY != 0 || stepZ % this.stepZ != 0
+                    || startX % this.stepX != 0 || startY % this.stepY != 0 || startZ % this.stepZ != 0) {
+                source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+                return;
+            }
+            LatticeCache cache = cache();
+            int latticeX = startX / this.stepX, latticeY = startY / this.stepY, latticeZ = startZ / this.stepZ;
+            // distance between the filled points in lattice points
+            int strideX = stepX / this.stepX, strideY = stepY / this.stepY, strideZ = stepZ / this.stepZ;
+
+            int minX = sizeX, minY = sizeY, minZ = sizeZ;
+            int maxX = -1, maxY = -1, maxZ = -1;
+            int i = 0;
+            for (int iy = 0; iy < sizeY; iy++) {
+                for (int iz = 0; iz < sizeZ; iz++) {
+                    for (int ix = 0; ix < sizeX; ix++) {
+                        if (!cache.get(latticeX + ix * strideX, latticeY + iy * strideY, latticeZ + iz * strideZ, out, i)) {
+                            minX = Math.min(minX, ix);
+                            minY = Math.min(minY, iy);
+                            minZ = Math.min(minZ, iz);
+                            maxX = Math.max(maxX, ix);
+                            maxY = Math.max(maxY, iy);
+                            maxZ = Math.max(maxZ, iz);
+                        }
+                        i++;
+                    }
+                }
+            }
+            if (maxX < 0) {
+                GenerationProfiler.recordLatticePoints(sizeX * sizeY * sizeZ, 0);
+                return;
+            }
+            int boxX = maxX - minX + 1, boxY = maxY - minY + 1, boxZ = maxZ - minZ + 1;
+            double[] box = new double[boxX * boxY * boxZ];
+            source.fill(box, startX + minX * stepX, startY + minY * stepY, startZ + minZ * stepZ,
+                    boxX, boxY, boxZ, stepX, stepY, stepZ);
+            int j = 0;
+            for (int iy = minY; iy <= maxY; iy++) {
+                for (int iz = minZ; iz <= maxZ; iz++) {
+                    int outIdx = (iy * sizeZ + iz) * sizeX + minX;
+                    for (int ix = minX; ix <= maxX; ix++) {
+                        double value = box[j++];
+                        out[outIdx++] = value;
+                        cache.put(latticeX + ix * strideX, latticeY + iy * strideY, latticeZ + iz * strideZ, value);
+                    }
+                }
+            }
+            GenerationProfiler.recordLatticePoints(sizeX * sizeY * sizeZ - box.length, box.length);
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return source.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        @Override public String toString() {
+            return "cachedLattice(" + source + ")";
+        }
+
+        private LatticeCache cache() {
+            if (threadCaches != null) {
+                return threadCaches.get();
+            }
+            if (cache == null) {
+                cache = LatticeCache.create(cacheSize, blockSizeX, blockSizeY, blockSizeZ);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * See {@link IBuilder#adaptiveLattice(int, int, int, double)}
+     */
+    public static final class AdaptiveLattice extends BuilderNode {
+        public final IBuilder source;
+        public final int factorX, factorY, factorZ;
+        public final double threshold;
+
+        public AdaptiveLattice(IBuilder source, int factorX, int factorY, int factorZ, double threshold) {
+            this.source = source;
+            this.factorX = factorX;
+            this.factorY = factorY;
+            this.factorZ = factorZ;
+            this.threshold = threshold;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return source.get(x, y, z);
+        }
+
+        /**
+         * Fills the coarse lattice first. Each other point is on a coarse cell, face or edge, and is interpolated from
+         * its corners when they all have the same sign and the smallest of their absolute values, minus the difference
+         * between them, is above the threshold. Only the remaining points are computed by the source. This only depends
+         * on the coarse lattice, so a point gets the same value in every fill containing it. Fills that don't cover
+         * whole coarse cells aligned to the coarse lattice are passed to the source.
+         */
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            int coarseStepX = stepX * factorX, coarseStepY = stepY * factorY, coarseStepZ = stepZ * factorZ;
+            if ((sizeX - 1) % factorX != 0 || (sizeY - 1) % factorY != 0 || (sizeZ - 1) % factorZ != 0
+                    || coarseStepX == 0 || coarseStepY == 0 || coarseStepZ == 0
+                    || startX % coarseStepX != 0 || startY % coarseStepY != 0 || startZ % coarseStepZ != 0) {
+                source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+                return;
+            }
+            int coarseSizeX = (sizeX - 1) / factorX + 1;
+            int coarseSizeY = (sizeY - 1) / factorY + 1;
+            int coarseSizeZ = (sizeZ - 1) / factorZ + 1;
+            double[] coarse = new double[coarseSizeX * coarseSizeY * coarseSizeZ];
+            source.fill(coarse, startX, startY, startZ, coarseSizeX, coarseSizeY, coarseSizeZ, coarseStepX, coarseStepY, coarseStepZ);
+
+            boolean[] needed = new boolean[sizeX * sizeY * sizeZ];
+            boolean anyNeeded = false;
+            int i = 0;
+            for (int iy = 0; iy < sizeY; iy++) {
+                int y0 = iy / factorY, ry = iy % factorY;
+                int y1 = ry == 0 ? y0 : y0 + 1;
+                for (int iz = 0; iz < sizeZ; iz++) {
+                    int z0 = iz / factorZ, rz = iz % factorZ;
+                    int z1 = rz == 0 ? z0 : z0 + 1;
+                    for (int ix = 0; ix < sizeX; ix++, i++) {
+                        int x0 = ix / factorX, rx = ix % factorX;
+                        int x1 = rx == 0 ? x0 : x0 + 1;
+                        // on a coarse axis the two corners are the same point, and interpolation gives exactly its value
+                        double v000 = coarse[(y0 * coarseSizeZ + z0) * coarseSizeX + x0];
+                        if (rx == 0 && ry == 0 && rz == 0) {
+                            out[i] = v000;
+                            continue;
+                        }
+                        double v001 = coarse[(y0 * coarseSizeZ + z1) * coarseSizeX + x0];
+                        double v010 = coarse[(y1 * coarseSizeZ + z0) * coarseSizeX + x0];
+                        double v011 = coarse[(y1 * coarseSizeZ + z1) * coarseSizeX + x0];
+                        double v100 = coarse[(y0 * coarseSizeZ + z0) * coarseSizeX + x1];
+                        double v101 = coarse[(y0 * coarseSizeZ + z1) * coarseSizeX + x1];
+                        double v110 = coarse[(y1 * coarseSizeZ + z0) * coarseSizeX + x1];
+                        double v111 = coarse[(y1 * coarseSizeZ + z1) * coarseSizeX + x1];
+                        double min = Math.min(Math.min(Math.min(v000, v001), Math.min(v010, v011)),
+                                Math.min(Math.min(v100, v101), Math.min(v110, v111)));
+                        double max = Math.max(Math.max(Math.max(v000, v001), Math.max(v010, v011)),
+                                Math.max(Math.max(v100, v101), Math.max(v110, v111)));
+                        double distance = min > 0 ? min : max < 0 ? -max : 0;
+                        if (!(distance - (max - min) > threshold)) {
+                            needed[i] = true;
+                            anyNeeded = true;
+                            continue;
+                        }
+                        double tx = rx / (double) factorX, ty = ry / (double) factorY, tz = rz / (double) factorZ;
+                        double v00 = lerp(tx, v000, v100), v01 = lerp(tx, v001, v101);
+                        double v10 = lerp(tx, v010, v110), v11 = lerp(tx, v011, v111);
+                        out[i] = lerp(ty, lerp(tz, v00, v01), lerp(tz, v10, v11));
+                    }
+                }
+            }
+            if (!anyNeeded) {
+                return;
+            }
+            // the remaining points are computed in one bulk fill per coarse cell, of the smallest box containing them
+            for (int cellY = 0; cellY < Math.max(coarseSizeY - 1, 1); cellY++) {
+                for (int cellZ = 0; cellZ < Math.max(coarseSizeZ - 1, 1); cellZ++) {
+                    for (int cellX = 0; cellX < Math.max(coarseSizeX - 1, 1); cellX++) {
+                        fillNeeded(out, needed, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ,
+                                cellX * factorX, cellY * factorY, cellZ * factorZ);
+                    }
+                }
+            }
+        }
+
+        private void fillNeeded(double[] out, boolean[] needed, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ, int cellX, int cellY, int cellZ) {
+            int endX = Math.min(cellX + factorX, sizeX - 1);
+            int endY = Math.min(cellY + factorY, sizeY - 1);
+            int endZ = Math.min(cellZ + factorZ, sizeZ - 1);
+            int minX = sizeX, minY = sizeY, minZ = sizeZ;
+            int maxX = -1, maxY = -1, maxZ = -1;
+            for (int iy = cellY; iy <= endY; iy++) {
+                for (int iz = cellZ; iz <= endZ; iz++) {
+                    for (int ix = cellX; ix <= endX; ix++) {
+                        if (needed[(iy * sizeZ + iz) * sizeX + ix]) {
+                            minX = Math.min(minX, ix);
+                            minY = Math.min(minY, iy);
+                            minZ = Math.min(minZ, iz);
+                            maxX = Math.max(maxX, ix);
+                            maxY = Math.max(maxY, iy);
+                            maxZ = Math.max(maxZ, iz);
+                        }
+                    }
+                }
+            }
+            if (maxX < 0) {
+                return;
+            }
+            int boxX = maxX - minX + 1, boxY = maxY - minY + 1, boxZ = maxZ - minZ + 1;
+            double[] box = new double[boxX * boxY * boxZ];
+            source.fill(box, startX + minX * stepX, startY + minY * stepY, startZ + minZ * stepZ,
+                    boxX, boxY, boxZ, stepX, stepY, stepZ);
+            int j = 0;
+            for (int iy = minY; iy <= maxY; iy++) {
+                for (int iz = minZ; iz <= maxZ; iz++) {
+                    int outIdx = (iy * sizeZ + iz) * sizeX + minX;
+                    for (int ix = minX; ix <= maxX; ix++, j++, outIdx++) {
+                        // points that were interpolated keep the interpolated value, even if the box computed them
+                        if (needed[outIdx]) {
+                            out[outIdx] = box[j];
+                            needed[outIdx] = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static double lerp(double t, double a, double b) {
+            return a + (b - a) * t;
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return source.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        @Override public String toString() {
+            return "adaptiveLattice(" + source + ")";
+        }
+    }
+
+    /**
+     * See {@link IBuilder#withBounds(BoundsFunction)}
+     */
+    public static final class WithBounds extends BuilderNode {
+        public final IBuilder source;
+        public final BoundsFunction bounds;
+
+        public WithBounds(IBuilder source, BoundsFunction bounds) {
+            this.source = source;
+            this.bounds = bounds;
+        }
+
+        @Override public double get(int x, int y, int z) {
+            return source.get(x, y, z);
+        }
+
+        @Override public void fill(double[] out, int startX, int startY, int startZ,
+                int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+            source.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+
+        @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return bounds.getBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        @Override public String toString() {
+            return "withBounds(" + source + ")";
+        }
+    }
+
+    /**
+     * Bulk lerp that skips evaluating {@code high} where its value can't change the result. With selector exactly 0,
+     * {@code low + 0 * (high - low)} is exactly {@code low} for any finite non-zero {@code low}, as long as
+     * {@code high - low} can't overflow, which is checked using bounds of {@code high}. Selector 1 doesn't allow
+     * skipping {@code low}, as {@code low + (high - low)} isn't always exactly {@code high}.
+     *
+     * @param highBounds builder used to get bounds of {@code high}, compiled builders don't have bounds
+     */
+    static void fillLerp(IBuilder selector, IBuilder low, IBuilder high, IBuilder highBounds, double[] out, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        int count = sizeX * sizeY * sizeZ;
+        if (count == 0) {
+            return;
+        }
+        double[] lowValues = new double[count];
+        double[] highValues = new double[count];
+        selector.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        low.fill(lowValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        if (isSmall(getFillBounds(highBounds, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ))) {
+            boolean[] needed = new boolean[count];
+            int neededCount = 0;
+            for (int i = 0; i < count; i++) {
+                double lowValue = lowValues[i];
+                if (out[i] != 0 || lowValue == 0 || !(Math.abs(lowValue) < NO_OVERFLOW_LIMIT)) {
+                    needed[i] = true;
+                    neededCount++;
+                }
+            }
+            // high stays 0 where it's not needed, which gives the same result
+            fillWhere(high, needed, neededCount, highValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        } else {
+            high.fill(highValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+        for (int i = 0; i < count; i++) {
+            out[i] = MathUtil.lerp(out[i], lowValues[i], highValues[i]);
+        }
+    }
+
+    /**
+     * Bulk multiplication that skips evaluating {@code right} where {@code left} is 0. When bounds of {@code right}
+     * don't contain 0 and are finite, the result there is exactly {@code left} or {@code -left}, depending only on the
+     * sign of {@code right}.
+     *
+     * @param rightBounds builder used to get bounds of {@code right}, compiled builders don't have bounds
+     */
+    static void fillMul(IBuilder left, IBuilder right, IBuilder rightBounds, double[] out, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        int count = sizeX * sizeY * sizeZ;
+        if (count == 0) {
+            return;
+        }
+        double[] rightValues = new double[count];
+        left.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        Interval bounds = getFillBounds(rightBounds, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        if (bounds.isBounded() && (bounds.min > 0 || bounds.max < 0)) {
+            boolean[] needed = new boolean[count];
+            int neededCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (out[i] != 0) {
+                    needed[i] = true;
+                    neededCount++;
+                }
+            }
+            if (neededCount < count) {
+                Arrays.fill(rightValues, bounds.min > 0 ? 1 : -1);
+            }
+            fillWhere(right, needed, neededCount, rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        } else {
+            right.fill(rightValues, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        }
+        for (int i = 0; i < count; i++) {
+            out[i] *= rightValues[i];
+        }
+    }
+
+    /**
+     * Evaluates the builder where {@code needed} is true, leaving other values unchanged. When most of the values are
+     * needed, all values are computed with a single {@link IBuilder#fill}, which is faster than calling
+     * {@link IBuilder#get} for each of them.
+     */
+    static void fillWhere(IBuilder builder, boolean[] needed, int neededCount, double[] out, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        if (neededCount == 0) {
+            return;
+        }
+        if (neededCount * 2 > needed.length) {
+            builder.fill(out, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+            return;
+        }
+        int i = 0;
+        for (int iy = 0; iy < sizeY; iy++) {
+            int y = startY + iy * stepY;
+            for (int iz = 0; iz < sizeZ; iz++) {
+                int z = startZ + iz * stepZ;
+                for (int ix = 0; ix < sizeX; ix++, i++) {
+                    if (needed[i]) {
+                        out[i] = builder.get(startX + ix * stepX, y, z);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Interval getFillBounds(IBuilder builder, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        return builder.getBounds(startX, startY, startZ,
+                startX + (sizeX - 1) * stepX, startY + (sizeY - 1) * stepY, startZ + (sizeZ - 1) * stepZ);
+    }
+
+    // values below NO_OVERFLOW_LIMIT can be added or subtracted without overflowing to infinity
+    private static boolean isSmall(Interval bounds) {
+        return Math.abs(bounds.min) < NO_OVERFLOW_LIMIT && Math.abs(bounds.max) < NO_OVERFLOW_LIMIT;
+    }
+
+    static Interval combine(Op op, Interval left, Interval right) {
+        switch (op) {
+            case ADD:
+                return left.add(right);
+            case SUB:
+                return left.sub(right);
+            case MUL:
+                return left.mul(right);
+            case DIV:
+                return left.div(right);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    static void combine(Op op, double[] values, double[] rightValues, int count) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < count; i++) {
+                    values[i] += rightValues[i];
+                }
+                break;
+            case SUB:
+                for (int i = 0; i < count; i++) {
+                    values[i] -= rightValues[i];
+                }
+                break;
+            case MUL:
+                for (int i = 0; i < count; i++) {
+                    values[i] *= rightValues[i];
+                }
+                break;
+            case DIV:
+                for (int i = 0; i < count; i++) {
+                    values[i] /= rightValues[i];
+                }
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    static String conditionName(DoublePredicate condition) {
+        if (condition == NEGATIVE) {
+            return "x<0";
+        }
+        if (condition == POSITIVE) {
+            return "x>0";
+        }
+        if (condition == NOT_NEGATIVE) {
+            return "x>=0";
+        }
+        if (condition == NOT_POSITIVE) {
+            return "x<=0";
+        }
+        return String.valueOf(condition);
+    }
+}
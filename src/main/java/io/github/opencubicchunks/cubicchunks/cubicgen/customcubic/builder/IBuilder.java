@@ -23,15 +23,13 @@
  */
 package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
 
-import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
 import gnu.trove.function.TDoubleFunction;
-import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCacheDoubles;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash2d;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.CoordHash3d;
 import mcp.MethodsReturnNonnullByDefault;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3i;
 
 import java.util.function.DoublePredicate;
-import java.util.function.ToIntFunction;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -47,121 +45,128 @@ public interface IBuilder {
 
     double get(int x, int y, int z);
 
+    /**
+     * Fills the array with values at points of a regular grid. Point with grid indices {@code (ix, iy, iz)} is at
+     * {@code (startX + ix*stepX, startY + iy*stepY, startZ + iz*stepZ)}, and its value is stored at index
+     * {@code (iy*sizeZ + iz)*sizeX + ix}.
+     * <p>
+     * The values are exactly the same as the ones returned by {@link #get(int, int, int)}, but combinators
+     * implement this as loops over arrays.
+     */
+    default void fill(double[] out, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        int i = 0;
+        for (int iy = 0; iy < sizeY; iy++) {
+            int y = startY + iy * stepY;
+            for (int iz = 0; iz < sizeZ; iz++) {
+                int z = startZ + iz * stepZ;
+                for (int ix = 0; ix < sizeX; ix++) {
+                    out[i++] = get(startX + ix * stepX, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns range containing all values this builder can return for coordinates between min and max (inclusive).
+     * The range is conservative, and {@link Interval#UNBOUNDED} if nothing is known about the values.
+     * <p>
+     * Combinators compute it from bounds of their inputs, noise sources know their own range, and any other builder
+     * can be given bounds using {@link #withBounds(BoundsFunction)}.
+     */
+    default Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return Interval.UNBOUNDED;
+    }
+
+    /**
+     * Returns builder with the same values as this one, and bounds given by the function.
+     */
+    default IBuilder withBounds(BoundsFunction bounds) {
+        return new BuilderNode.WithBounds(this, bounds);
+    }
+
     default IBuilder add(IBuilder builder) {
-        return (x, y, z) -> this.get(x, y, z) + builder.get(x, y, z);
+        return new BuilderNode.Binary(BuilderNode.Op.ADD, this, builder);
     }
 
     default IBuilder add(double c) {
-        return apply(x -> x + c);
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.ADD, c, 0, null);
     }
 
     default IBuilder sub(IBuilder builder) {
-        return (x, y, z) -> this.get(x, y, z) - builder.get(x, y, z);
+        return new BuilderNode.Binary(BuilderNode.Op.SUB, this, builder);
     }
 
     default IBuilder sub(double c) {
-        return apply(x -> x - c);
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.SUB, c, 0, null);
     }
 
     default IBuilder mul(IBuilder builder) {
-        return (x, y, z) -> this.get(x, y, z) * builder.get(x, y, z);
+        return new BuilderNode.Binary(BuilderNode.Op.MUL, this, builder);
     }
 
     default IBuilder mul(double c) {
-        return apply(x -> x * c);
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.MUL, c, 0, null);
     }
 
     default IBuilder div(IBuilder builder) {
-        return (x, y, z) -> this.get(x, y, z) / builder.get(x, y, z);
+        return new BuilderNode.Binary(BuilderNode.Op.DIV, this, builder);
     }
 
     default IBuilder div(double c) {
-        return apply(x -> x / c);
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.DIV, c, 0, null);
     }
 
     default IBuilder clamp(double min, double max) {
-        return apply(x -> MathHelper.clamp(x, min, max));
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.CLAMP, min, max, null);
     }
 
     default IBuilder signum() {
-        return apply(Math::signum);
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.SIGNUM, 0, 0, null);
     }
 
     default IBuilder apply(TDoubleFunction func) {
-        return (x, y, z) -> func.execute(this.get(x, y, z));
+        return new BuilderNode.Apply(this, null, BuilderNode.Op.FUNCTION, 0, 0, func);
     }
 
     default IBuilder addIf(DoublePredicate predicate, IBuilder builder) {
-        return (x, y, z) -> {
-            double value = this.get(x, y, z);
-            if (predicate.test(value)) {
-                value += builder.get(x, y, z);
-            }
-            return value;
-        };
+        return new BuilderNode.BinaryIf(BuilderNode.Op.ADD, this, predicate, builder);
     }
 
     default IBuilder addIf(DoublePredicate predicate, double c) {
-        return applyIf(predicate, x -> x + c);
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.ADD, c, 0, null);
     }
 
     default IBuilder subIf(DoublePredicate predicate, IBuilder builder) {
-        return (x, y, z) -> {
-            double value = this.get(x, y, z);
-            if (predicate.test(value)) {
-                value -= builder.get(x, y, z);
-            }
-            return value;
-        };
+        return new BuilderNode.BinaryIf(BuilderNode.Op.SUB, this, predicate, builder);
     }
 
     default IBuilder subIf(DoublePredicate predicate, double c) {
-        return applyIf(predicate, x -> x - c);
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.SUB, c, 0, null);
     }
 
     default IBuilder mulIf(DoublePredicate predicate, IBuilder builder) {
-        return (x, y, z) -> {
-            double value = this.get(x, y, z);
-            if (predicate.test(value)) {
-                value *= builder.get(x, y, z);
-            }
-            return value;
-        };
+        return new BuilderNode.BinaryIf(BuilderNode.Op.MUL, this, predicate, builder);
     }
 
     default IBuilder mulIf(DoublePredicate predicate, double c) {
-        return applyIf(predicate, x -> x * c);
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.MUL, c, 0, null);
     }
 
     default IBuilder divIf(DoublePredicate predicate, IBuilder builder) {
-        return (x, y, z) -> {
-            double value = this.get(x, y, z);
-            if (predicate.test(value)) {
-                value /= builder.get(x, y, z);
-            }
-            return value;
-        };
+        return new BuilderNode.BinaryIf(BuilderNode.Op.DIV, this, predicate, builder);
     }
 
     default IBuilder divIf(DoublePredicate predicate, double c) {
-        return applyIf(predicate, x -> x / c);
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.DIV, c, 0, null);
     }
 
     default IBuilder clampIf(DoublePredicate predicate, double min, double max) {
-        return apply(x ->
-                predicate.test(x) ?
-                        MathHelper.clamp(x, min, max) :
-                        x);
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.CLAMP, min, max, null);
     }
 
     default IBuilder applyIf(DoublePredicate predicate, TDoubleFunction func) {
-        return (x, y, z) -> {
-            double value = this.get(x, y, z);
-            if (predicate.test(value)) {
-                value = func.execute(value);
-            }
-            return value;
-        };
+        return new BuilderNode.Apply(this, predicate, BuilderNode.Op.FUNCTION, 0, 0, func);
     }
 
     /**
@@ -171,13 +176,32 @@ public interface IBuilder {
      * No clamping is done on selector value, so values exceeding range 0-1 will result in extrapolation.
      */
     default IBuilder lerp(IBuilder low, IBuilder high) {
-        return (x, y, z) -> MathUtil.lerp(this.get(x, y, z), low.get(x, y, z), high.get(x, y, z));
+        return new BuilderNode.Lerp(this, low, high);
     }
 
-    default IBuilder cached(int cacheSize, ToIntFunction<Vec3i> hash) {
-        HashCacheDoubles<Vec3i> cache = HashCacheDoubles.create(cacheSize, hash,
-                v -> this.get(v.getX(), v.getY(), v.getZ()));
-        return (x, y, z) -> cache.get(new Vec3i(x, y, z));
+    default IBuilder cached(int cacheSize, CoordHash3d hash) {
+        return new BuilderNode.Cached(this, cacheSize, hash);
+    }
+
+    /**
+     * Returns IBuilder that remembers values computed by {@link #fill} at points of a lattice with the given step, so
+     * that lattice points shared by overlapping or adjacent fills are computed only once. Points are cached in blocks
+     * of blockSize points along each axis, and cacheSize blocks are kept.
+     */
+    default IBuilder cachedLattice(int cacheSize, int stepX, int stepY, int stepZ, int blockSizeX, int blockSizeY, int blockSizeZ) {
+        return new BuilderNode.CachedLattice(this, cacheSize, stepX, stepY, stepZ, blockSizeX, blockSizeY, blockSizeZ);
+    }
+
+    /**
+     * Returns IBuilder that fills a lattice by first computing every factor-th point along each axis, and interpolating
+     * the points between them where density is far from 0 and changes slowly, see
+     * {@link BuilderNode.AdaptiveLattice#fill}. Other points are computed normally. The interpolated values are only an
+     * approximation of this builder.
+     *
+     * @param threshold how far from 0 the coarse values have to be, in addition to how much they differ
+     */
+    default IBuilder adaptiveLattice(int factorX, int factorY, int factorZ, double threshold) {
+        return new BuilderNode.AdaptiveLattice(this, factorX, factorY, factorZ, threshold);
     }
 
     /**
@@ -185,21 +209,36 @@ public interface IBuilder {
      * <p>
      * This should NEVER be used if the IBuilder is intended to generate values that depend on Y coordinate
      */
-    default IBuilder cached2d(int cacheSize, ToIntFunction<Vec3i> hash) {
-        HashCacheDoubles<Vec3i> cache = HashCacheDoubles.create(cacheSize,
-                hash,
-                v -> this.get(v.getX(), v.getY(), v.getZ()));
-        return (x, y, z) -> cache.get(new Vec3i(x, 0, z));
+    default IBuilder cached2d(int cacheSize, CoordHash2d hash) {
+        return new BuilderNode.Cached2d(this, cacheSize, hash);
+    }
+
+    /**
+     * Returns an equivalent builder with the expression tree flattened into specialized evaluators.
+     * See {@link BuilderCompiler}.
+     */
+    default IBuilder compile() {
+        return BuilderCompiler.compile(this);
     }
 
     default void forEachScaled(Vec3i startUnscaled, Vec3i endUnscaled, Vec3i scale, NoiseConsumer consumer) {
+        forEachScaled(startUnscaled, endUnscaled, scale, consumer, Gradients.XYZ);
+    }
+
+    /**
+     * Same as {@link #forEachScaled(Vec3i, Vec3i, Vec3i, NoiseConsumer)}, but only computes the given gradient
+     * components, the others are passed to the consumer as 0. Values and computed gradients are the same.
+     */
+    default void forEachScaled(Vec3i startUnscaled, Vec3i endUnscaled, Vec3i scale, NoiseConsumer consumer, Gradients gradients) {
 
         if (scale.getZ() != scale.getX()) {
             throw new UnsupportedOperationException("X and Z scale must be the same!");
         }
-        final double/*[]*/[][] gradX = new double/*[scale.getX()]*/[scale.getY()][scale.getZ()];
-        final double[]/*[]*/[] gradY = new double[scale.getZ()]/*[scale.getY()]*/[scale.getX()];
-        final double[][]/*[]*/ gradZ = new double[scale.getY()][scale.getX()]/*[scale.getZ()]*/;
+        final boolean gradientXZ = gradients == Gradients.XYZ;
+        final boolean gradientY = gradients != Gradients.NONE;
+        final double/*[]*/[][] gradX = gradientXZ ? new double/*[scale.getX()]*/[scale.getY()][scale.getZ()] : null;
+        final double[]/*[]*/[] gradY = gradientY ? new double[scale.getZ()]/*[scale.getY()]*/[scale.getX()] : null;
+        final double[][]/*[]*/ gradZ = gradientXZ ? new double[scale.getY()][scale.getX()]/*[scale.getZ()]*/ : null;
         final double[][][] vals = new double[scale.getY()][scale.getZ()][scale.getX()];
 
         int xScale = scale.getX();
@@ -216,6 +255,16 @@ public interface IBuilder {
         int maxX = endUnscaled.getX();
         int maxY = endUnscaled.getY();
         int maxZ = endUnscaled.getZ();
+
+        // each lattice point is shared by up to 8 sections, so compute all of them only once
+        int latticeSizeX = maxX - minX + 1;
+        int latticeSizeY = maxY - minY + 1;
+        int latticeSizeZ = maxZ - minZ + 1;
+        final double[] lattice = new double[latticeSizeX * latticeSizeY * latticeSizeZ];
+        this.fill(lattice, minX * xScale, minY * yScale, minZ * zScale, latticeSizeX, latticeSizeY, latticeSizeZ, xScale, yScale, zScale);
+        final int latticeStrideZ = latticeSizeX;
+        final int latticeStrideY = latticeSizeX * latticeSizeZ;
+
         for (int sectionY = minY; sectionY < maxY; ++sectionY) {
             int y = sectionY * yScale;
             for (int sectionZ = minZ; sectionZ < maxZ; ++sectionZ) {
@@ -223,14 +272,15 @@ public interface IBuilder {
                 for (int sectionX = minX; sectionX < maxX; ++sectionX) {
                     int x = sectionX * xScale;
 
-                    final double v000 = this.get(x, y, z);
-                    final double v001 = this.get(x, y, z + zScale);
-                    final double v010 = this.get(x, y + yScale, z);
-                    final double v011 = this.get(x, y + yScale, z + zScale);
-                    final double v100 = this.get(x + xScale, y, z);
-                    final double v101 = this.get(x + xScale, y, z + zScale);
-                    final double v110 = this.get(x + xScale, y + yScale, z);
-                    final double v111 = this.get(x + xScale, y + yScale, z + zScale);
+                    int idx = (sectionY - minY) * latticeStrideY + (sectionZ - minZ) * latticeStrideZ + (sectionX - minX);
+                    final double v000 = lattice[idx];
+                    final double v001 = lattice[idx + latticeStrideZ];
+                    final double v010 = lattice[idx + latticeStrideY];
+                    final double v011 = lattice[idx + latticeStrideY + latticeStrideZ];
+                    final double v100 = lattice[idx + 1];
+                    final double v101 = lattice[idx + latticeStrideZ + 1];
+                    final double v110 = lattice[idx + latticeStrideY + 1];
+                    final double v111 = lattice[idx + latticeStrideY + latticeStrideZ + 1];
 
                     double v0y0 = v000;
                     double v0y1 = v001;
@@ -260,9 +310,11 @@ public interface IBuilder {
                             double vxyz = vxy0;
 
                             // gradients start
-                            final double d_dx__xyz = (v1yz - v0yz) * stepZ;
-                            gradX[yRel][xRel] = d_dx__xyz; // for this one x and z are swapped
-                            gradZ[yRel][xRel] = d_dz__xyz;
+                            if (gradientXZ) {
+                                final double d_dx__xyz = (v1yz - v0yz) * stepZ;
+                                gradX[yRel][xRel] = d_dx__xyz; // for this one x and z are swapped
+                                gradZ[yRel][xRel] = d_dz__xyz;
+                            }
                             // gradients end
                             for (int zRel = 0; zRel < zScale; ++zRel) {
                                 // to get gradients working, consumer usage moved to later
@@ -285,45 +337,47 @@ public interface IBuilder {
 
                     }
                     // gradients start
-                    double v00z = v000;
-                    double v01z = v010;
-                    double v10z = v100;
-                    double v11z = v110;
+                    if (gradientY) {
+                        double v00z = v000;
+                        double v01z = v010;
+                        double v10z = v100;
+                        double v11z = v110;
 
-                    final double d_dz__00z = (v001 - v000) * stepZ;
-                    final double d_dz__01z = (v011 - v010) * stepZ;
-                    final double d_dz__10z = (v101 - v100) * stepZ;
-                    final double d_dz__11z = (v111 - v110) * stepZ;
+                        final double d_dz__00z = (v001 - v000) * stepZ;
+                        final double d_dz__01z = (v011 - v010) * stepZ;
+                        final double d_dz__10z = (v101 - v100) * stepZ;
+                        final double d_dz__11z = (v111 - v110) * stepZ;
 
-                    for (int zRel = 0; zRel < zScale; ++zRel) {
+                        for (int zRel = 0; zRel < zScale; ++zRel) {
 
-                        double vx0z = v00z;
-                        double vx1z = v01z;
+                            double vx0z = v00z;
+                            double vx1z = v01z;
 
-                        final double d_dx__x0z = (v10z - v00z) * stepX;
-                        final double d_dx__x1z = (v11z - v01z) * stepX;
+                            final double d_dx__x0z = (v10z - v00z) * stepX;
+                            final double d_dx__x1z = (v11z - v01z) * stepX;
 
-                        for (int xRel = 0; xRel < xScale; ++xRel) {
+                            for (int xRel = 0; xRel < xScale; ++xRel) {
 
-                            double d_dy__xyz = (vx1z - vx0z) * stepY;
+                                double d_dy__xyz = (vx1z - vx0z) * stepY;
 
-                            gradY[zRel][xRel] = d_dy__xyz;
+                                gradY[zRel][xRel] = d_dy__xyz;
 
-                            vx0z += d_dx__x0z;
-                            vx1z += d_dx__x1z;
+                                vx0z += d_dx__x0z;
+                                vx1z += d_dx__x1z;
+                            }
+                            v00z += d_dz__00z;
+                            v01z += d_dz__01z;
+                            v10z += d_dz__10z;
+                            v11z += d_dz__11z;
                         }
-                        v00z += d_dz__00z;
-                        v01z += d_dz__01z;
-                        v10z += d_dz__10z;
-                        v11z += d_dz__11z;
                     }
                     for (int yRel = 0; yRel < yScale; ++yRel) {
                         for (int zRel = 0; zRel < zScale; ++zRel) {
-                            double d_dx__xyz = gradX[yRel][zRel];
+                            double d_dx__xyz = gradientXZ ? gradX[yRel][zRel] : 0;
                             for (int xRel = 0; xRel < xScale; ++xRel) {
                                 double vxyz = vals[yRel][zRel][xRel];
-                                double d_dy__xyz = gradY[zRel][xRel];
-                                double d_dz__xyz = gradZ[yRel][xRel];
+                                double d_dy__xyz = gradientY ? gradY[zRel][xRel] : 0;
+                                double d_dz__xyz = gradientXZ ? gradZ[yRel][xRel] : 0;
                                 consumer.accept(x + xRel, y + yRel, z + zRel, d_dx__xyz, d_dy__xyz, d_dz__xyz, vxyz);
                             }
                         }
@@ -333,4 +387,9 @@ public interface IBuilder {
             }
         }
     }
+
+    @FunctionalInterface
+    interface BoundsFunction {
+        Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+    }
 }
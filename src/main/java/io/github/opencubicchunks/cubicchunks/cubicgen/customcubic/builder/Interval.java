@@ -0,0 +1,133 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Closed range of values an {@link IBuilder} can return in some region, see
+ * {@link IBuilder#getBounds(int, int, int, int, int, int)}.
+ * <p>
+ * All operations round outwards, so the result always contains every value the same floating point operation could
+ * produce for arguments in the input ranges. Anything that could produce NaN results in {@link #UNBOUNDED}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class Interval {
+
+    public static final Interval UNBOUNDED = new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    public final double min;
+    public final double max;
+
+    private Interval(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Returns interval between the given values, in any order.
+     */
+    public static Interval of(double a, double b) {
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return UNBOUNDED;
+        }
+        return new Interval(Math.min(a, b), Math.max(a, b));
+    }
+
+    public static Interval of(double value) {
+        return of(value, value);
+    }
+
+    private static Interval rounded(double min, double max) {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            return UNBOUNDED;
+        }
+        return new Interval(Math.nextDown(min), Math.nextUp(max));
+    }
+
+    public boolean isBounded() {
+        return !Double.isInfinite(min) && !Double.isInfinite(max);
+    }
+
+    public boolean contains(double value) {
+        return value >= min && value <= max;
+    }
+
+    public Interval union(Interval other) {
+        return new Interval(Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    /**
+     * Returns this interval extended by the given amount on both sides.
+     */
+    public Interval expand(double amount) {
+        return rounded(min - amount, max + amount);
+    }
+
+    public Interval add(Interval other) {
+        return rounded(min + other.min, max + other.max);
+    }
+
+    public Interval sub(Interval other) {
+        return rounded(min - other.max, max - other.min);
+    }
+
+    public Interval mul(Interval other) {
+        double a = min * other.min, b = min * other.max, c = max * other.min, d = max * other.max;
+        return rounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+    public Interval div(Interval other) {
+        if (other.contains(0)) {
+            return UNBOUNDED;
+        }
+        double a = min / other.min, b = min / other.max, c = max / other.min, d = max / other.max;
+        return rounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+    // the operations below are monotonic, so they can be applied directly to both ends
+
+    public Interval clamp(double low, double high) {
+        return of(Math.min(Math.max(min, low), high), Math.min(Math.max(max, low), high));
+    }
+
+    public Interval signum() {
+        return of(Math.signum(min), Math.signum(max));
+    }
+
+    /**
+     * See {@link io.github.opencubicchunks.cubicchunks.api.util.MathUtil#lerp(double, double, double)}, computed as
+     * {@code low + selector * (high - low)}.
+     */
+    public static Interval lerp(Interval selector, Interval low, Interval high) {
+        return low.add(selector.mul(high.sub(low)));
+    }
+
+    @Override public String toString() {
+        return "[" + min + ", " + max + "]";
+    }
+}
@@ -79,37 +79,17 @@ public class NoiseSource {
         }
 
         public IBuilder create() {
-            com.flowpowered.noise.module.Module mod;
+            // only used for max value, so that normalization is exactly the same as it was with flow-noise modules
             com.flowpowered.noise.module.source.Perlin perlin = new com.flowpowered.noise.module.source.Perlin();
-            perlin.setSeed((int) ((seed & 0xFFFFFFFF) ^ (seed >>> 32)));
             perlin.setOctaveCount(octaves);
-            mod = perlin;
+            double maxValue = perlin.getMaxValue();
+            int intSeed = (int) ((seed & 0xFFFFFFFF) ^ (seed >>> 32));
             if (normalized) {
-                com.flowpowered.noise.module.modifier.ScaleBias scaleBias = new com.flowpowered.noise.module.modifier.ScaleBias();
-                scaleBias.setScale(2 / perlin.getMaxValue());
-                scaleBias.setBias(-1);
-                scaleBias.setSourceModule(0, mod);
-                mod = scaleBias;
-
-                scaleBias = new com.flowpowered.noise.module.modifier.ScaleBias();
-                scaleBias.setScale((maxNorm - minNorm) / 2);
-                scaleBias.setBias((maxNorm + minNorm) / 2);
-                scaleBias.setSourceModule(0, mod);
-                mod = scaleBias;
+                return new PerlinNoise(intSeed, octaves, fx, fy, fz, true,
+                        2 / maxValue, -1, (maxNorm - minNorm) / 2, (maxNorm + minNorm) / 2);
             } else {
-                com.flowpowered.noise.module.modifier.ScaleBias scaleBias = new com.flowpowered.noise.module.modifier.ScaleBias();
-                scaleBias.setScale(2);
-                scaleBias.setBias(-perlin.getMaxValue());
-                scaleBias.setSourceModule(0, mod);
-                mod = scaleBias;
+                return new PerlinNoise(intSeed, octaves, fx, fy, fz, false, 2, -maxValue, 1, 0);
             }
-            com.flowpowered.noise.module.modifier.ScalePoint scaled = new com.flowpowered.noise.module.modifier.ScalePoint();
-            scaled.setXScale(fx);
-            scaled.setYScale(fy);
-            scaled.setZScale(fz);
-            scaled.setSourceModule(0, mod);
-            mod = scaled;
-            return mod::getValue;
         }
     }
 
@@ -0,0 +1,261 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import com.flowpowered.noise.Utils;
+import mcp.MethodsReturnNonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Perlin noise with the same values as flow-noise {@code Perlin} wrapped in {@code ScaleBias} and {@code ScalePoint}
+ * modules, as created by {@link NoiseSource.PerlinBuilder}, but without virtual calls between the modules.
+ * <p>
+ * {@link #fill} evaluates whole rows of points one octave at a time, computing the parts that depend only on Y and Z
+ * once per row. All arithmetic is done in the same order as in flow-noise, so results are exactly the same.
+ * <p>
+ * Gradient vectors are copied from {@link Utils#RANDOM_VECTORS} when the noise is created, after they have been
+ * replaced by {@code ConversionUtils.initFlowNoiseHack()}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class PerlinNoise implements IBuilder {
+
+    // constants from flow-noise Noise
+    private static final int X_NOISE_GEN = 1619;
+    private static final int Y_NOISE_GEN = 31337;
+    private static final int Z_NOISE_GEN = 6971;
+    private static final int SEED_NOISE_GEN = 1013;
+    private static final int SHIFT_NOISE_GEN = 8;
+
+    // defaults of flow-noise Perlin
+    private static final double LACUNARITY = 2.0;
+    private static final double PERSISTENCE = 0.5;
+
+    private final double[] gradX = new double[256];
+    private final double[] gradY = new double[256];
+    private final double[] gradZ = new double[256];
+
+    private final int seed;
+    private final int octaves;
+    private final double freqX, freqY, freqZ;
+
+    // applied as (value * scale1 + bias1) * scale2 + bias2, or only the first one if not twoStepNormalize
+    private final boolean twoStepNormalize;
+    private final double scale1, bias1, scale2, bias2;
+
+    // bound of the sum of all octaves, before normalization
+    private final double maxAbsValue;
+
+    PerlinNoise(int seed, int octaves, double freqX, double freqY, double freqZ,
+            boolean twoStepNormalize, double scale1, double bias1, double scale2, double bias2) {
+        this.seed = seed;
+        this.octaves = octaves;
+        this.freqX = freqX;
+        this.freqY = freqY;
+        this.freqZ = freqZ;
+        this.twoStepNormalize = twoStepNormalize;
+        this.scale1 = scale1;
+        this.bias1 = bias1;
+        this.scale2 = scale2;
+        this.bias2 = bias2;
+        for (int i = 0; i < 256; i++) {
+            gradX[i] = Utils.RANDOM_VECTORS[i << 2];
+            gradY[i] = Utils.RANDOM_VECTORS[(i << 2) + 1];
+            gradZ[i] = Utils.RANDOM_VECTORS[(i << 2) + 2];
+        }
+
+        // Each octave is interpolated between dot products of gradients with vectors from the cube corners, which
+        // can't be longer than sqrt(3). A small margin is added for rounding errors.
+        double maxGradient = 0;
+        for (int i = 0; i < 256; i++) {
+            maxGradient = Math.max(maxGradient, Math.sqrt(gradX[i] * gradX[i] + gradY[i] * gradY[i] + gradZ[i] * gradZ[i]));
+        }
+        double octaveBound = maxGradient * Math.sqrt(3) * 2.12 * 1.0001;
+        double maxAbsValue = 0;
+        double persistence = 1.0;
+        for (int octave = 0; octave < octaves; octave++) {
+            maxAbsValue += octaveBound * persistence;
+            persistence *= PERSISTENCE;
+        }
+        this.maxAbsValue = maxAbsValue;
+    }
+
+    @Override public double get(int x, int y, int z) {
+        double x1 = x * freqX;
+        double y1 = y * freqY;
+        double z1 = z * freqZ;
+        double value = 0.0;
+        double persistence = 1.0;
+        for (int octave = 0; octave < octaves; octave++) {
+            value += coherentNoise(Utils.makeInt32Range(x1), Utils.makeInt32Range(y1), Utils.makeInt32Range(z1), seed + octave)
+                    * persistence;
+            x1 *= LACUNARITY;
+            y1 *= LACUNARITY;
+            z1 *= LACUNARITY;
+            persistence *= PERSISTENCE;
+        }
+        return normalize(value);
+    }
+
+    @Override public void fill(double[] out, int startX, int startY, int startZ,
+            int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        double[] rowX = new double[sizeX];
+        int i = 0;
+        for (int iy = 0; iy < sizeY; iy++) {
+            double y = (startY + iy * stepY) * freqY;
+            for (int iz = 0; iz < sizeZ; iz++) {
+                double z = (startZ + iz * stepZ) * freqZ;
+                for (int ix = 0; ix < sizeX; ix++) {
+                    rowX[ix] = (startX + ix * stepX) * freqX;
+                    out[i + ix] = 0.0;
+                }
+                fillRow(out, i, rowX, sizeX, y, z);
+                for (int ix = 0; ix < sizeX; ix++) {
+                    out[i + ix] = normalize(out[i + ix]);
+                }
+                i += sizeX;
+            }
+        }
+    }
+
+    @Override public Interval getBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        // Coordinates outside of int range (possible only when far lands are disabled) break the noise, as the
+        // position within a noise cell is no longer between 0 and 1
+        double maxScale = Math.pow(LACUNARITY, Math.max(0, octaves - 1));
+        if (outOfIntRange(minX, maxX, freqX * maxScale) || outOfIntRange(minY, maxY, freqY * maxScale)
+                || outOfIntRange(minZ, maxZ, freqZ * maxScale)) {
+            return Interval.UNBOUNDED;
+        }
+        Interval value = Interval.of(-maxAbsValue, maxAbsValue).mul(Interval.of(scale1)).add(Interval.of(bias1));
+        return twoStepNormalize ? value.mul(Interval.of(scale2)).add(Interval.of(bias2)) : value;
+    }
+
+    private static boolean outOfIntRange(int min, int max, double scale) {
+        double limit = Integer.MAX_VALUE / 2.0;
+        return !(Math.abs(min * scale) < limit && Math.abs(max * scale) < limit);
+    }
+
+    // adds all octaves to out[offset...offset+size), x coordinates in rowX are modified
+    private void fillRow(double[] out, int offset, double[] rowX, int size, double y1, double z1) {
+        double persistence = 1.0;
+        for (int octave = 0; octave < octaves; octave++) {
+            int octaveSeed = seed + octave;
+            double y = Utils.makeInt32Range(y1);
+            double z = Utils.makeInt32Range(z1);
+
+            int y0 = (y > 0.0 ? (int) y : (int) y - 1);
+            int z0 = (z > 0.0 ? (int) z : (int) z - 1);
+            double ys = sCurve3(y - y0);
+            double zs = sCurve3(z - z0);
+            double dy0 = y - y0, dy1 = y - (y0 + 1);
+            double dz0 = z - z0, dz1 = z - (z0 + 1);
+            int seedHash = SEED_NOISE_GEN * octaveSeed;
+            int h00 = Y_NOISE_GEN * y0 + Z_NOISE_GEN * z0 + seedHash;
+            int h10 = Y_NOISE_GEN * (y0 + 1) + Z_NOISE_GEN * z0 + seedHash;
+            int h01 = Y_NOISE_GEN * y0 + Z_NOISE_GEN * (z0 + 1) + seedHash;
+            int h11 = Y_NOISE_GEN * (y0 + 1) + Z_NOISE_GEN * (z0 + 1) + seedHash;
+
+            for (int ix = 0; ix < size; ix++) {
+                double x = Utils.makeInt32Range(rowX[ix]);
+                int x0 = (x > 0.0 ? (int) x : (int) x - 1);
+                double xs = sCurve3(x - x0);
+                double dx0 = x - x0, dx1 = x - (x0 + 1);
+                int hx0 = X_NOISE_GEN * x0, hx1 = X_NOISE_GEN * (x0 + 1);
+
+                double n0 = gradient(hx0 + h00, dx0, dy0, dz0);
+                double n1 = gradient(hx1 + h00, dx1, dy0, dz0);
+                double ix0 = lerp(n0, n1, xs);
+                n0 = gradient(hx0 + h10, dx0, dy1, dz0);
+                n1 = gradient(hx1 + h10, dx1, dy1, dz0);
+                double ix1 = lerp(n0, n1, xs);
+                double iy0 = lerp(ix0, ix1, ys);
+                n0 = gradient(hx0 + h01, dx0, dy0, dz1);
+                n1 = gradient(hx1 + h01, dx1, dy0, dz1);
+                ix0 = lerp(n0, n1, xs);
+                n0 = gradient(hx0 + h11, dx0, dy1, dz1);
+                n1 = gradient(hx1 + h11, dx1, dy1, dz1);
+                ix1 = lerp(n0, n1, xs);
+                double iy1 = lerp(ix0, ix1, ys);
+
+                out[offset + ix] += lerp(iy0, iy1, zs) * persistence;
+                rowX[ix] *= LACUNARITY;
+            }
+            y1 *= LACUNARITY;
+            z1 *= LACUNARITY;
+            persistence *= PERSISTENCE;
+        }
+    }
+
+    private double coherentNoise(double x, double y, double z, int seed) {
+        int x0 = (x > 0.0 ? (int) x : (int) x - 1);
+        int y0 = (y > 0.0 ? (int) y : (int) y - 1);
+        int z0 = (z > 0.0 ? (int) z : (int) z - 1);
+        int x1 = x0 + 1, y1 = y0 + 1, z1 = z0 + 1;
+
+        double xs = sCurve3(x - x0);
+        double ys = sCurve3(y - y0);
+        double zs = sCurve3(z - z0);
+
+        double n0, n1, ix0, ix1, iy0, iy1;
+        n0 = gradientNoise(x, y, z, x0, y0, z0, seed);
+        n1 = gradientNoise(x, y, z, x1, y0, z0, seed);
+        ix0 = lerp(n0, n1, xs);
+        n0 = gradientNoise(x, y, z, x0, y1, z0, seed);
+        n1 = gradientNoise(x, y, z, x1, y1, z0, seed);
+        ix1 = lerp(n0, n1, xs);
+        iy0 = lerp(ix0, ix1, ys);
+        n0 = gradientNoise(x, y, z, x0, y0, z1, seed);
+        n1 = gradientNoise(x, y, z, x1, y0, z1, seed);
+        ix0 = lerp(n0, n1, xs);
+        n0 = gradientNoise(x, y, z, x0, y1, z1, seed);
+        n1 = gradientNoise(x, y, z, x1, y1, z1, seed);
+        ix1 = lerp(n0, n1, xs);
+        iy1 = lerp(ix0, ix1, ys);
+        return lerp(iy0, iy1, zs);
+    }
+
+    private double gradientNoise(double x, double y, double z, int ix, int iy, int iz, int seed) {
+        int hash = X_NOISE_GEN * ix + Y_NOISE_GEN * iy + Z_NOISE_GEN * iz + SEED_NOISE_GEN * seed;
+        return gradient(hash, x - ix, y - iy, z - iz);
+    }
+
+    private double gradient(int hash, double dx, double dy, double dz) {
+        int idx = (hash ^ (hash >> SHIFT_NOISE_GEN)) & 0xff;
+        return ((gradX[idx] * dx) + (gradY[idx] * dy) + (gradZ[idx] * dz)) * 2.12;
+    }
+
+    private double normalize(double value) {
+        value = value * scale1 + bias1;
+        return twoStepNormalize ? value * scale2 + bias2 : value;
+    }
+
+    private static double sCurve3(double a) {
+        return a * a * (3.0 - 2.0 * a);
+    }
+
+    private static double lerp(double n0, double n1, double a) {
+        return ((1.0 - a) * n0) + (a * n1);
+    }
+}
@@ -47,6 +47,7 @@ class BasicSettingsTab {
     private final UIVerticalTableLayout container;
 
     private final UICheckBox caves;
+    private final UICheckBox noiseCaves;
     private final UICheckBox strongholds;
     private final UICheckBox villages;
     private final UICheckBox mineshafts;
@@ -93,6 +94,10 @@ class BasicSettingsTab {
 
                 .add(this.dungeons = makeCheckbox(gui, malisisText("dungeons"), conf.getBool("dungeons")),
                         new UIVerticalTableLayout.GridLocation(WIDTH_2_COL * 0, 4, WIDTH_2_COL))
+                // presets saved before noise caves were added don't have the entry
+                .add(this.noiseCaves = makeCheckbox(gui, malisisText("noiseCaves"),
+                        conf.get("noiseCaves") != null && conf.getBool("noiseCaves")),
+                        new UIVerticalTableLayout.GridLocation(WIDTH_2_COL * 1, 4, WIDTH_2_COL))
 
                 .add(this.biome = makeBiomeList(gui, conf.getInt("biome")),
                         new UIVerticalTableLayout.GridLocation(WIDTH_2_COL * 0, 5, WIDTH_2_COL))
@@ -113,6 +118,7 @@ class BasicSettingsTab {
 
     void writeConfig(JsonObjectView conf) {
         conf.put("caves", caves.isChecked());
+        conf.put("noiseCaves", noiseCaves.isChecked());
         conf.put("strongholds", strongholds.isChecked());
         conf.put("villages", villages.isChecked());
         conf.put("mineshafts", mineshafts.isChecked());
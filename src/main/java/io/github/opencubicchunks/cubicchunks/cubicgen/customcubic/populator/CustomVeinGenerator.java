@@ -23,6 +23,9 @@
  */
 package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator;
 
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.BlockStone;
@@ -33,9 +36,9 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.feature.WorldGenerator;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.Random;
-import java.util.function.BiPredicate;
 
 import static io.github.opencubicchunks.cubicchunks.api.util.MathUtil.lerp;
 import static net.minecraft.util.math.MathHelper.cos;
@@ -45,15 +48,15 @@ import static net.minecraft.util.math.MathHelper.sin;
 @ParametersAreNonnullByDefault
 public class CustomVeinGenerator extends WorldGenerator {
 
+    private static final CustomGeneratorSettings.GenerationCondition NATURAL_STONE =
+            (r, w, p) -> isNaturalStone(w.getBlockState(p));
+
     private final IBlockState oreBlock;
     private final int stepCount;
     private final CustomGeneratorSettings.GenerationCondition blockPlaceCondition;
 
     public CustomVeinGenerator(IBlockState state, int blockCount) {
-        this(state, blockCount, (r, w, p) -> {
-            IBlockState s = w.getBlockState(p);
-            return s.getBlock() == Blocks.STONE && s.getValue(BlockStone.VARIANT).isNatural();
-        });
+        this(state, blockCount, NATURAL_STONE);
     }
 
     public CustomVeinGenerator(IBlockState state, int stepCount, CustomGeneratorSettings.GenerationCondition blockPlaceCondition) {
@@ -63,6 +66,8 @@ public class CustomVeinGenerator extends WorldGenerator {
     }
 
     public boolean generate(World world, Random rand, BlockPos pos) {
+        PopulationArea area = PopulationArea.around(world, pos);
+
         float angle = rand.nextFloat() * (float) Math.PI;
         double x1 = pos.getX() + sin(angle) * this.stepCount / 8.0F;
         double x2 = pos.getX() - sin(angle) * this.stepCount / 8.0F;
@@ -81,13 +86,13 @@ public class CustomVeinGenerator extends WorldGenerator {
             double xzDiameter = (sin((float) Math.PI * progress) + 1.0F) * sizeFactor + 1.0D;
             double yDiameter = (sin((float) Math.PI * progress) + 1.0F) * sizeFactor + 1.0D;
 
-            generateEllipsoid(rand, world, this.oreBlock, this.blockPlaceCondition,
+            generateEllipsoid(rand, world, area, this.oreBlock, this.blockPlaceCondition,
                     stepX, stepY, stepZ, xzDiameter, yDiameter);
         }
         return true;
     }
 
-    private static void generateEllipsoid(Random rand, World world, IBlockState blockState,
+    private static void generateEllipsoid(Random rand, World world, @Nullable PopulationArea area, IBlockState blockState,
                                           CustomGeneratorSettings.GenerationCondition placeCondition,
                                           double centerX, double centerY, double centerZ,
                                           double xzDiameter, double yDiameter) {
@@ -99,6 +104,10 @@ public class CustomVeinGenerator extends WorldGenerator {
         int maxY = MathHelper.floor(centerY + yDiameter / 2.0D);
         int maxZ = MathHelper.floor(centerZ + xzDiameter / 2.0D);
 
+        // outside of the population area, or when the cubes aren't loaded, blocks are placed through the world
+        boolean inArea = area != null && area.contains(minX, minY, minZ, maxX, maxY, maxZ);
+        BlockPos.MutableBlockPos mutablePos = inArea ? new BlockPos.MutableBlockPos() : null;
+
         for (int x = minX; x <= maxX; ++x) {
             double dxNorm = (x + 0.5D - centerX) / (xzDiameter / 2.0D);
             if (dxNorm * dxNorm > 1.0D) continue;
@@ -111,6 +120,9 @@ public class CustomVeinGenerator extends WorldGenerator {
                     double dzNorm = (z + 0.5D - centerZ) / (xzDiameter / 2.0D);
                     if (dxNorm * dxNorm + dyNorm * dyNorm + dzNorm * dzNorm > 1.0D) continue;
 
+                    if (inArea && tryPlaceInCube(rand, world, area.getCube(x, y, z), mutablePos.setPos(x, y, z), blockState, placeCondition)) {
+                        continue;
+                    }
                     BlockPos position = new BlockPos(x, y, z);
                     if (placeCondition.canGenerate(rand, world, position)) {
                         world.setBlockState(position, blockState, 2);
@@ -119,4 +131,84 @@ public class CustomVeinGenerator extends WorldGenerator {
             }
         }
     }
+
+    /**
+     * Places the block by writing directly to the cube, skipping world lookup, light checks and block update
+     * notifications. This is only done when the placed block can't change lighting, so that the result is the same as
+     * with {@link World#setBlockState(BlockPos, IBlockState, int)} during population.
+     *
+     * @return false if the block needs to be placed through the world instead, before the condition is checked
+     */
+    private static boolean tryPlaceInCube(Random rand, World world, ICube cube, BlockPos.MutableBlockPos pos,
+            IBlockState blockState, CustomGeneratorSettings.GenerationCondition placeCondition) {
+        IBlockState oldState = cube.getBlockState(pos);
+        if (oldState.getLightOpacity() != blockState.getLightOpacity()
+                || oldState.getLightValue() != blockState.getLightValue()
+                || oldState.getBlock().hasTileEntity(oldState) || blockState.getBlock().hasTileEntity(blockState)) {
+            return false;
+        }
+        boolean canPlace = placeCondition == NATURAL_STONE ? isNaturalStone(oldState) : placeCondition.canGenerate(rand, world, pos);
+        if (canPlace) {
+            // block callbacks may keep the position
+            cube.setBlockState(pos.toImmutable(), blockState);
+        }
+        return true;
+    }
+
+    private static boolean isNaturalStone(IBlockState state) {
+        return state.getBlock() == Blocks.STONE && state.getValue(BlockStone.VARIANT).isNatural();
+    }
+
+    /**
+     * The 2x2x2 cubes modified when populating a cube, if they are all loaded
+     */
+    private static final class PopulationArea {
+
+        private final int minBlockX, minBlockY, minBlockZ;
+        private final ICube[] cubes;
+
+        private PopulationArea(int minCubeX, int minCubeY, int minCubeZ, ICube[] cubes) {
+            this.minBlockX = Coords.cubeToMinBlock(minCubeX);
+            this.minBlockY = Coords.cubeToMinBlock(minCubeY);
+            this.minBlockZ = Coords.cubeToMinBlock(minCubeZ);
+            this.cubes = cubes;
+        }
+
+        /**
+         * Returns the population area of the cube that would generate a feature at the given position, or null if it's
+         * not a cubic world or not all the cubes are loaded.
+         */
+        @Nullable
+        static PopulationArea around(World world, BlockPos pos) {
+            if (!(world instanceof ICubicWorld) || !((ICubicWorld) world).isCubicWorld()) {
+                return null;
+            }
+            // features are generated with ICube.SIZE / 2 offset from the populated cube
+            int minCubeX = Coords.blockToCube(pos.getX() - ICube.SIZE / 2);
+            int minCubeY = Coords.blockToCube(pos.getY() - ICube.SIZE / 2);
+            int minCubeZ = Coords.blockToCube(pos.getZ() - ICube.SIZE / 2);
+            ICube[] cubes = new ICube[8];
+            for (int i = 0; i < 8; i++) {
+                ICube cube = ((ICubicWorld) world).getCubeCache().getLoadedCube(
+                        minCubeX + (i & 1), minCubeY + (i >> 1 & 1), minCubeZ + (i >> 2 & 1));
+                if (cube == null) {
+                    return null;
+                }
+                cubes[i] = cube;
+            }
+            return new PopulationArea(minCubeX, minCubeY, minCubeZ, cubes);
+        }
+
+        boolean contains(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return minX >= minBlockX && minY >= minBlockY && minZ >= minBlockZ
+                    && maxX < minBlockX + ICube.SIZE * 2 && maxY < minBlockY + ICube.SIZE * 2 && maxZ < minBlockZ + ICube.SIZE * 2;
+        }
+
+        ICube getCube(int blockX, int blockY, int blockZ) {
+            int dx = (blockX - minBlockX) >> 4;
+            int dy = (blockY - minBlockY) >> 4;
+            int dz = (blockZ - minBlockZ) >> 4;
+            return cubes[dx | dy << 1 | dz << 2];
+        }
+    }
 }
@@ -30,11 +30,13 @@ import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.ICubicPopula
 import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.event.CubicOreGenEvent;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.event.DecorateCubeBiomeEvent;
 import io.github.opencubicchunks.cubicchunks.cubicgen.CWGEventFactory;
+import io.github.opencubicchunks.cubicchunks.cubicgen.PopulationRandom;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BiomeDesc;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.BlockFlower;
 import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
@@ -47,9 +49,16 @@ import net.minecraft.world.gen.feature.WorldGenPumpkin;
 import net.minecraft.world.gen.feature.WorldGenerator;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.terraingen.DecorateBiomeEvent;
+import net.minecraftforge.fml.common.registry.ForgeRegistries;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import static io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.PopulatorUtils.genOreBellCurve;
 import static io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator.PopulatorUtils.genOreUniform;
@@ -67,260 +76,325 @@ public final class DefaultDecorator implements ICubicPopulator {
     public static class Ores implements ICubicPopulator {
 
         private final CustomGeneratorSettings cfg;
+        // generators and biome sets are the same for every cube, so they are created only once
+        private final List<OreGenerator<CustomGeneratorSettings.StandardOreConfig>> standardOres = new ArrayList<>();
+        private final List<OreGenerator<CustomGeneratorSettings.PeriodicGaussianOreConfig>> periodicGaussianOres = new ArrayList<>();
 
         public Ores(CustomGeneratorSettings cfg) {
             this.cfg = cfg;
-         }
+            // ore streams are named by the ore and its config, so that adding another ore doesn't change them
+            PopulationRandom.StageNames stages = new PopulationRandom.StageNames();
+            for (CustomGeneratorSettings.StandardOreConfig c : cfg.standardOres) {
+                if (c.blockstate.getBlockState() != null) {
+                    String name = "standard_ore:" + c.blockstate.getBlockState() + ":" + c.spawnSize + ":" + c.spawnTries + ":"
+                            + c.spawnProbability + ":" + c.minHeight + ":" + c.maxHeight;
+                    standardOres.add(new OreGenerator<>(c, stages.stage(name), c.blockstate.getBlockState(), c.spawnSize,
+                            c.placeBlockWhen, c.biomes));
+                }
+            }
+            for (CustomGeneratorSettings.PeriodicGaussianOreConfig c : cfg.periodicGaussianOres) {
+                if (c.blockstate.getBlockState() != null) {
+                    String name = "periodic_gaussian_ore:" + c.blockstate.getBlockState() + ":" + c.spawnSize + ":" + c.spawnTries + ":"
+                            + c.spawnProbability + ":" + c.heightMean + ":" + c.heightStdDeviation + ":" + c.heightSpacing + ":"
+                            + c.minHeight + ":" + c.maxHeight;
+                    periodicGaussianOres.add(new OreGenerator<>(c, stages.stage(name), c.blockstate.getBlockState(), c.spawnSize,
+                            c.placeBlockWhen, c.biomes));
+                }
+            }
+        }
 
         @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
             MinecraftForge.ORE_GEN_BUS.post(new CubicOreGenEvent.Pre(world, random, pos));
 
             // TODO: allow interleaved order
-            for (CustomGeneratorSettings.StandardOreConfig c : cfg.standardOres) {
-                if (c.blockstate.getBlockState() == null) {
+            for (OreGenerator<CustomGeneratorSettings.StandardOreConfig> ore : standardOres) {
+                if (!ore.canGenerateIn(biome)) {
                     continue;
                 }
-                if (c.biomes != null && !c.biomes.contains(new BiomeDesc(biome))) {
-                    continue;
-                }
-
-                WorldGenerator gen = c.placeBlockWhen == null ?
-                        new CustomVeinGenerator(c.blockstate.getBlockState(), c.spawnSize) :
-                        new CustomVeinGenerator(c.blockstate.getBlockState(), c.spawnSize, c.placeBlockWhen);
-                if (CWGEventFactory.generateOre(world, random, gen, pos, c.blockstate.getBlockState())) {
-                    genOreUniform(world, cfg, random, pos, c.generateWhen, c.spawnTries, c.spawnProbability, gen, c.minHeight, c.maxHeight);
+                CustomGeneratorSettings.StandardOreConfig c = ore.config;
+                Random oreRandom = PopulationRandom.fork(random, ore.stage);
+                if (CWGEventFactory.generateOre(world, oreRandom, ore.generator, pos, ore.blockState)) {
+                    genOreUniform(world, cfg, oreRandom, pos, c.generateWhen, c.spawnTries, c.spawnProbability, ore.generator, c.minHeight, c.maxHeight);
                 }
             }
-            for (CustomGeneratorSettings.PeriodicGaussianOreConfig c : cfg.periodicGaussianOres) {
-                if (c.blockstate.getBlockState() == null) {
-                    continue;
-                }
-                if (c.biomes != null && !c.biomes.contains(new BiomeDesc(biome))) {
+            for (OreGenerator<CustomGeneratorSettings.PeriodicGaussianOreConfig> ore : periodicGaussianOres) {
+                if (!ore.canGenerateIn(biome)) {
                     continue;
                 }
-                WorldGenerator gen = c.placeBlockWhen == null ?
-                        new CustomVeinGenerator(c.blockstate.getBlockState(), c.spawnSize) :
-                        new CustomVeinGenerator(c.blockstate.getBlockState(), c.spawnSize, c.placeBlockWhen);
-                if (CWGEventFactory.generateOre(world, random, gen, pos, c.blockstate.getBlockState())) {
-                    genOreBellCurve(world, cfg, random, pos, c.generateWhen, c.spawnTries, c.spawnProbability, gen, c.heightMean, c.heightStdDeviation,
-                            c.heightSpacing, c.minHeight, c.maxHeight);
+                CustomGeneratorSettings.PeriodicGaussianOreConfig c = ore.config;
+                Random oreRandom = PopulationRandom.fork(random, ore.stage);
+                if (CWGEventFactory.generateOre(world, oreRandom, ore.generator, pos, ore.blockState)) {
+                    genOreBellCurve(world, cfg, oreRandom, pos, c.generateWhen, c.spawnTries, c.spawnProbability, ore.generator, c.heightMean,
+                            c.heightStdDeviation, c.heightSpacing, c.minHeight, c.maxHeight);
                 }
             }
             MinecraftForge.ORE_GEN_BUS.post(new CubicOreGenEvent.Post(world, random, pos));
         }
     }
 
+    private static final class OreGenerator<T> {
+
+        final T config;
+        // random stream of this ore, see PopulationRandom
+        final int stage;
+        final IBlockState blockState;
+        final WorldGenerator generator;
+        // null if the ore can generate in any biome
+        @Nullable private final Set<Biome> biomes;
+
+        OreGenerator(T config, int stage, IBlockState blockState, int spawnSize,
+                @Nullable CustomGeneratorSettings.GenerationCondition placeBlockWhen, @Nullable Set<BiomeDesc> biomes) {
+            this.config = config;
+            this.stage = stage;
+            this.blockState = blockState;
+            this.generator = placeBlockWhen == null ?
+                    new CustomVeinGenerator(blockState, spawnSize) :
+                    new CustomVeinGenerator(blockState, spawnSize, placeBlockWhen);
+            if (biomes == null) {
+                this.biomes = null;
+            } else {
+                // BiomeDesc equality is by biome ID, so use the same check once for all registered biomes
+                this.biomes = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Biome biome : ForgeRegistries.BIOMES) {
+                    if (biomes.contains(new BiomeDesc(biome))) {
+                        this.biomes.add(biome);
+                    }
+                }
+            }
+        }
+
+        boolean canGenerateIn(Biome biome) {
+            return biomes == null || biomes.contains(biome);
+        }
+    }
+
     @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
         ICubicWorld cworld = (ICubicWorld) world;
         BiomeDecorator dec = biome.decorator;
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.SAND)) {
-            generateOnTop(world, random, pos, dec.sandPatchesPerChunk, dec.sandGen);
+        // each stage gets its own random stream if population random streams are enabled
+        Random stageRandom = PopulationRandom.fork(random, "sand");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.SAND)) {
+            generateOnTop(world, stageRandom, pos, dec.sandPatchesPerChunk, dec.sandGen);
         }
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.CLAY)) {
-            generateOnTop(world, random, pos, dec.clayPerChunk, dec.clayGen);
+        stageRandom = PopulationRandom.fork(random, "clay");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.CLAY)) {
+            generateOnTop(world, stageRandom, pos, dec.clayPerChunk, dec.clayGen);
         }
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.SAND_PASS2)) {
-            generateOnTop(world, random, pos, dec.gravelPatchesPerChunk, dec.gravelGen);
+        stageRandom = PopulationRandom.fork(random, "sand_pass2");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.SAND_PASS2)) {
+            generateOnTop(world, stageRandom, pos, dec.gravelPatchesPerChunk, dec.gravelGen);
         }
 
-        int treeCount = random.nextFloat() < dec.extraTreeChance ? dec.treesPerChunk + 1 : dec.treesPerChunk;
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.TREE)) {
+        stageRandom = PopulationRandom.fork(random, "tree");
+        int treeCount = stageRandom.nextFloat() < dec.extraTreeChance ? dec.treesPerChunk + 1 : dec.treesPerChunk;
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.TREE)) {
             for (int i = 0; i < treeCount; ++i) {
-                int xOffset1 = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset1 = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                WorldGenAbstractTree treeGen = biome.getRandomTreeFeature(random);
+                int xOffset1 = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset1 = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                WorldGenAbstractTree treeGen = biome.getRandomTreeFeature(stageRandom);
                 treeGen.setDecorationDefaults();
                 BlockPos top1 = cworld.getSurfaceForCube(pos, xOffset1, zOffset1, 0, ICubicWorld.SurfaceType.OPAQUE);
-                if (top1 != null && treeGen.generate(world, random, top1)) {
-                    treeGen.generateSaplings(world, random, top1);
+                if (top1 != null && treeGen.generate(world, stageRandom, top1)) {
+                    treeGen.generateSaplings(world, stageRandom, top1);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.BIG_SHROOM)) {
+        stageRandom = PopulationRandom.fork(random, "big_shroom");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.BIG_SHROOM)) {
             for (int i = 0; i < dec.bigMushroomsPerChunk; ++i) {
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                 BlockPos top = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                 if (top != null) {
-                    dec.bigMushroomGen.generate(world, random, top);
+                    dec.bigMushroomGen.generate(world, stageRandom, top);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.FLOWERS)) {
+        stageRandom = PopulationRandom.fork(random, "flowers");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.FLOWERS)) {
             for (int i = 0; i < dec.flowersPerChunk; ++i) {
                 // vanilla chooses random height between 0 and topBlock+32.
                 // Assuming average height a bit less than the average of sea level and 128,
                 // then it should succeed about one in 5+2=7 times for a give cube
                 // TODO: Flower gen: figure out the probabilities and do it right
-                if (random.nextInt(7) != 0) {
+                if (stageRandom.nextInt(7) != 0) {
                     continue;
                 }
-                BlockPos blockPos = pos.randomPopulationPos(random);
-                BlockFlower.EnumFlowerType type = biome.pickRandomFlower(random, blockPos);
+                BlockPos blockPos = pos.randomPopulationPos(stageRandom);
+                BlockFlower.EnumFlowerType type = biome.pickRandomFlower(stageRandom, blockPos);
                 BlockFlower flowerBlock = type.getBlockType().getBlock();
 
                 if (flowerBlock.getDefaultState().getMaterial() != Material.AIR) {
                     dec.flowerGen.setGeneratedBlock(flowerBlock, type);
-                    dec.flowerGen.generate(world, random, blockPos);
+                    dec.flowerGen.generate(world, stageRandom, blockPos);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.GRASS)) {
+        stageRandom = PopulationRandom.fork(random, "grass");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.GRASS)) {
             for (int i = 0; i < dec.grassPerChunk; ++i) {
                 // vanilla chooses random height between 0 and topBlock*2.
                 // Then the grass generator goes down to find the top block.
                 // grass underground is quite rare so we can assume it almost never happens
                 // and generate only at the "real" top. And it will happen on average half of the time.
-                if (random.nextBoolean()) {
+                if (stageRandom.nextBoolean()) {
                     continue;
                 }
                 // because vanilla grass generator goes down looking for a solid block
                 // make sure there actually is one
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                 BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.SOLID);
                 if (blockPos != null) {
-                    biome.getRandomWorldGenForGrass(random).generate(world, random, blockPos);
+                    biome.getRandomWorldGenForGrass(stageRandom).generate(world, stageRandom, blockPos);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.DEAD_BUSH)) {
+        stageRandom = PopulationRandom.fork(random, "dead_bush");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.DEAD_BUSH)) {
             for (int i = 0; i < dec.deadBushPerChunk; ++i) {
                 // same as above
-                if (random.nextBoolean()) {
+                if (stageRandom.nextBoolean()) {
                     continue;
                 }
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                 BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.SOLID);
                 if (blockPos != null) {
-                    (new WorldGenDeadBush()).generate(world, random, blockPos);
+                    (new WorldGenDeadBush()).generate(world, stageRandom, blockPos);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.LILYPAD)) {
+        stageRandom = PopulationRandom.fork(random, "lilypad");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.LILYPAD)) {
             for (int i = 0; i < dec.waterlilyPerChunk; ++i) {
                 // same as above
-                if (random.nextBoolean()) {
+                if (stageRandom.nextBoolean()) {
                     continue;
                 }
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                 BlockPos top = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                 if (top != null) {
-                    dec.waterlilyGen.generate(world, random, top);
+                    dec.waterlilyGen.generate(world, stageRandom, top);
                 }
             }
         }
 
         int mushroomCount = Math.max(dec.mushroomsPerChunk + 1, 1);
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.SHROOM)) {
+        stageRandom = PopulationRandom.fork(random, "shroom");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.SHROOM)) {
             for (int i = 0; i < mushroomCount; ++i) {
-                if (random.nextInt(4) == 0) {
-                    int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                    int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                if (stageRandom.nextInt(4) == 0) {
+                    int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     BlockPos top = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                     if (top != null) {
-                        dec.mushroomBrownGen.generate(world, random, top);
+                        dec.mushroomBrownGen.generate(world, stageRandom, top);
                     }
                 }
 
-                if (random.nextInt(8) == 0) {
+                if (stageRandom.nextInt(8) == 0) {
                     // vanilla chooses random height between 0 and topBlock*2.
                     // The WorldGenBush (unlike WorldGenDeadBush and grass generator)
                     // won't go down to find the top block. It just attempts to generate at that position.
                     // So assuming vanilla average terrain height is 5*16, it would generate for one attempt in cube
                     // about one in 2*5=10 times
-                    if (random.nextInt(10) != 0) {
+                    if (stageRandom.nextInt(10) != 0) {
                         continue;
                     }
-                    int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                    int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                     if (blockPos != null) {
-                        dec.mushroomRedGen.generate(world, random, blockPos);
+                        dec.mushroomRedGen.generate(world, stageRandom, blockPos);
                     }
                 }
             }
         }
 
         int reedCount = Math.max(dec.reedsPerChunk + 10, 10);
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.REED)) {
+        stageRandom = PopulationRandom.fork(random, "reed");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.REED)) {
             for (int i = 0; i < reedCount; ++i) {
                 // same as for red mushrooms above
-                if (random.nextInt(10) != 0) {
+                if (stageRandom.nextInt(10) != 0) {
                     continue;
                 }
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
 
                 BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                 if (blockPos != null) {
-                    dec.reedGen.generate(world, random, blockPos);
+                    dec.reedGen.generate(world, stageRandom, blockPos);
                 }
             }
         }
 
         // *10 - same reason as for red mushrooms
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.PUMPKIN)) {
-            if (random.nextInt(32 * 10) == 0) {
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+        stageRandom = PopulationRandom.fork(random, "pumpkin");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.PUMPKIN)) {
+            if (stageRandom.nextInt(32 * 10) == 0) {
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
 
                 BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                 if (blockPos != null) {
-                    (new WorldGenPumpkin()).generate(world, random, blockPos);
+                    (new WorldGenPumpkin()).generate(world, stageRandom, blockPos);
                 }
             }
         }
 
-        if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.CACTUS)) {
+        stageRandom = PopulationRandom.fork(random, "cactus");
+        if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.CACTUS)) {
             for (int i = 0; i < dec.cactiPerChunk; ++i) {
                 // same as for red mushrooms above
-                if (random.nextInt(10) != 0) {
+                if (stageRandom.nextInt(10) != 0) {
                     continue;
                 }
-                int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
 
                 BlockPos blockPos = cworld.getSurfaceForCube(pos, xOffset, zOffset, 0, ICubicWorld.SurfaceType.OPAQUE);
                 if (blockPos != null) {
-                    dec.cactusGen.generate(world, random, blockPos);
+                    dec.cactusGen.generate(world, stageRandom, blockPos);
                 }
             }
         }
 
         if (dec.generateFalls) {
-            if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.LAKE_WATER)) {
+            stageRandom = PopulationRandom.fork(random, "lake_water");
+            if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.LAKE_WATER)) {
                 for (int i = 0; i < 50; ++i) {
-                    int yOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int yOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     double prob = waterSourceProbabilityForY(cfg, pos.getMinBlockY() + yOffset);
-                    if (random.nextDouble() > prob) {
+                    if (stageRandom.nextDouble() > prob) {
                         continue;
                     }
-                    int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                    int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     BlockPos blockPos = pos.getMinBlockPos().add(xOffset, yOffset, zOffset);
-                    (new WorldGenLiquids(Blocks.FLOWING_WATER)).generate(world, random, blockPos);
+                    (new WorldGenLiquids(Blocks.FLOWING_WATER)).generate(world, stageRandom, blockPos);
                 }
             }
 
-            if (CWGEventFactory.decorate(world, random, pos, DecorateBiomeEvent.Decorate.EventType.LAKE_LAVA)) {
+            stageRandom = PopulationRandom.fork(random, "lake_lava");
+            if (CWGEventFactory.decorate(world, stageRandom, pos, DecorateBiomeEvent.Decorate.EventType.LAKE_LAVA)) {
                 for (int i = 0; i < 20; ++i) {
-                    int yOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int yOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     double prob = lavaSourceProbabilityForY(cfg, pos.getMinBlockY() + yOffset);
-                    if (random.nextDouble() > prob) {
+                    if (stageRandom.nextDouble() > prob) {
                         continue;
                     }
-                    int xOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
-                    int zOffset = random.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int xOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
+                    int zOffset = stageRandom.nextInt(ICube.SIZE) + ICube.SIZE / 2;
                     BlockPos blockPos = pos.getMinBlockPos().add(xOffset, yOffset, zOffset);
-                    (new WorldGenLiquids(Blocks.FLOWING_LAVA)).generate(world, random, blockPos);
+                    (new WorldGenLiquids(Blocks.FLOWING_LAVA)).generate(world, stageRandom, blockPos);
                 }
             }
         }
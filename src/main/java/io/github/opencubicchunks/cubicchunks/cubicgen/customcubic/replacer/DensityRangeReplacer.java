@@ -25,6 +25,7 @@ package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
 
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.FilterType;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.state.IBlockState;
@@ -110,6 +111,15 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
         return new General(minY, maxY, blockInRange, blockOutOfRange, new HashSet<>(filterBlocks), blockFilterType, minDensity, maxDensity);
     }
 
+    @Override public Gradients getUsedGradients() {
+        return Gradients.NONE;
+    }
+
+    // true if the range is entirely inside or entirely outside of (min, max)
+    private static boolean isRangeIndependent(double minDensity, double maxDensity, double min, double max) {
+        return (minDensity > min && maxDensity < max) || maxDensity <= min || minDensity >= max;
+    }
+
     // specific implementations to avoid unnecessary work in simple cases
     // NOTE: these classes are public to allow them to be directly referenced in generated bytecode
     public static class AlwaysReplace extends DensityRangeReplacer {
@@ -122,6 +132,11 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
         public IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome, int x, int y, int z, double dx, double dy, double dz, double density) {
             return blockInRange;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return true;
+        }
     }
 
     public static class NoBlockThresholdFilter extends DensityRangeReplacer {
@@ -143,6 +158,11 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
             }
             return blockOutOfRange == null ? previousBlock : blockInRange;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return minDensity > threshold || maxDensity <= threshold;
+        }
     }
     public static class NoBlockFilter extends DensityRangeReplacer {
 
@@ -164,6 +184,11 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
             }
             return blockOutOfRange == null ? previousBlock : blockInRange;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return isRangeIndependent(minDensity, maxDensity, min, max);
+        }
     }
 
     public static class SingleBlockFilterNoDensity extends DensityRangeReplacer {
@@ -184,6 +209,11 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
             }
             return previousBlock;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return true;
+        }
     }
 
 
@@ -213,6 +243,11 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
             }
             return previousBlock;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return isRangeIndependent(minDensity, maxDensity, min, max);
+        }
     }
 
     public static class General extends DensityRangeReplacer {
@@ -241,5 +276,10 @@ public abstract class DensityRangeReplacer extends IBiomeBlockReplacer {
             }
             return previousBlock;
         }
+
+        @Override
+        protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+            return isRangeIndependent(minDensity, maxDensity, min, max);
+        }
     }
 }
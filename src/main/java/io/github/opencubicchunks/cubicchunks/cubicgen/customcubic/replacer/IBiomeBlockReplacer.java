@@ -24,6 +24,7 @@
 package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
 
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.world.biome.Biome;
@@ -92,6 +93,65 @@ public abstract class IBiomeBlockReplacer {
         return previousBlock;
     }
 
-    protected abstract IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome,
+    /**
+     * Replaces all blocks in the column, same as calling {@link #getReplacedBlock} for each of them. Replacers can
+     * override it to compute values that are the same for the whole column only once.
+     */
+    public void replaceColumn(ReplacerColumn column) {
+        for (int i = 0; i < ReplacerColumn.SIZE; i++) {
+            column.blocks[i] = getReplacedBlock(column.blocks[i], column.biome, column.x, column.minY + i, column.z,
+                    column.dx[i], column.dy[i], column.dz[i], column.density[i]);
+        }
+    }
+
+    /**
+     * Same as {@link #getReplacedBlock}, without checking the Y range. Public so that it can be called directly from
+     * generated replacer chains, see {@link ReplacerChainCompiler}.
+     */
+    public abstract IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome,
             int x, int y, int z, double dx, double dy, double dz, double density);
+
+    /**
+     * Returns true if {@link #getReplacedBlock} is known to always return the previous block, as long as density is
+     * between minDensity and maxDensity and absolute value of each gradient component is at most maxGradient, for Y
+     * coordinates between minBlockY and maxBlockY (inclusive).
+     * <p>
+     * Used to skip replacers for cubes away from the surface band they operate on.
+     */
+    public boolean isNoOp(int minBlockY, int maxBlockY, double minDensity, double maxDensity, double maxGradient) {
+        if (maxBlockY < minY || minBlockY > maxY) {
+            return true;
+        }
+        return isNoOpImpl(minDensity, maxDensity, maxGradient);
+    }
+
+    protected boolean isNoOpImpl(double minDensity, double maxDensity, double maxGradient) {
+        return false;
+    }
+
+    /**
+     * Returns true if the result of {@link #getReplacedBlock} is known not to depend on density and density gradient,
+     * as long as density is between minDensity and maxDensity and absolute value of each gradient component is at
+     * most maxGradient, for Y coordinates between minBlockY and maxBlockY (inclusive).
+     * <p>
+     * Used to skip density evaluation for cubes where the exact value doesn't matter.
+     */
+    public boolean isDensityIndependent(int minBlockY, int maxBlockY, double minDensity, double maxDensity, double maxGradient) {
+        if (isNoOp(minBlockY, maxBlockY, minDensity, maxDensity, maxGradient)) {
+            return true;
+        }
+        return isDensityIndependentImpl(minDensity, maxDensity, maxGradient);
+    }
+
+    protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+        return false;
+    }
+
+    /**
+     * Returns components of the density gradient this replacer uses. Components that aren't used may be passed to
+     * {@link #getReplacedBlock} and {@link #replaceColumn} as 0, so that computing them can be skipped.
+     */
+    public Gradients getUsedGradients() {
+        return Gradients.XYZ;
+    }
 }
@@ -27,6 +27,7 @@ import static java.lang.Math.abs;
 
 import io.github.opencubicchunks.cubicchunks.cubicgen.RngHash;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
@@ -97,7 +98,7 @@ public class MainSurfaceReplacer extends IBiomeBlockReplacer {
         }
         builder = builder.mul(surfaceDepthNoiseFactor).add(surfaceDepthNoiseOffset);
         if (surfaceDepthNoiseFrequencyY == 0) {
-            builder = builder.cached2d(256, v -> v.getX() + v.getZ() * 16);
+            builder = builder.cached2d(256, (x, z) -> x + z * 16);
         }
         return builder;
     }
@@ -114,8 +115,33 @@ public class MainSurfaceReplacer extends IBiomeBlockReplacer {
         if (density > maxPossibleDepth * abs(dy) || density < 0) {
             return previousBlock;
         }
+        return replaceSurfaceBlock(previousBlock, biome, x, y, z, dx, dy, dz, density, depthNoise.get(x, 0, z));
+    }
+
+    @Override
+    public void replaceColumn(ReplacerColumn column) {
+        // depth noise is the same for the whole column, and only needed near the surface
+        boolean hasDepth = false;
+        double depth = 0;
+        int end = column.endIndex(maxY);
+        for (int i = column.startIndex(minY); i < end; i++) {
+            IBlockState previousBlock = column.blocks[i];
+            double density = column.density[i];
+            double dy = column.dy[i];
+            if (previousBlock.getBlock() == Blocks.AIR || density > maxPossibleDepth * abs(dy) || density < 0) {
+                continue;
+            }
+            if (!hasDepth) {
+                depth = depthNoise.get(column.x, 0, column.z);
+                hasDepth = true;
+            }
+            column.blocks[i] = replaceSurfaceBlock(previousBlock, column.biome, column.x, column.minY + i, column.z,
+                    column.dx[i], dy, column.dz[i], density, depth);
+        }
+    }
 
-        double depth = depthNoise.get(x, 0, z);
+    private IBlockState replaceSurfaceBlock(IBlockState previousBlock, Biome biome, int x, int y, int z,
+            double dx, double dy, double dz, double density, double depth) {
         double densityAdjusted = density / abs(dy);
         IBlockState top = getRawTop(biome, depth);
         IBlockState filler = getRawFiller(biome, depth);
@@ -142,6 +168,18 @@ public class MainSurfaceReplacer extends IBiomeBlockReplacer {
         return previousBlock;
     }
 
+    @Override
+    protected boolean isNoOpImpl(double minDensity, double maxDensity, double maxGradient) {
+        // see the first checks in getReplacedBlockImpl
+        return maxDensity < 0 || minDensity > Math.max(0, maxPossibleDepth * maxGradient);
+    }
+
+    @Override
+    public Gradients getUsedGradients() {
+        // the horizontal gradient is only used multiplied by this weight
+        return horizontalGradientDepthDecreaseWeight == 0 ? Gradients.Y : Gradients.XYZ;
+    }
+
     public IBlockState getRawTop(Biome biome, double depth) {
         return overrideTop == null ? biome.topBlock : overrideTop;
     }
@@ -29,6 +29,7 @@ import io.github.opencubicchunks.cubicchunks.cubicgen.RngHash;
 import io.github.opencubicchunks.cubicchunks.cubicgen.asm.mixin.common.accessor.IBiomeMesa;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.MesaSurfaceReplacerConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
@@ -114,7 +115,7 @@ public class MesaSurfaceReplacer extends IBiomeBlockReplacer {
         //MesaSurfaceReplacerConfig.NoiseSource depthNoise = ;
         NoiseGeneratorPerlin clayBandsNoiseVanilla = ((IBiomeMesa) mesaVanilla).getClayBandsOffsetNoise();
         IBuilder clayBandsNoise = (x, y, z) -> clayBandsNoiseVanilla.getValue(x / 512.0, z / 512.0);
-        clayBandsNoise = clayBandsNoise.cached2d(256, p -> p.getX() * 16 + p.getZ());
+        clayBandsNoise = clayBandsNoise.cached2d(256, (x, z) -> x * 16 + z);
 
         Random random = new Random(worldSeed);
         NoiseGeneratorPerlin pillasPerlin = new NoiseGeneratorPerlin(random, 4);
@@ -136,9 +137,36 @@ public class MesaSurfaceReplacer extends IBiomeBlockReplacer {
         }
 
         double depth = depthNoise.get(x, 0, z);
+        return replaceBlock(previousBlock, biome, x, y, z, dy, density, depth, getPillarHeight(biome, x, z, depth));
+    }
+
+    @Override public void replaceColumn(ReplacerColumn column) {
+        // depth and pillar height are the same for the whole column, and only needed below the surface
+        boolean hasColumnValues = false;
+        double depth = 0, pillarHeight = 0;
+        int end = column.endIndex(maxY);
+        for (int i = column.startIndex(minY); i < end; i++) {
+            double density = column.density[i];
+            if (density < 0) {
+                continue;
+            }
+            if (!hasColumnValues) {
+                depth = depthNoise.get(column.x, 0, column.z);
+                pillarHeight = getPillarHeight(column.biome, column.x, column.z, depth);
+                hasColumnValues = true;
+            }
+            column.blocks[i] = replaceBlock(column.blocks[i], column.biome, column.x, column.minY + i, column.z,
+                    column.dy[i], density, depth, pillarHeight);
+        }
+    }
+
+    private double getPillarHeight(Biome biome, int x, int z, double depth) {
+        return convertYFromVanilla(getPillarHeightVanilla(biome, x, z, depth - 3));
+    }
+
+    private IBlockState replaceBlock(IBlockState previousBlock, Biome biome, int x, int y, int z, double dy, double density,
+            double depth, double pillarHeight) {
         double origDepthNoise = depth - 3;
-        double pillarHeight = getPillarHeightVanilla(biome, x, z, origDepthNoise);
-        pillarHeight = convertYFromVanilla(pillarHeight);
         if (y < pillarHeight) {
             // simulate pillar density ORed with te terrain
             density = Math.max(density, pillarHeight - y);
@@ -177,6 +205,16 @@ public class MesaSurfaceReplacer extends IBiomeBlockReplacer {
         return previousBlock;
     }
 
+    @Override protected boolean isNoOpImpl(double minDensity, double maxDensity, double maxGradient) {
+        // Pillars only increase density. When density is larger than gradient there is no air above,
+        // and when it's larger than mesaDepth times gradient the block is below filler depth.
+        return maxDensity < 0 || minDensity > Math.max(maxGradient, mesaDepth * maxGradient);
+    }
+
+    @Override public Gradients getUsedGradients() {
+        return Gradients.Y;
+    }
+
     private double convertYFromVanilla(double y) {
         y = (y - 64.0) / 64.0;
         y *= heightScale;
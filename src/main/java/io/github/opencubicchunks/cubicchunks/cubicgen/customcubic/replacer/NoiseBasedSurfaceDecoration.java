@@ -27,6 +27,7 @@ import io.github.opencubicchunks.cubicchunks.cubicgen.RngHash;
 import io.github.opencubicchunks.cubicchunks.cubicgen.asm.mixin.common.accessor.IBiome;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.NoiseBasedSurfaceDecorationConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
@@ -94,6 +95,15 @@ public class NoiseBasedSurfaceDecoration extends IBiomeBlockReplacer {
         return previousBlock;
     }
 
+    @Override protected boolean isNoOpImpl(double minDensity, double maxDensity, double maxGradient) {
+        // only blocks directly below and above the surface are replaced
+        return minDensity > densityThreshold + maxGradient || maxDensity <= densityThreshold - maxGradient;
+    }
+
+    @Override public Gradients getUsedGradients() {
+        return Gradients.Y;
+    }
+
     public static NoiseBasedSurfaceDecoration create(long worldSeed, CustomGeneratorSettings.NoiseBasedSurfaceDecorationConfig config) {
         double densityThreshold = config.surfaceDensityThreshold;
         IBlockState groundBlock = BlockStateDesc.stateFromNullable(config.groundBlock);
@@ -111,7 +121,7 @@ public class NoiseBasedSurfaceDecoration extends IBiomeBlockReplacer {
                         .create()
                         .mul(config.noiseFactor).add(config.noiseOffset);
                 if (config.noiseFreqY == 0) {
-                    builder = builder.cached2d(256, p -> p.getX() * 16 + p.getZ());
+                    builder = builder.cached2d(256, (x, z) -> x * 16 + z);
                 }
                 break;
             }
@@ -123,7 +133,7 @@ public class NoiseBasedSurfaceDecoration extends IBiomeBlockReplacer {
                         .create()
                         .mul(config.noiseFactor).add(config.noiseOffset);
                 if (config.noiseFreqY == 0) {
-                    builder = builder.cached2d(256, p -> p.getX() * 16 + p.getZ());
+                    builder = builder.cached2d(256, (x, z) -> x * 16 + z);
                 }
                 break;
             }
@@ -131,14 +141,14 @@ public class NoiseBasedSurfaceDecoration extends IBiomeBlockReplacer {
                 NoiseGeneratorPerlin grassColorNoise = IBiome.getGrassColorNoise();
                 builder = (x, y, z) ->
                         grassColorNoise.getValue(x * config.noiseFreqX, z * config.noiseFreqZ) * config.noiseFactor + config.noiseOffset;
-                builder = builder.cached2d(256, p -> p.getX() * 16 + p.getZ());
+                builder = builder.cached2d(256, (x, z) -> x * 16 + z);
                 break;
             }
             case TEMPERATURE_NOISE: {
                 NoiseGeneratorPerlin temperatureNoise = IBiome.getTemperatureNoise();
                 builder = (x, y, z) ->
                         temperatureNoise.getValue(x * config.noiseFreqX, z * config.noiseFreqZ) * config.noiseFactor + config.noiseOffset;
-                builder = builder.cached2d(256, p -> p.getX() * 16 + p.getZ());
+                builder = builder.cached2d(256, (x, z) -> x * 16 + z);
                 break;
             }
             default:
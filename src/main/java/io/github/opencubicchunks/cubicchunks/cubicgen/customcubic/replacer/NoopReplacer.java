@@ -41,4 +41,9 @@ class NoopReplacer extends IBiomeBlockReplacer {
     public IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome, int x, int y, int z, double dx, double dy, double dz, double density) {
         return previousBlock;
     }
+
+    @Override
+    public boolean isNoOp(int minBlockY, int maxBlockY, double minDensity, double maxDensity, double maxGradient) {
+        return true;
+    }
 }
@@ -26,6 +26,7 @@ package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
 import io.github.opencubicchunks.cubicchunks.cubicgen.RngHash;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.UserFunction;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.state.IBlockState;
@@ -73,4 +74,12 @@ public class RandomYGradientReplacer extends IBiomeBlockReplacer {
         }
         return previousBlock;
     }
+
+    @Override protected boolean isDensityIndependentImpl(double minDensity, double maxDensity, double maxGradient) {
+        return true;
+    }
+
+    @Override public Gradients getUsedGradients() {
+        return Gradients.NONE;
+    }
 }
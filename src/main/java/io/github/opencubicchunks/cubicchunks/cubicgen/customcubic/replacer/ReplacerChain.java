@@ -0,0 +1,70 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.world.biome.Biome;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A fixed sequence of {@link IBiomeBlockReplacer}s applied one after another, the output of each replacer being the
+ * input of the next one.
+ *
+ * @see ReplacerChainCompiler
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public interface ReplacerChain {
+
+    IBlockState getReplacedBlock(IBlockState previousBlock, Biome biome,
+            int x, int y, int z, double dx, double dy, double dz, double density);
+
+    /**
+     * Applies {@link IBiomeBlockReplacer#replaceColumn(ReplacerColumn)} of each replacer to the column. Gives the same
+     * blocks as {@link #getReplacedBlock} for each block of the column.
+     */
+    void replaceColumn(ReplacerColumn column);
+
+    static ReplacerChain of(IBiomeBlockReplacer[] replacers) {
+        IBiomeBlockReplacer[] array = replacers.clone();
+        return new ReplacerChain() {
+            @Override public IBlockState getReplacedBlock(IBlockState previousBlock, Biome biome,
+                    int x, int y, int z, double dx, double dy, double dz, double density) {
+                IBlockState block = previousBlock;
+                for (IBiomeBlockReplacer replacer : array) {
+                    block = replacer.getReplacedBlock(block, biome, x, y, z, dx, dy, dz, density);
+                }
+                return block;
+            }
+
+            @Override public void replaceColumn(ReplacerColumn column) {
+                for (IBiomeBlockReplacer replacer : array) {
+                    replacer.replaceColumn(column);
+                }
+            }
+        };
+    }
+}
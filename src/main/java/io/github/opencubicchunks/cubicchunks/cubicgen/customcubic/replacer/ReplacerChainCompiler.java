@@ -0,0 +1,483 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
+
+import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.world.biome.Biome;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Creates {@link ReplacerChain}s for the replacers of a preset.
+ * <p>
+ * With compilation enabled, a class is generated for each distinct combination of enabled replacers. It calls each
+ * replacer directly through a field of it's exact type, so the calls can be inlined, and only checks the Y range of
+ * replacers that don't cover the whole requested Y range. Biome replacer flags are resolved when the chain is created.
+ * Columns are replaced with a loop over the blocks in Y range of each replacer, calling the replacer the same way, except
+ * for replacers that override {@link IBiomeBlockReplacer#replaceColumn}, which are passed the whole column.
+ * The replacers are called in the same order with the same arguments as in {@link ReplacerChain#of}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class ReplacerChainCompiler {
+
+    // each combination of biome flags and Y range checks is a new class, avoid creating them without limit
+    private static final int MAX_COMPILED_CHAINS = 1024;
+
+    private static final String CHAIN = Type.getInternalName(ReplacerChain.class);
+    private static final String GENERATED_NAME = CHAIN + "$Generated";
+    private static final String REPLACE_DESC = Type.getMethodDescriptor(Type.getType(IBlockState.class),
+            Type.getType(IBlockState.class), Type.getType(Biome.class),
+            Type.INT_TYPE, Type.INT_TYPE, Type.INT_TYPE, Type.DOUBLE_TYPE, Type.DOUBLE_TYPE, Type.DOUBLE_TYPE, Type.DOUBLE_TYPE);
+    private static final String COLUMN_DESC = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(ReplacerColumn.class));
+    private static final String COLUMN = Type.getInternalName(ReplacerColumn.class);
+    private static final String INDEX_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.INT_TYPE);
+    private static final String CONSTRUCTOR_DESC = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(IBiomeBlockReplacer[].class));
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private final IBiomeBlockReplacer[] replacers;
+    // replacers that do their own Y range checks
+    private final boolean[] overridesRangeCheck;
+    // replacers with their own column implementation
+    private final boolean[] overridesReplaceColumn;
+    private final boolean compile;
+    private final Map<ChainKey, ReplacerChain> chains = new ConcurrentHashMap<>();
+    private final GeneratedClassLoader classLoader = new GeneratedClassLoader(ReplacerChainCompiler.class.getClassLoader());
+
+    public ReplacerChainCompiler(IBiomeBlockReplacer[] replacers, boolean compile) {
+        this.replacers = replacers.clone();
+        this.compile = compile;
+        this.overridesRangeCheck = new boolean[replacers.length];
+        this.overridesReplaceColumn = new boolean[replacers.length];
+        for (int i = 0; i < replacers.length; i++) {
+            overridesRangeCheck[i] = overridesRangeCheck(replacers[i].getClass());
+            overridesReplaceColumn[i] = overridesReplaceColumn(replacers[i].getClass());
+        }
+    }
+
+    /**
+     * Returns a replacer chain for blocks with Y coordinates between minBlockY and maxBlockY (inclusive)
+     *
+     * @param activeReplacers indices of replacers to use, in order
+     * @param replacerFlags bit set of replacers enabled for the biome
+     */
+    public ReplacerChain getChain(int[] activeReplacers, long[] replacerFlags, int minBlockY, int maxBlockY) {
+        return forBiome(replacerFlags).getChain(select(activeReplacers, minBlockY, maxBlockY));
+    }
+
+    /**
+     * Selects replacers for blocks with Y coordinates between minBlockY and maxBlockY (inclusive), for all biomes. Done
+     * once for each cube, chains for each biome are then found with {@link BiomeChains#getChain(Selection)}.
+     *
+     * @param activeReplacers indices of replacers to use, in order
+     */
+    public Selection select(int[] activeReplacers, int minBlockY, int maxBlockY) {
+        long[] active = new long[MathUtil.ceilDiv(replacers.length, Long.SIZE)];
+        long[] rangeChecks = new long[active.length];
+        for (int i : activeReplacers) {
+            active[i >> 6] |= 1L << (i & 63);
+            IBiomeBlockReplacer replacer = replacers[i];
+            if (!overridesRangeCheck[i] && (replacer.minY > minBlockY || replacer.maxY < maxBlockY)) {
+                rangeChecks[i >> 6] |= 1L << (i & 63);
+            }
+        }
+        return new Selection(active, rangeChecks);
+    }
+
+    /**
+     * Creates the chain lookup for a biome, meant to be done once for each biome when the generator is created.
+     *
+     * @param replacerFlags bit set of replacers enabled for the biome
+     */
+    public BiomeChains forBiome(long[] replacerFlags) {
+        return new BiomeChains(replacerFlags.clone());
+    }
+
+    private ReplacerChain getChain(long[] enabled, long[] rangeChecks) {
+        ChainKey key = new ChainKey(enabled, rangeChecks);
+        ReplacerChain chain = chains.get(key);
+        if (chain != null) {
+            return chain;
+        }
+        if (chains.size() >= MAX_COMPILED_CHAINS) {
+            return ReplacerChain.of(select(enabled));
+        }
+        return chains.computeIfAbsent(key, this::createChain);
+    }
+
+    private IBiomeBlockReplacer[] select(long[] bits) {
+        List<IBiomeBlockReplacer> selected = new ArrayList<>();
+        for (int i = 0; i < replacers.length; i++) {
+            if ((bits[i >> 6] & (1L << (i & 63))) != 0) {
+                selected.add(replacers[i]);
+            }
+        }
+        return selected.toArray(new IBiomeBlockReplacer[0]);
+    }
+
+    private ReplacerChain createChain(ChainKey key) {
+        IBiomeBlockReplacer[] selected = select(key.enabled);
+        if (!compile) {
+            return ReplacerChain.of(selected);
+        }
+        try {
+            return generateChain(key, selected);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            CustomCubicMod.LOGGER.error("Couldn't generate replacer chain class, falling back to the generic implementation", e);
+            return ReplacerChain.of(selected);
+        }
+    }
+
+    private ReplacerChain generateChain(ChainKey key, IBiomeBlockReplacer[] selected) throws ReflectiveOperationException {
+        String name = GENERATED_NAME + classCounter.getAndIncrement();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+            // the only merged frames have the same types
+            @Override protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                name, null, "java/lang/Object", new String[]{CHAIN});
+
+        String[] owners = new String[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            owners[i] = Type.getInternalName(accessibleClass(selected[i].getClass()));
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "replacer" + i, "L" + owners[i] + ";", null, null).visitEnd();
+        }
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        for (int i = 0; i < selected.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owners[i]);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, name, "replacer" + i, "L" + owners[i] + ";");
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // locals: this, previousBlock, biome, x, y, z, dx, dy, dz, density
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "getReplacedBlock", REPLACE_DESC, null, null);
+        mv.visitCode();
+        int selectedIdx = 0;
+        for (int i = 0; i < replacers.length; i++) {
+            if ((key.enabled[i >> 6] & (1L << (i & 63))) == 0) {
+                continue;
+            }
+            IBiomeBlockReplacer replacer = replacers[i];
+            Label skip = null;
+            if ((key.rangeChecks[i >> 6] & (1L << (i & 63))) != 0) {
+                skip = new Label();
+                mv.visitVarInsn(Opcodes.ILOAD, 4);
+                mv.visitLdcInsn(replacer.minY);
+                mv.visitJumpInsn(Opcodes.IF_ICMPLT, skip);
+                mv.visitVarInsn(Opcodes.ILOAD, 4);
+                mv.visitLdcInsn(replacer.maxY);
+                mv.visitJumpInsn(Opcodes.IF_ICMPGT, skip);
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, name, "replacer" + selectedIdx, "L" + owners[selectedIdx] + ";");
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitVarInsn(Opcodes.ILOAD, 3);
+            mv.visitVarInsn(Opcodes.ILOAD, 4);
+            mv.visitVarInsn(Opcodes.ILOAD, 5);
+            mv.visitVarInsn(Opcodes.DLOAD, 6);
+            mv.visitVarInsn(Opcodes.DLOAD, 8);
+            mv.visitVarInsn(Opcodes.DLOAD, 10);
+            mv.visitVarInsn(Opcodes.DLOAD, 12);
+            String method = overridesRangeCheck[i] ? "getReplacedBlock" : "getReplacedBlockImpl";
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owners[selectedIdx], method, REPLACE_DESC, false);
+            mv.visitVarInsn(Opcodes.ASTORE, 1);
+            if (skip != null) {
+                mv.visitLabel(skip);
+            }
+            selectedIdx++;
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // locals: this, column, index, end index
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "replaceColumn", COLUMN_DESC, null, null);
+        mv.visitCode();
+        selectedIdx = 0;
+        for (int i = 0; i < replacers.length; i++) {
+            if ((key.enabled[i >> 6] & (1L << (i & 63))) == 0) {
+                continue;
+            }
+            if (overridesReplaceColumn[i]) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, name, "replacer" + selectedIdx, "L" + owners[selectedIdx] + ";");
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owners[selectedIdx], "replaceColumn", COLUMN_DESC, false);
+            } else {
+                boolean rangeCheck = (key.rangeChecks[i >> 6] & (1L << (i & 63))) != 0;
+                visitColumnLoop(mv, name, selectedIdx, owners[selectedIdx], replacers[i], rangeCheck, overridesRangeCheck[i]);
+            }
+            selectedIdx++;
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        Class<?> cl = classLoader.define(name.replace('/', '.'), cw.toByteArray());
+        return (ReplacerChain) cl.getConstructor(IBiomeBlockReplacer[].class).newInstance((Object) selected);
+    }
+
+    // for (int i = start; i < end; i++) column.blocks[i] = replacer.getReplacedBlockImpl(column.blocks[i], ...)
+    private static void visitColumnLoop(MethodVisitor mv, String name, int field, String owner, IBiomeBlockReplacer replacer,
+            boolean rangeCheck, boolean overridesRangeCheck) {
+        if (rangeCheck) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(replacer.minY);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COLUMN, "startIndex", INDEX_DESC, false);
+            mv.visitVarInsn(Opcodes.ISTORE, 2);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(replacer.maxY);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COLUMN, "endIndex", INDEX_DESC, false);
+            mv.visitVarInsn(Opcodes.ISTORE, 3);
+        } else {
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitVarInsn(Opcodes.ISTORE, 2);
+            mv.visitLdcInsn(ReplacerColumn.SIZE);
+            mv.visitVarInsn(Opcodes.ISTORE, 3);
+        }
+        Label loop = new Label();
+        Label condition = new Label();
+        mv.visitJumpInsn(Opcodes.GOTO, condition);
+        mv.visitLabel(loop);
+
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "blocks", Type.getDescriptor(IBlockState[].class));
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, "replacer" + field, "L" + owner + ";");
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "blocks", Type.getDescriptor(IBlockState[].class));
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitInsn(Opcodes.AALOAD);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "biome", Type.getDescriptor(Biome.class));
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "x", "I");
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "minY", "I");
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitInsn(Opcodes.IADD);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, "z", "I");
+        for (String array : new String[]{"dx", "dy", "dz", "density"}) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.GETFIELD, COLUMN, array, "[D");
+            mv.visitVarInsn(Opcodes.ILOAD, 2);
+            mv.visitInsn(Opcodes.DALOAD);
+        }
+        String method = overridesRangeCheck ? "getReplacedBlock" : "getReplacedBlockImpl";
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method, REPLACE_DESC, false);
+        mv.visitInsn(Opcodes.AASTORE);
+        mv.visitIincInsn(2, 1);
+
+        mv.visitLabel(condition);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitJumpInsn(Opcodes.IF_ICMPLT, loop);
+    }
+
+    private static boolean overridesReplaceColumn(Class<?> cl) {
+        try {
+            return cl.getMethod("replaceColumn", ReplacerColumn.class).getDeclaringClass() != IBiomeBlockReplacer.class;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static boolean overridesRangeCheck(Class<?> cl) {
+        try {
+            return cl.getMethod("getReplacedBlock", IBlockState.class, Biome.class,
+                    int.class, int.class, int.class, double.class, double.class, double.class, double.class)
+                    .getDeclaringClass() != IBiomeBlockReplacer.class;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // the generated class is in a different runtime package, so only public classes can be referenced
+    private static Class<?> accessibleClass(Class<?> cl) {
+        while (!isAccessible(cl)) {
+            cl = cl.getSuperclass();
+        }
+        return cl;
+    }
+
+    private static boolean isAccessible(Class<?> cl) {
+        for (Class<?> c = cl; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replacers used for a range of Y coordinates, and which of them need a Y range check.
+     */
+    public static final class Selection {
+
+        final long[] active;
+        final long[] rangeChecks;
+
+        Selection(long[] active, long[] rangeChecks) {
+            this.active = active;
+            this.rangeChecks = rangeChecks;
+        }
+    }
+
+    /**
+     * Chains of one biome. Remembers the chain for each selection it has been used with, a biome only ever sees a few
+     * different ones, so that looking up a chain doesn't allocate or hash.
+     */
+    public final class BiomeChains {
+
+        private static final int MAX_ENTRIES = 64;
+
+        private final long[] replacerFlags;
+        private volatile ChainEntry[] entries = new ChainEntry[0];
+
+        BiomeChains(long[] replacerFlags) {
+            this.replacerFlags = replacerFlags;
+        }
+
+        public ReplacerChain getChain(Selection selection) {
+            for (ChainEntry entry : entries) {
+                if (entry.matches(replacerFlags, selection)) {
+                    return entry.chain;
+                }
+            }
+            long[] enabled = new long[replacerFlags.length];
+            long[] rangeChecks = new long[replacerFlags.length];
+            for (int i = 0; i < enabled.length; i++) {
+                enabled[i] = replacerFlags[i] & selection.active[i];
+                rangeChecks[i] = enabled[i] & selection.rangeChecks[i];
+            }
+            ReplacerChain chain = ReplacerChainCompiler.this.getChain(enabled, rangeChecks);
+            synchronized (this) {
+                ChainEntry[] entries = this.entries;
+                if (entries.length < MAX_ENTRIES) {
+                    ChainEntry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+                    newEntries[entries.length] = new ChainEntry(enabled, rangeChecks, chain);
+                    this.entries = newEntries;
+                }
+            }
+            return chain;
+        }
+    }
+
+    private static final class ChainEntry {
+
+        final long[] enabled;
+        final long[] rangeChecks;
+        final ReplacerChain chain;
+
+        ChainEntry(long[] enabled, long[] rangeChecks, ReplacerChain chain) {
+            this.enabled = enabled;
+            this.rangeChecks = rangeChecks;
+            this.chain = chain;
+        }
+
+        boolean matches(long[] replacerFlags, Selection selection) {
+            for (int i = 0; i < enabled.length; i++) {
+                long selected = replacerFlags[i] & selection.active[i];
+                if (selected != enabled[i] || (selected & selection.rangeChecks[i]) != rangeChecks[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ChainKey {
+
+        final long[] enabled;
+        final long[] rangeChecks;
+        private final int hash;
+
+        ChainKey(long[] enabled, long[] rangeChecks) {
+            this.enabled = enabled;
+            this.rangeChecks = rangeChecks;
+            this.hash = 31 * Arrays.hashCode(enabled) + Arrays.hashCode(rangeChecks);
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChainKey)) {
+                return false;
+            }
+            ChainKey other = (ChainKey) o;
+            return hash == other.hash && Arrays.equals(enabled, other.enabled) && Arrays.equals(rangeChecks, other.rangeChecks);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.world.biome.Biome;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * One vertical run of {@link #SIZE} blocks in a cube, with density values and gradients for each block. Index i in the
+ * arrays is the block at Y coordinate minY + i.
+ *
+ * @see IBiomeBlockReplacer#replaceColumn(ReplacerColumn)
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class ReplacerColumn {
+
+    public static final int SIZE = ICube.SIZE;
+
+    public int x, z, minY;
+    public Biome biome;
+
+    public final double[] dx = new double[SIZE], dy = new double[SIZE], dz = new double[SIZE], density = new double[SIZE];
+    public final IBlockState[] blocks = new IBlockState[SIZE];
+
+    /**
+     * Returns index of the first block with Y coordinate at least the given Y, or {@link #SIZE} if there is none.
+     */
+    public int startIndex(int blockY) {
+        return (int) Math.min(SIZE, Math.max(0, (long) blockY - minY));
+    }
+
+    /**
+     * Returns index after the last block with Y coordinate at most the given Y, or 0 if there is none.
+     */
+    public int endIndex(int blockY) {
+        return (int) Math.min(SIZE, Math.max(0, (long) blockY - minY + 1));
+    }
+}
@@ -41,6 +41,8 @@ import net.minecraft.init.Blocks;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.function.Predicate;
 
@@ -152,6 +154,11 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
     private static final Predicate<IBlockState> isBlockReplaceable = (state ->
             state.getBlock() == Blocks.STONE || state.getBlock() == Blocks.DIRT || state.getBlock() == Blocks.GRASS);
 
+    private final TunnelSkeletonCache<Void> skeletons = new TunnelSkeletonCache<>(TunnelSkeletonCache.DEFAULT_SIZE, this::createSkeleton);
+
+    private final TunnelSkeleton.StepCarver<Void> stepCarver = (cube, generatedCubePos, x, y, z, sizeHoriz, sizeVert, data) ->
+            tryCarveBlocks(cube, generatedCubePos, x, y, z, sizeHoriz, sizeVert);
+
     @Override
     public Handler getHandler() {
         return this::generate;
@@ -159,9 +166,17 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
 
     protected void generate(World world, Random rand, CubePrimer cube,
                             int cubeXOrigin, int cubeYOrigin, int cubeZOrigin, CubePos generatedCubePos) {
+        skeletons.get(rand, cubeXOrigin, cubeYOrigin, cubeZOrigin).carve(cube, generatedCubePos, stepCarver);
+    }
+
+    /**
+     * Walks all the caves starting in the given cube, independently of the cube being generated
+     */
+    private TunnelSkeleton<Void> createSkeleton(Random rand, int cubeXOrigin, int cubeYOrigin, int cubeZOrigin) {
         if (rand.nextInt(CAVE_RARITY) != 0) {
-            return;
+            return TunnelSkeleton.empty();
         }
+        List<TunnelSkeleton.Node<Void>> roots = new ArrayList<>();
         //very low probability of generating high number
         int nodes = rand.nextInt(rand.nextInt(rand.nextInt(MAX_INIT_NODES + 1) + 1) + 1);
 
@@ -172,8 +187,8 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
             int subBranches = 1;
 
             if (rand.nextInt(LARGE_NODE_RARITY) == 0) {
-                this.generateLargeNode(cube, rand, rand.nextLong(), generatedCubePos,
-                        branchStartX, branchStartY, branchStartZ);
+                roots.add(this.generateLargeNode(rand, rand.nextLong(),
+                        branchStartX, branchStartY, branchStartZ));
                 subBranches += rand.nextInt(LARGE_NODE_MAX_BRANCHES);
             }
 
@@ -190,19 +205,19 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
                 int maxWalkedDistance = 0;
                 double vertCaveSizeMod = 1.0;
 
-                this.generateNode(cube, rand.nextLong(), generatedCubePos,
+                roots.add(this.generateNode(rand.nextLong(),
                         branchStartX, branchStartY, branchStartZ,
                         baseHorizSize, horizDirAngle, vertDirAngle,
-                        startWalkedDistance, maxWalkedDistance, vertCaveSizeMod);
+                        startWalkedDistance, maxWalkedDistance, vertCaveSizeMod));
             }
         }
+        return new TunnelSkeleton<>(roots);
     }
 
     /**
      * Generates a flattened cave "room", usually more caves split off it
      */
-    private void generateLargeNode(CubePrimer cube, Random rand, long seed, CubePos generatedCubePos,
-            double x, double y, double z) {
+    private TunnelSkeleton.Node<Void> generateLargeNode(Random rand, long seed, double x, double y, double z) {
         float baseHorizSize = 1.0F + rand.nextFloat() * 6.0F;
         float horizDirAngle = 0;
         float vertDirAngle = 0;
@@ -210,7 +225,7 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
         int startWalkedDistance = -1;
         int maxWalkedDistance = -1;
         double vertCaveSizeMod = 0.5;
-        this.generateNode(cube, seed, generatedCubePos, x, y, z,
+        return this.generateNode(seed, x, y, z,
                 baseHorizSize, horizDirAngle, vertDirAngle,
                 startWalkedDistance, maxWalkedDistance, vertCaveSizeMod);
     }
@@ -218,9 +233,7 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
     /**
      * Recursively generates a node in the current cave system tree.
      *
-     * @param cube block buffer to modify
      * @param seed random seed to use
-     * @param generatedCubePos position of the cube to modify
      * @param caveX starting x coordinate of the cave
      * @param caveY starting Y coordinate of the cave
      * @param caveZ starting Z coordinate of the cave
@@ -232,9 +245,9 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
      * @param maxWalkedDistance maximum distance the cave can go forwards, <= 0 to use default
      * @param vertDirAngle changes vertical size of the cave, values < 1 result in flattened caves, > 1 result in
      * vertically stretched caves
+     * @return the node, with only the steps that carve blocks
      */
-    private void generateNode(CubePrimer cube, long seed,
-            CubePos generatedCubePos,
+    private TunnelSkeleton.Node<Void> generateNode(long seed,
             double caveX, double caveY, double caveZ,
             float baseCaveSize, float horizDirAngle, float vertDirAngle,
             int startWalkedDistance, int maxWalkedDistance, double vertCaveSizeMod) {
@@ -264,6 +277,10 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
 
         int splitPoint = rand.nextInt(maxWalkedDistance / 2) + maxWalkedDistance / 4;
 
+        //CHANGE: multiply max(1, vertCaveSizeMod)
+        double maxDistToCube = baseCaveSize * max(1, vertCaveSizeMod) + CAVE_SIZE_ADD + ICube.SIZE;
+        TunnelSkeleton.Node<Void> node = new TunnelSkeleton.Node<>(null, maxDistToCube, true);
+
         for (; walkedDistance < maxWalkedDistance; ++walkedDistance) {
             float fractionWalked = walkedDistance / (float) maxWalkedDistance;
             //horizontal and vertical size of the cave
@@ -303,18 +320,18 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
             //if we reached split point - try to split
             //can split only if it's not final branch and the cave is still big enough (>1 block radius)
             if (!finalStep && walkedDistance == splitPoint && baseCaveSize > 1.0F) {
-                this.generateNode(cube, rand.nextLong(),
-                        generatedCubePos, caveX, caveY, caveZ,
+                node.addChild(this.generateNode(rand.nextLong(),
+                        caveX, caveY, caveZ,
                         rand.nextFloat() * 0.5F + 0.5F,//base cave size
                         horizDirAngle - ((float) Math.PI / 2F),//horiz. angle - subtract 90 degrees
                         vertDirAngle / 3.0F, walkedDistance, maxWalkedDistance,
-                        1.0D);
-                this.generateNode(cube, rand.nextLong(), generatedCubePos, caveX, caveY, caveZ,
+                        1.0D));
+                node.addChild(this.generateNode(rand.nextLong(), caveX, caveY, caveZ,
                         rand.nextFloat() * 0.5F + 0.5F,//base cave size
                         horizDirAngle + ((float) Math.PI / 2F),//horiz. angle - add 90 degrees
                         vertDirAngle / 3.0F, walkedDistance, maxWalkedDistance,
-                        1.0D);
-                return;
+                        1.0D));
+                return node;
             }
 
             //carve blocks only on some percentage of steps, unless this is the final branch
@@ -322,27 +339,13 @@ public class CubicCaveGenerator implements IFlexHandlerStructureGenerator {
                 continue;
             }
 
-            double xDist = caveX - generatedCubePos.getXCenter();
-            double yDist = caveY - generatedCubePos.getYCenter();
-            double zDist = caveZ - generatedCubePos.getZCenter();
-            double maxStepsDist = maxWalkedDistance - walkedDistance;
-            //CHANGE: multiply max(1, vertCaveSizeMod)
-            double maxDistToCube = baseCaveSize * max(1, vertCaveSizeMod) + CAVE_SIZE_ADD + ICube.SIZE;
-
-            //can this cube be reached at all?
-            //if even after going max distance allowed by remaining steps, it's still too far - stop
-            //TODO: does it make any performance difference?
-            if (xDist * xDist + yDist * yDist + zDist * zDist - maxStepsDist * maxStepsDist > maxDistToCube * maxDistToCube) {
-                return;
-            }
-
-            tryCarveBlocks(cube, generatedCubePos,
-                    caveX, caveY, caveZ,
-                    caveSizeHoriz, caveSizeVert);
+            //whether the cube can still be reached from here is checked when carving, see TunnelSkeleton
+            node.addStep(caveX, caveY, caveZ, caveSizeHoriz, caveSizeVert, maxWalkedDistance - walkedDistance);
             if (finalStep) {
-                return;
+                return node;
             }
         }
+        return node;
     }
 
     //returns true if cave generation should be continued
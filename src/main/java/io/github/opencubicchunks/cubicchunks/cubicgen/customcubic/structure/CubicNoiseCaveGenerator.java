@@ -0,0 +1,165 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.structure.ICubicStructureGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.RngHash;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.Gradients;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.World;
+
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Carves caves where 3d noise crosses a threshold. Large caves are carved where one noise is above
+ * {@link CustomGeneratorSettings#noiseCaveThreshold}, and tunnels are carved where two other noises are both close to 0.
+ * <p>
+ * Unlike {@link CubicCaveGenerator}, this doesn't depend on neighbor cubes, so the cost is the same for every cube with
+ * blocks that can be carved. The noise is interpolated between lattice points, the same way as terrain density.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class CubicNoiseCaveGenerator implements ICubicStructureGenerator {
+
+    private static final int CAVE_NOISE_SEED = 0x63617665;
+    private static final int TUNNEL_NOISE_SEED_1 = 0x74756e31;
+    private static final int TUNNEL_NOISE_SEED_2 = 0x74756e32;
+
+    /**
+     * Noise lattice spacing in blocks. Fixed instead of following the terrain density lattice, so that changing it
+     * doesn't change the caves.
+     */
+    private static final Vec3i SCALE = new Vec3i(4, 8, 4);
+
+    /**
+     * Controls which blocks can be replaced by cave
+     */
+    private static final Predicate<IBlockState> isBlockReplaceable = (state ->
+            state.getBlock() == Blocks.STONE || state.getBlock() == Blocks.DIRT || state.getBlock() == Blocks.GRASS);
+
+    @Nullable private final IBuilder caveNoise;
+    private final double caveThreshold;
+    // sum of squares of both tunnel noises
+    @Nullable private final IBuilder tunnelNoise;
+    private final double tunnelWidthSq;
+
+    public CubicNoiseCaveGenerator(CustomGeneratorSettings conf, long seed) {
+        // normalized noise never goes above 1
+        if (conf.noiseCaveThreshold < 1) {
+            this.caveNoise = NoiseSource.perlin()
+                    .seed(RngHash.combineSeedsForNoise(seed, CAVE_NOISE_SEED))
+                    .normalizeTo(-1, 1)
+                    .frequency(conf.noiseCaveFrequencyX, conf.noiseCaveFrequencyY, conf.noiseCaveFrequencyZ)
+                    .octaves(conf.noiseCaveOctaves)
+                    .create();
+        } else {
+            this.caveNoise = null;
+        }
+        this.caveThreshold = conf.noiseCaveThreshold;
+
+        if (conf.noiseTunnelWidth > 0) {
+            IBuilder tunnel1 = NoiseSource.perlin()
+                    .seed(RngHash.combineSeedsForNoise(seed, TUNNEL_NOISE_SEED_1))
+                    .normalizeTo(-1, 1)
+                    .frequency(conf.noiseTunnelFrequencyX, conf.noiseTunnelFrequencyY, conf.noiseTunnelFrequencyZ)
+                    .octaves(conf.noiseTunnelOctaves)
+                    .create();
+            IBuilder tunnel2 = NoiseSource.perlin()
+                    .seed(RngHash.combineSeedsForNoise(seed, TUNNEL_NOISE_SEED_2))
+                    .normalizeTo(-1, 1)
+                    .frequency(conf.noiseTunnelFrequencyX, conf.noiseTunnelFrequencyY, conf.noiseTunnelFrequencyZ)
+                    .octaves(conf.noiseTunnelOctaves)
+                    .create();
+            this.tunnelNoise = tunnel1.apply(v -> v * v).add(tunnel2.apply(v -> v * v));
+        } else {
+            this.tunnelNoise = null;
+        }
+        this.tunnelWidthSq = conf.noiseTunnelWidth * conf.noiseTunnelWidth;
+    }
+
+    @Override
+    public void generate(World world, CubePrimer cube, CubePos cubePos) {
+        int minX = cubePos.getMinBlockX();
+        int minY = cubePos.getMinBlockY();
+        int minZ = cubePos.getMinBlockZ();
+        if (!hasReplaceableBlock(cube)) {
+            return;
+        }
+        BlockPos start = new BlockPos(minX / SCALE.getX(), minY / SCALE.getY(), minZ / SCALE.getZ());
+        BlockPos end = start.add(ICube.SIZE / SCALE.getX(), ICube.SIZE / SCALE.getY(), ICube.SIZE / SCALE.getZ());
+
+        if (caveNoise != null) {
+            caveNoise.forEachScaled(start, end, SCALE, (x, y, z, gradX, gradY, gradZ, value) -> {
+                if (value > caveThreshold) {
+                    carveBlock(cube, x - minX, y - minY, z - minZ);
+                }
+            }, Gradients.NONE);
+        }
+        if (tunnelNoise != null) {
+            tunnelNoise.forEachScaled(start, end, SCALE, (x, y, z, gradX, gradY, gradZ, value) -> {
+                if (value < tunnelWidthSq) {
+                    carveBlock(cube, x - minX, y - minY, z - minZ);
+                }
+            }, Gradients.NONE);
+        }
+    }
+
+    // most cubes are either underground, where the first block is stone, or entirely air or water
+    private static boolean hasReplaceableBlock(CubePrimer cube) {
+        for (int localY = 0; localY < ICube.SIZE; localY++) {
+            for (int localX = 0; localX < ICube.SIZE; localX++) {
+                for (int localZ = 0; localZ < ICube.SIZE; localZ++) {
+                    if (isBlockReplaceable.test(cube.getBlockState(localX, localY, localZ))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void carveBlock(CubePrimer cube, int localX, int localY, int localZ) {
+        if (!isBlockReplaceable.test(cube.getBlockState(localX, localY, localZ))) {
+            return;
+        }
+        // don't open caves to oceans and lakes from below
+        if (localY < ICube.SIZE - 1 && cube.getBlockState(localX, localY + 1, localZ).getMaterial().isLiquid()) {
+            return;
+        }
+        cube.setBlockState(localX, localY, localZ, Blocks.AIR.getDefaultState());
+    }
+}
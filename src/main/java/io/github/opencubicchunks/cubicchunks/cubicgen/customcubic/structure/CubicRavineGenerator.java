@@ -42,6 +42,7 @@ import net.minecraft.init.Blocks;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 
+import java.util.Collections;
 import java.util.Random;
 import java.util.function.Predicate;
 
@@ -132,12 +133,11 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
 
     private final int maxCubeY;
 
-    /**
-     * Contains values of ravine widths at each height.
-     * <p>
-     * For cubic chunks the height value used wraps around.
-     */
-    @Nonnull private float[] widthDecreaseFactors = new float[1024];
+    private final TunnelSkeletonCache<RavineShape> skeletons =
+            new TunnelSkeletonCache<>(TunnelSkeletonCache.DEFAULT_SIZE, this::createSkeleton);
+
+    private final TunnelSkeleton.StepCarver<RavineShape> stepCarver = (cube, generatedCubePos, x, y, z, sizeHoriz, sizeVert, shape) ->
+            tryCarveBlocks(cube, generatedCubePos, x, y, z, sizeHoriz, sizeVert, shape.lavaHeight, shape.widthDecreaseFactors);
 
     public CubicRavineGenerator(CustomGeneratorSettings cfg) {
         this.maxCubeY = Coords.blockToCube(cfg.expectedBaseHeight);
@@ -150,8 +150,15 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
 
     protected void generate(World world, Random rand, CubePrimer cube, int structureX, int structureY, int structureZ,
             CubePos generatedCubePos) {
+        skeletons.get(rand, structureX, structureY, structureZ).carve(cube, generatedCubePos, stepCarver);
+    }
+
+    /**
+     * Walks the ravine starting in the given cube, independently of the cube being generated
+     */
+    private TunnelSkeleton<RavineShape> createSkeleton(Random rand, int structureX, int structureY, int structureZ) {
         if (rand.nextInt(RAVINE_RARITY) != 0 || structureY > maxCubeY) {
-            return;
+            return TunnelSkeleton.empty();
         }
         double startX = localToBlock(structureX, rand.nextInt(ICube.SIZE));
         double startY = localToBlock(structureY, rand.nextInt(ICube.SIZE));
@@ -168,12 +175,13 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
                 (baseRavineSize + RAVINE_SIZE_ADD) * VERT_SIZE_FACTOR +
                 LAVA_HEIGHT_OFFSET + startY * LAVA_HEIGHT_Y_FACTOR);
 
-        this.generateNode(cube, rand.nextLong(), generatedCubePos, startX, startY, startZ,
+        TunnelSkeleton.Node<RavineShape> node = this.generateNode(rand.nextLong(), startX, startY, startZ,
                 baseRavineSize, vertDirectionAngle, horizDirectionAngle,
                 startWalkedDistance, maxWalkedDistance, VERT_SIZE_FACTOR, lavaHeight);
+        return new TunnelSkeleton<>(Collections.singletonList(node));
     }
 
-    private void generateNode(CubePrimer cube, long seed, CubePos generatedCubePos,
+    private TunnelSkeleton.Node<RavineShape> generateNode(long seed,
             double ravineX, double ravineY, double ravineZ,
             float baseRavineSize, float horizDirAngle, float vertDirAngle,
             int startWalkedDistance, int maxWalkedDistance, double vertRavineSizeMod,
@@ -202,7 +210,14 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
             walkedDistance = startWalkedDistance;
         }
 
-        this.widthDecreaseFactors = generateRavineWidthFactors(rand);
+        // values of ravine widths at each height, for cubic chunks the height value used wraps around
+        float[] widthDecreaseFactors = generateRavineWidthFactors(rand);
+
+        double maxDistToCube = baseRavineSize + RAVINE_SIZE_ADD + ICube.SIZE;
+        //NOTE: don't check yDist, this is optimization and with Y scale stretched as much as with ravines
+        //the check would be useless
+        TunnelSkeleton.Node<RavineShape> node = new TunnelSkeleton.Node<>(
+                new RavineShape(lavaHeight, widthDecreaseFactors), maxDistToCube, false);
 
         for (; walkedDistance < maxWalkedDistance; ++walkedDistance) {
             float fractionWalked = walkedDistance / (float) maxWalkedDistance;
@@ -241,33 +256,19 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
                 continue;
             }
 
-            double xDist = ravineX - generatedCubePos.getXCenter();
-            double zDist = ravineZ - generatedCubePos.getZCenter();
-            double maxStepsDist = maxWalkedDistance - walkedDistance;
-
-            double maxDistToCube = baseRavineSize + RAVINE_SIZE_ADD + ICube.SIZE;
-            //can this cube be reached at all?
-            //if even after going max distance allowed by remaining steps, it's still too far - stop
-            //NOTE: don't check yDist, this is optimization and with Y scale stretched as much as with ravines
-            //the check would be useless
-            //TODO: does it make any performance difference?
-            if (xDist * xDist + zDist * zDist - maxStepsDist * maxStepsDist > maxDistToCube * maxDistToCube) {
-                return;
-            }
-
-            tryCarveBlocks(cube, generatedCubePos,
-                    ravineX, ravineY, ravineZ,
-                    ravineSizeHoriz, ravineSizeVert, lavaHeight);
+            //whether the cube can still be reached from here is checked when carving, see TunnelSkeleton
+            node.addStep(ravineX, ravineY, ravineZ, ravineSizeHoriz, ravineSizeVert, maxWalkedDistance - walkedDistance);
 
             if (finalStep) {
-                return;
+                return node;
             }
         }
+        return node;
     }
 
     private void tryCarveBlocks(CubePrimer cube, CubePos generatedCubePos,
             double ravineX, double ravineY, double ravineZ,
-            double ravineSizeHoriz, double ravineSizeVert, int lavaHeight) {
+            double ravineSizeHoriz, double ravineSizeVert, int lavaHeight, float[] widthDecreaseFactors) {
         double genCubeCenterX = generatedCubePos.getXCenter();
         double genCubeCenterY = generatedCubePos.getYCenter();
         double genCubeCenterZ = generatedCubePos.getZCenter();
@@ -301,14 +302,14 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
 
         if (!hitLiquid) {
             carveBlocks(cube, generatedCubePos, ravineX, ravineY, ravineZ,
-                    ravineSizeHoriz, ravineSizeVert, boundingBox, lavaHeight);
+                    ravineSizeHoriz, ravineSizeVert, boundingBox, lavaHeight, widthDecreaseFactors);
         }
     }
 
     private void carveBlocks(CubePrimer cube, CubePos generatedCubePos,
             double ravineX, double ravineY, double ravineZ,
             double ravineSizeHoriz, double ravineSizeVert, StructureBoundingBox boundingBox,
-            int lavaHeight) {
+            int lavaHeight, float[] widthDecreaseFactors) {
         int generatedCubeX = generatedCubePos.getX();
         int generatedCubeY = generatedCubePos.getY();
         int generatedCubeZ = generatedCubePos.getZ();
@@ -337,7 +338,7 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
                     //most of these blocks beyond the not-stretched height range are never carved out
                     //the result is that instead the ravine isn't very small at the bottom,
                     //but ends with actual floor instead
-                    double widthDecreaseFactor = this.widthDecreaseFactors[(localY + generatedCubeY * ICube.SIZE) & 0xFF];
+                    double widthDecreaseFactor = widthDecreaseFactors[(localY + generatedCubeY * ICube.SIZE) & 0xFF];
                     if ((distX * distX + distZ * distZ) * widthDecreaseFactor + distY * distY / STRETCH_Y_FACTOR >= 1.0D) {
                         continue;
                     }
@@ -371,4 +372,16 @@ public class CubicRavineGenerator implements IFlexHandlerStructureGenerator {
 
         return values;
     }
+
+    private static final class RavineShape {
+
+        final int lavaHeight;
+        // values of ravine widths at each height, for cubic chunks the height value used wraps around
+        final float[] widthDecreaseFactors;
+
+        RavineShape(int lavaHeight, float[] widthDecreaseFactors) {
+            this.lavaHeight = lavaHeight;
+            this.widthDecreaseFactors = widthDecreaseFactors;
+        }
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * All carving steps of the tunnels (caves or ravines) started in one cube. Unlike walking the tunnel for each generated
+ * cube, this doesn't depend on the cube being generated, so it can be computed once and used for all cubes around it.
+ * <p>
+ * Carving a cube from the skeleton gives exactly the same result as the walk: steps are carved in the same order, and
+ * the check that stops a tunnel branch once the cube can't be reached is repeated for each cube. Each node also keeps
+ * the area any of its steps or sub-branches can affect, so that most branches far from the cube are skipped entirely.
+ *
+ * @param <D> additional data the carver needs for each tunnel branch
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class TunnelSkeleton<D> {
+
+    private static final TunnelSkeleton<?> EMPTY = new TunnelSkeleton<>(Collections.emptyList());
+
+    private final Node<D>[] roots;
+
+    @SuppressWarnings("unchecked")
+    TunnelSkeleton(List<Node<D>> roots) {
+        this.roots = roots.toArray(new Node[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <D> TunnelSkeleton<D> empty() {
+        return (TunnelSkeleton<D>) EMPTY;
+    }
+
+    void carve(CubePrimer cube, CubePos generatedCubePos, StepCarver<D> carver) {
+        for (Node<D> root : roots) {
+            root.carve(cube, generatedCubePos, carver);
+        }
+    }
+
+    @FunctionalInterface
+    interface StepCarver<D> {
+
+        void carve(CubePrimer cube, CubePos generatedCubePos, double x, double y, double z, double sizeHoriz, double sizeVert,
+                @Nullable D data);
+    }
+
+    /**
+     * One branch of a tunnel: the steps that carve blocks, followed by branches that split off at the end.
+     */
+    static final class Node<D> {
+
+        private static final int STRIDE = 6;
+
+        @Nullable private final D data;
+        private final double maxDistToCube;
+        private final boolean checkY;
+
+        // x, y, z, horizontal size, vertical size, remaining distance for each step
+        private double[] steps = new double[STRIDE * 16];
+        private int stepCount;
+        private final List<Node<D>> children = new ArrayList<>(0);
+
+        // range of generated cube centers this node or it's children can affect
+        private double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+
+        /**
+         * @param data additional data passed to the carver
+         * @param maxDistToCube maximum distance from cube center at which a step can carve blocks in the cube
+         * @param checkY whether Y distance is considered when checking if the cube can still be reached
+         */
+        Node(@Nullable D data, double maxDistToCube, boolean checkY) {
+            this.data = data;
+            this.maxDistToCube = maxDistToCube;
+            this.checkY = checkY;
+        }
+
+        void addStep(double x, double y, double z, double sizeHoriz, double sizeVert, double remainingDistance) {
+            if ((stepCount + 1) * STRIDE > steps.length) {
+                steps = Arrays.copyOf(steps, steps.length * 2);
+            }
+            int i = stepCount * STRIDE;
+            steps[i] = x;
+            steps[i + 1] = y;
+            steps[i + 2] = z;
+            steps[i + 3] = sizeHoriz;
+            steps[i + 4] = sizeVert;
+            steps[i + 5] = remainingDistance;
+            stepCount++;
+
+            // same as the check in tryCarveBlocks of the generators, with one extra block for rounding errors
+            double rangeHoriz = ICube.SIZE + sizeHoriz * 2.0D + 1;
+            double rangeVert = ICube.SIZE + sizeVert * 2.0D + 1;
+            minX = Math.min(minX, x - rangeHoriz);
+            minY = Math.min(minY, y - rangeVert);
+            minZ = Math.min(minZ, z - rangeHoriz);
+            maxX = Math.max(maxX, x + rangeHoriz);
+            maxY = Math.max(maxY, y + rangeVert);
+            maxZ = Math.max(maxZ, z + rangeHoriz);
+        }
+
+        void addChild(Node<D> child) {
+            children.add(child);
+            minX = Math.min(minX, child.minX);
+            minY = Math.min(minY, child.minY);
+            minZ = Math.min(minZ, child.minZ);
+            maxX = Math.max(maxX, child.maxX);
+            maxY = Math.max(maxY, child.maxY);
+            maxZ = Math.max(maxZ, child.maxZ);
+        }
+
+        private void carve(CubePrimer cube, CubePos generatedCubePos, StepCarver<D> carver) {
+            double centerX = generatedCubePos.getXCenter();
+            double centerY = generatedCubePos.getYCenter();
+            double centerZ = generatedCubePos.getZCenter();
+            if (centerX < minX || centerX > maxX || centerY < minY || centerY > maxY || centerZ < minZ || centerZ > maxZ) {
+                return;
+            }
+            double[] steps = this.steps;
+            for (int i = 0; i < stepCount * STRIDE; i += STRIDE) {
+                double x = steps[i], y = steps[i + 1], z = steps[i + 2];
+                double xDist = x - centerX;
+                double yDist = checkY ? y - centerY : 0;
+                double zDist = z - centerZ;
+                double maxStepsDist = steps[i + 5];
+                //can this cube be reached at all?
+                //if even after going max distance allowed by remaining steps, it's still too far - stop
+                if (xDist * xDist + yDist * yDist + zDist * zDist - maxStepsDist * maxStepsDist > maxDistToCube * maxDistToCube) {
+                    return;
+                }
+                carver.carve(cube, generatedCubePos, x, y, z, steps[i + 3], steps[i + 4], data);
+            }
+            for (Node<D> child : children) {
+                child.carve(cube, generatedCubePos, carver);
+            }
+        }
+    }
+}
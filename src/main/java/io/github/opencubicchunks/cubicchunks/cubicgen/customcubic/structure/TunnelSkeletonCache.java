@@ -0,0 +1,107 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Bounded least recently used cache of {@link TunnelSkeleton}s by the cube the tunnels start in. With
+ * {@link CustomCubicConfig#concurrentGeneration} each thread gets its own cache, otherwise the single cache is
+ * synchronized, as even reading it reorders entries.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class TunnelSkeletonCache<D> {
+
+    /**
+     * Each source cube is used by (2 * RANGE + 1)^2 * 3 generated cubes around it, enough to keep the skeletons for all
+     * cubes around a few players generating terrain in different places.
+     */
+    static final int DEFAULT_SIZE = 8192;
+
+    private final SkeletonFactory<D> factory;
+    @Nullable private final Map<CubePos, TunnelSkeleton<D>> cache;
+    @Nullable private final ThreadLocal<Map<CubePos, TunnelSkeleton<D>>> threadCaches;
+
+    TunnelSkeletonCache(int size, SkeletonFactory<D> factory) {
+        this.factory = factory;
+        if (CustomCubicConfig.concurrentGeneration) {
+            this.cache = null;
+            this.threadCaches = ThreadLocal.withInitial(() -> createMap(size));
+        } else {
+            this.cache = createMap(size);
+            this.threadCaches = null;
+        }
+    }
+
+    /**
+     * Returns the skeleton of tunnels starting in the given cube, creating it if it's not cached.
+     *
+     * @param rand random seeded for the source cube, only used if the skeleton isn't cached
+     * @param cubeX source cube X coordinate
+     * @param cubeY source cube Y coordinate
+     * @param cubeZ source cube Z coordinate
+     */
+    TunnelSkeleton<D> get(Random rand, int cubeX, int cubeY, int cubeZ) {
+        CubePos pos = new CubePos(cubeX, cubeY, cubeZ);
+        if (cache == null) {
+            return threadCaches.get().computeIfAbsent(pos, p -> factory.create(rand, cubeX, cubeY, cubeZ));
+        }
+        TunnelSkeleton<D> skeleton;
+        synchronized (cache) {
+            skeleton = cache.get(pos);
+        }
+        if (skeleton == null) {
+            // walked outside of the lock, if another thread does the same the result is the same
+            skeleton = factory.create(rand, cubeX, cubeY, cubeZ);
+            synchronized (cache) {
+                cache.put(pos, skeleton);
+            }
+        }
+        return skeleton;
+    }
+
+    private static <D> Map<CubePos, TunnelSkeleton<D>> createMap(int maxSize) {
+        return new LinkedHashMap<CubePos, TunnelSkeleton<D>>(maxSize * 4 / 3 + 1, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<CubePos, TunnelSkeleton<D>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface SkeletonFactory<D> {
+
+        TunnelSkeleton<D> create(Random rand, int cubeX, int cubeY, int cubeZ);
+    }
+}
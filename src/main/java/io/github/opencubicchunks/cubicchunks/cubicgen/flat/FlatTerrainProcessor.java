@@ -39,9 +39,16 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraftforge.common.MinecraftForge;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.TreeSet;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -52,20 +59,59 @@ import javax.annotation.ParametersAreNonnullByDefault;
 public class FlatTerrainProcessor extends BasicCubeGenerator {
 
     private final FlatGeneratorSettings conf;
+    // template i is used for cube Y coordinates from templateStarts[i] to templateStarts[i + 1] - 1
+    private final int[] templateStarts;
+    private final CubeTemplate[] templates;
 
     public FlatTerrainProcessor(World world) {
         super(world);
         String json = world.getWorldInfo().getGeneratorOptions();
         conf = FlatGeneratorSettings.fromJson(json);
+
+        // cubes between two cubes containing a layer boundary all get the same layers
+        TreeSet<Integer> boundaryCubes = new TreeSet<>();
+        for (Entry<Integer, FlatLayer> entry : conf.layers.entrySet()) {
+            boundaryCubes.add(Coords.blockToCube(entry.getKey()));
+            boundaryCubes.add(Coords.blockToCube(entry.getValue().fromY));
+            boundaryCubes.add(Coords.blockToCube(entry.getValue().toY));
+        }
+        List<Integer> starts = new ArrayList<>();
+        List<CubeTemplate> cubeTemplates = new ArrayList<>();
+        Map<CubeTemplate, CubeTemplate> uniqueTemplates = new HashMap<>();
+        if (boundaryCubes.isEmpty()) {
+            addTemplate(starts, cubeTemplates, uniqueTemplates, Integer.MIN_VALUE, 0);
+        } else {
+            addTemplate(starts, cubeTemplates, uniqueTemplates, Integer.MIN_VALUE, boundaryCubes.first() - 1);
+            for (int cubeY : boundaryCubes) {
+                addTemplate(starts, cubeTemplates, uniqueTemplates, cubeY, cubeY);
+                Integer next = boundaryCubes.higher(cubeY);
+                if (next == null || next > cubeY + 1) {
+                    addTemplate(starts, cubeTemplates, uniqueTemplates, cubeY + 1, cubeY + 1);
+                }
+            }
+        }
+        this.templateStarts = new int[starts.size()];
+        for (int i = 0; i < templateStarts.length; i++) {
+            templateStarts[i] = starts.get(i);
+        }
+        this.templates = cubeTemplates.toArray(new CubeTemplate[0]);
     }
 
-    @Override
-    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ) { // legacy method
-        return this.generateCube(cubeX, cubeY, cubeZ, new CubePrimer());
+    private void addTemplate(List<Integer> starts, List<CubeTemplate> cubeTemplates, Map<CubeTemplate, CubeTemplate> uniqueTemplates,
+            int startCubeY, int exampleCubeY) {
+        CubeTemplate template = uniqueTemplates.computeIfAbsent(new CubeTemplate(layersInCube(exampleCubeY)), t -> t);
+        if (!cubeTemplates.isEmpty() && cubeTemplates.get(cubeTemplates.size() - 1) == template) {
+            return;
+        }
+        starts.add(startCubeY);
+        cubeTemplates.add(template);
     }
 
-    @Override
-    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ, CubePrimer primer) {
+    /**
+     * Returns the block state of each Y level of the cube, null where no layer is set.
+     */
+    private IBlockState[] layersInCube(int cubeY) {
+        IBlockState[] states = new IBlockState[ICube.SIZE];
         int floorY = Coords.cubeToMinBlock(cubeY);
         int topY = Coords.cubeToMaxBlock(cubeY);
         int floorKeyI = floorY;
@@ -79,17 +125,30 @@ public class FlatTerrainProcessor extends BasicCubeGenerator {
         NavigableMap<Integer, FlatLayer> cubeLayerSubMap = conf.layers.subMap(floorKeyI, true, topKeyI, true);
         for (Entry<Integer, FlatLayer> entry : cubeLayerSubMap.entrySet()) {
             FlatLayer layer = entry.getValue();
-            int fromY = layer.fromY - floorY;
-            int toY = layer.toY - floorY;
+            long fromY = (long) layer.fromY - floorY;
+            long toY = (long) layer.toY - floorY;
             IBlockState iBlockState = layer.blockState.getOrDefault(Blocks.STONE.getDefaultState());
-            int maxY = Math.min(toY, ICube.SIZE);
-            for (int y = Math.max(fromY, 0); y < maxY; y++)
-                for (int x = 0; x < ICube.SIZE; x++) {
-                    for (int z = 0; z < ICube.SIZE; z++) {
-                        primer.setBlockState(x, y, z, iBlockState);
-                    }
-                }
+            int maxY = (int) Math.min(toY, ICube.SIZE);
+            for (int y = (int) Math.max(fromY, 0); y < maxY; y++) {
+                states[y] = iBlockState;
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ) { // legacy method
+        return this.generateCube(cubeX, cubeY, cubeZ, new CubePrimer());
+    }
+
+    @Override
+    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ, CubePrimer primer) {
+        int index = Arrays.binarySearch(templateStarts, cubeY);
+        if (index < 0) {
+            // insertion point - 1 is the last template starting below cubeY
+            index = -index - 2;
         }
+        templates[index].fill(primer);
         return primer;
     }
 
@@ -120,4 +179,61 @@ public class FlatTerrainProcessor extends BasicCubeGenerator {
         // eyes of ender are the new F3 for finding the origin :P
         return name.equals("Stronghold") ? new BlockPos(0, 0, 0) : null;
     }
+
+    /**
+     * Blocks of a cube, the same for every column. Cubes without any layers and cubes filled with a single block don't
+     * need to look up the block for each Y level.
+     */
+    private static final class CubeTemplate {
+
+        private final IBlockState[] states;
+        @Nullable private final IBlockState single;
+        private final boolean empty;
+
+        CubeTemplate(IBlockState[] states) {
+            this.states = states;
+            boolean allEmpty = true;
+            boolean allSame = true;
+            for (IBlockState state : states) {
+                allEmpty &= state == null;
+                allSame &= state == states[0];
+            }
+            this.empty = allEmpty;
+            this.single = allSame ? states[0] : null;
+        }
+
+        void fill(CubePrimer primer) {
+            if (empty) {
+                return;
+            }
+            if (single != null) {
+                for (int x = 0; x < ICube.SIZE; x++) {
+                    for (int z = 0; z < ICube.SIZE; z++) {
+                        for (int y = 0; y < ICube.SIZE; y++) {
+                            primer.setBlockState(x, y, z, single);
+                        }
+                    }
+                }
+                return;
+            }
+            for (int x = 0; x < ICube.SIZE; x++) {
+                for (int z = 0; z < ICube.SIZE; z++) {
+                    for (int y = 0; y < ICube.SIZE; y++) {
+                        IBlockState state = states[y];
+                        if (state != null) {
+                            primer.setBlockState(x, y, z, state);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof CubeTemplate && Arrays.equals(states, ((CubeTemplate) o).states);
+        }
+
+        @Override public int hashCode() {
+            return Arrays.hashCode(states);
+        }
+    }
 }
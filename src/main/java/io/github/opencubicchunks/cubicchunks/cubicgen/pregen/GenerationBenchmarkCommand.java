@@ -0,0 +1,156 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.pregen;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorldServer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.World;
+import net.minecraftforge.server.permission.PermissionAPI;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Times terrain generation of an area with the current preset and thread count, using {@link ParallelPregenerator} on
+ * the terrain generator of the sender's world, and reports progress.
+ * <p>
+ * This is a benchmark, not pregeneration. The generated cubes are thrown away, they are not saved, populated or added
+ * to the world, as the Cubic Chunks API doesn't provide a way to store generated cubes.
+ * <p>
+ * The server thread keeps generating cubes with the same generator while this runs, so it requires a generator that
+ * was built for concurrent generation, see {@link CustomTerrainGenerator#isConcurrent()}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class GenerationBenchmarkCommand extends CommandBase {
+
+    public static final String PERMISSION = CustomCubicMod.MODID + ".command.genbench";
+
+    @Nullable private static volatile ParallelPregenerator running;
+
+    @Override
+    public String getName() {
+        return "customcubic_genbench";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "/customcubic_genbench <minCubeX> <minCubeY> <minCubeZ> <maxCubeX> <maxCubeY> <maxCubeZ> [threads] | stop"
+                + " - times terrain generation of an area, generated cubes are discarded and not added to the world";
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 1 && args[0].equals("stop")) {
+            ParallelPregenerator pregen = running;
+            if (pregen == null) {
+                sender.sendMessage(new TextComponentString("Generation benchmark is not running"));
+                return;
+            }
+            pregen.cancel();
+            sender.sendMessage(new TextComponentString("Stopping generation benchmark"));
+            return;
+        }
+        if (args.length != 6 && args.length != 7) {
+            throw new WrongUsageException(getUsage(sender));
+        }
+        if (running != null) {
+            sender.sendMessage(new TextComponentString("ERROR: generation benchmark is already running"));
+            return;
+        }
+        World world = sender.getEntityWorld();
+        if (!((ICubicWorld) world).isCubicWorld()) {
+            sender.sendMessage(new TextComponentString("ERROR: not a cubic chunks world"));
+            return;
+        }
+        ICubeGenerator generator = ((ICubicWorldServer) world).getCubeGenerator();
+        if (!(generator instanceof CustomTerrainGenerator)) {
+            sender.sendMessage(new TextComponentString("ERROR: not a custom cubic world"));
+            return;
+        }
+        // the config option may have changed since the generator was built
+        if (!((CustomTerrainGenerator) generator).isConcurrent()) {
+            sender.sendMessage(new TextComponentString("ERROR: the world generator doesn't support concurrent generation, "
+                    + "it's required because the server generates cubes at the same time. Enable concurrentGeneration in "
+                    + "config and restart the world, and only single biome worlds and cube areas are supported"));
+            return;
+        }
+        int minX = parseInt(args[0]);
+        int minY = parseInt(args[1]);
+        int minZ = parseInt(args[2]);
+        int maxX = parseInt(args[3], minX);
+        int maxY = parseInt(args[4], minY);
+        int maxZ = parseInt(args[5], minZ);
+        int threads = args.length == 7 ? parseInt(args[6], 1) : Runtime.getRuntime().availableProcessors();
+
+        // only generation is timed, the cubes are discarded
+        ParallelPregenerator pregen = new ParallelPregenerator(ParallelPregenerator.CubeSource.of((CustomTerrainGenerator) generator),
+                (x, y, z, primer) -> { }, minX, minY, minZ, maxX, maxY, maxZ, threads, 10,
+                progress -> server.addScheduledTask(() -> sender.sendMessage(new TextComponentString(progress.toString()))));
+        running = pregen;
+        ForkJoinTask<?> task = pregen.start();
+        sender.sendMessage(new TextComponentString("Started generating " + pregen.getProgress().getTotal() + " cubes using "
+                + threads + " threads"));
+
+        Thread waitThread = new Thread(() -> {
+            String result;
+            try {
+                task.get();
+                result = (pregen.isCancelled() ? "Generation benchmark stopped: " : "Generation benchmark done: ") + pregen.getProgress();
+            } catch (InterruptedException | ExecutionException e) {
+                CustomCubicMod.LOGGER.error("Generation benchmark failed", e);
+                result = "ERROR: generation benchmark failed, see log for details";
+            } finally {
+                running = null;
+            }
+            String message = result;
+            server.addScheduledTask(() -> sender.sendMessage(new TextComponentString(message)));
+        }, "CubicGen generation benchmark");
+        waitThread.setDaemon(true);
+        waitThread.start();
+    }
+
+    @Override
+    public boolean checkPermission(MinecraftServer server, ICommandSender sender) {
+        if (sender instanceof EntityPlayer) {
+            return PermissionAPI.hasPermission((EntityPlayer) sender, PERMISSION);
+        } else {
+            return super.checkPermission(server, sender);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.pregen;
+
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Generates all cubes in a box using a fork-join pool.
+ * <p>
+ * Work is split into columns, the area is recursively cut in halves so that each worker thread generates a compact
+ * group of neighbouring columns, and each column is generated bottom to top by a single thread. This keeps per-thread
+ * biome and noise caches warm. The cube source must be safe to use from multiple threads, for CustomTerrainGenerator
+ * this requires {@link CustomTerrainGenerator#isConcurrent()}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ParallelPregenerator {
+
+    // cubes of a column are requested from the source in stacks of this size, cancelling is checked between them
+    private static final int STACK_SIZE = 8;
+
+    private final CubeSource source;
+    private final CubeSink sink;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final int threads;
+
+    private final LongAdder generated = new LongAdder();
+    private final AtomicLong lastReportNanos = new AtomicLong();
+    private final long reportIntervalNanos;
+    @Nullable private final Consumer<Progress> progressListener;
+
+    private volatile boolean cancelled;
+    private long startNanos;
+    @Nullable private ForkJoinPool pool;
+
+    /**
+     * Cube coordinates of both corners of the area are inclusive.
+     *
+     * @param source generates cubes, called from worker threads
+     * @param sink receives generated cubes, called from worker threads
+     * @param threads amount of worker threads
+     * @param reportInterval minimum interval between progress reports, in seconds
+     * @param progressListener receives progress reports, called from worker threads
+     */
+    public ParallelPregenerator(CubeSource source, CubeSink sink, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int threads, int reportInterval, @Nullable Consumer<Progress> progressListener) {
+        if (maxX < minX || maxY < minY || maxZ < minZ) {
+            throw new IllegalArgumentException("Empty area");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1 but was " + threads);
+        }
+        this.source = source;
+        this.sink = sink;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.threads = threads;
+        this.reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportInterval);
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Starts generating in the background.
+     *
+     * @return the task that completes when all cubes are generated, or exceptionally if generating any cube failed
+     */
+    public ForkJoinTask<?> start() {
+        if (pool != null) {
+            throw new IllegalStateException("Already started");
+        }
+        startNanos = System.nanoTime();
+        lastReportNanos.set(startNanos);
+        pool = new ForkJoinPool(threads);
+        ForkJoinTask<?> task = pool.submit(new ColumnsTask(minX, minZ, maxX, maxZ));
+        pool.shutdown();
+        return task;
+    }
+
+    /**
+     * Stops generating, cubes already being generated are still finished.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Progress getProgress() {
+        long total = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        return new Progress(generated.sum(), total, System.nanoTime() - startNanos);
+    }
+
+    private void generateColumn(int cubeX, int cubeZ) {
+        for (int cubeY = minY; cubeY <= maxY && !cancelled; cubeY += STACK_SIZE) {
+            CubePrimer[] primers = new CubePrimer[(int) Math.min(STACK_SIZE, (long) maxY - cubeY + 1)];
+            source.generateStack(cubeX, cubeY, cubeZ, primers);
+            for (int i = 0; i < primers.length; i++) {
+                sink.accept(cubeX, cubeY + i, cubeZ, primers[i]);
+            }
+            generated.add(primers.length);
+        }
+        if (progressListener != null) {
+            long now = System.nanoTime();
+            long last = lastReportNanos.get();
+            // only one thread reports progress at any time
+            if (now - last >= reportIntervalNanos && lastReportNanos.compareAndSet(last, now)) {
+                progressListener.accept(getProgress());
+            }
+        }
+    }
+
+    private final class ColumnsTask extends RecursiveAction {
+
+        private final int minX, minZ, maxX, maxZ;
+
+        ColumnsTask(int minX, int minZ, int maxX, int maxZ) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+
+        @Override protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (minX == maxX && minZ == maxZ) {
+                generateColumn(minX, minZ);
+                return;
+            }
+            if (maxX - minX >= maxZ - minZ) {
+                int midX = (minX + maxX) >> 1;
+                invokeAll(new ColumnsTask(minX, minZ, midX, maxZ), new ColumnsTask(midX + 1, minZ, maxX, maxZ));
+            } else {
+                int midZ = (minZ + maxZ) >> 1;
+                invokeAll(new ColumnsTask(minX, minZ, maxX, midZ), new ColumnsTask(minX, midZ + 1, maxX, maxZ));
+            }
+        }
+    }
+
+    public static final class Progress {
+
+        private final long generated;
+        private final long total;
+        private final long elapsedNanos;
+
+        Progress(long generated, long total, long elapsedNanos) {
+            this.generated = generated;
+            this.total = total;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getGenerated() {
+            return generated;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public double getCubesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : generated * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return estimated remaining time in seconds, or -1 if it's not known yet
+         */
+        public long getEtaSeconds() {
+            double speed = getCubesPerSecond();
+            return speed <= 0 ? -1 : (long) Math.ceil((total - generated) / speed);
+        }
+
+        @Override public String toString() {
+            long eta = getEtaSeconds();
+            return String.format("%d/%d cubes (%.1f%%), %.1f cubes/s, ETA %s", generated, total, generated * 100.0 / total,
+                    getCubesPerSecond(), eta < 0 ? "unknown" : String.format("%d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+        }
+    }
+
+    @FunctionalInterface
+    public interface CubeSource {
+
+        CubePrimer generate(int cubeX, int cubeY, int cubeZ);
+
+        /**
+         * Generates cubes from minCubeY upwards into the array. Sources that can share work between cubes of one
+         * column override this.
+         */
+        default void generateStack(int cubeX, int minCubeY, int cubeZ, CubePrimer[] primers) {
+            for (int i = 0; i < primers.length; i++) {
+                primers[i] = generate(cubeX, minCubeY + i, cubeZ);
+            }
+        }
+
+        /**
+         * Source generating terrain of whole stacks at once with {@link CustomTerrainGenerator#generateCubeStack}.
+         */
+        static CubeSource of(CustomTerrainGenerator generator) {
+            return new CubeSource() {
+                @Override public CubePrimer generate(int cubeX, int cubeY, int cubeZ) {
+                    return generator.generateCube(cubeX, cubeY, cubeZ);
+                }
+
+                @Override public void generateStack(int cubeX, int minCubeY, int cubeZ, CubePrimer[] primers) {
+                    generator.generateCubeStack(cubeX, minCubeY, cubeZ, primers);
+                }
+            };
+        }
+    }
+
+    @FunctionalInterface
+    public interface CubeSink {
+
+        void accept(int cubeX, int cubeY, int cubeZ, CubePrimer primer);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.profiler;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.biome.Biome;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Collects time spent in each stage of cube generation and population. Enabled by
+ * {@link CustomCubicConfig#profileGeneration}.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * long start = GenerationProfiler.start();
+ * doWork();
+ * GenerationProfiler.end(Stage.CAVES, start);
+ * }</pre>
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@Mod.EventBusSubscriber(modid = CustomCubicMod.MODID)
+public class GenerationProfiler {
+
+    public static final String METRIC_NAME = "cubicgen_stage_seconds";
+    public static final String LATTICE_METRIC_NAME = "cubicgen_density_lattice_points_total";
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final Map<Stage, StageHistogram> stages = new EnumMap<>(Stage.class);
+    private static final ConcurrentMap<ResourceLocation, StageHistogram> decorators = new ConcurrentHashMap<>();
+    private static final LongAdder latticeHits = new LongAdder();
+    private static final LongAdder latticeMisses = new LongAdder();
+
+    private static long lastExportTime = System.nanoTime();
+
+    static {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageHistogram());
+        }
+    }
+
+    public static boolean isEnabled() {
+        return CustomCubicConfig.profileGeneration;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #end(Stage, long)}, or a marker value when profiling is disabled.
+     */
+    public static long start() {
+        return isEnabled() ? System.nanoTime() : NOT_STARTED;
+    }
+
+    public static void end(Stage stage, long start) {
+        if (start != NOT_STARTED) {
+            stages.get(stage).record(System.nanoTime() - start);
+        }
+    }
+
+    public static void endDecorator(Biome biome, long start) {
+        if (start != NOT_STARTED) {
+            long time = System.nanoTime() - start;
+            stages.get(Stage.DECORATORS).record(time);
+            ResourceLocation name = biome.getRegistryName();
+            if (name == null) {
+                name = new ResourceLocation("unknown");
+            }
+            decorators.computeIfAbsent(name, n -> new StageHistogram()).record(time);
+        }
+    }
+
+    /**
+     * Records how many density lattice points of one fill were found in the lattice cache, and how many were computed.
+     */
+    public static void recordLatticePoints(int hits, int misses) {
+        if (isEnabled()) {
+            latticeHits.add(hits);
+            latticeMisses.add(misses);
+        }
+    }
+
+    public static long getLatticeHits() {
+        return latticeHits.sum();
+    }
+
+    public static long getLatticeMisses() {
+        return latticeMisses.sum();
+    }
+
+    public static StageHistogram getHistogram(Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Returns decorator histograms for each biome, sorted by biome name.
+     */
+    public static Map<ResourceLocation, StageHistogram> getDecoratorHistograms() {
+        return new TreeMap<>(decorators);
+    }
+
+    public static void reset() {
+        stages.values().forEach(StageHistogram::reset);
+        decorators.clear();
+        latticeHits.reset();
+        latticeMisses.reset();
+    }
+
+    /**
+     * Writes all histograms in Prometheus text exposition format.
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        out.append("# HELP ").append(METRIC_NAME).append(" Time spent in each cubic world generation stage\n");
+        out.append("# TYPE ").append(METRIC_NAME).append(" histogram\n");
+        for (Map.Entry<Stage, StageHistogram> entry : stages.entrySet()) {
+            writeHistogram(out, "stage=\"" + entry.getKey().getName() + "\"", entry.getValue());
+        }
+        for (Map.Entry<ResourceLocation, StageHistogram> entry : getDecoratorHistograms().entrySet()) {
+            writeHistogram(out, "stage=\"" + Stage.DECORATOR_NAME + "\",biome=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+        out.append("# HELP ").append(LATTICE_METRIC_NAME).append(" Density lattice points found in the lattice cache or computed\n");
+        out.append("# TYPE ").append(LATTICE_METRIC_NAME).append(" counter\n");
+        out.append(LATTICE_METRIC_NAME).append("{result=\"hit\"} ").append(Long.toString(getLatticeHits())).append('\n');
+        out.append(LATTICE_METRIC_NAME).append("{result=\"miss\"} ").append(Long.toString(getLatticeMisses())).append('\n');
+    }
+
+    private static void writeHistogram(Appendable out, String labels, StageHistogram histogram) throws IOException {
+        long[] counts = histogram.getCounts();
+        long cumulative = 0;
+        for (int i = 0; i < StageHistogram.BUCKETS; i++) {
+            cumulative += counts[i];
+            double le = StageHistogram.bucketUpperBoundNanos(i) / 1e9;
+            out.append(METRIC_NAME).append("_bucket{").append(labels).append(",le=\"").append(Double.toString(le)).append("\"} ")
+                    .append(Long.toString(cumulative)).append('\n');
+        }
+        cumulative += counts[StageHistogram.BUCKETS];
+        out.append(METRIC_NAME).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(Long.toString(cumulative)).append('\n');
+        out.append(METRIC_NAME).append("_sum{").append(labels).append("} ")
+                .append(Double.toString(histogram.getTotalNanos() / 1e9)).append('\n');
+        out.append(METRIC_NAME).append("_count{").append(labels).append("} ").append(Long.toString(cumulative)).append('\n');
+    }
+
+    /**
+     * Writes all histograms to a file in Prometheus text format. The file is replaced atomically where supported, so
+     * that readers never see a partially written file.
+     */
+    public static void writePrometheus(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            writePrometheus(writer);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns a short human readable summary of one histogram.
+     */
+    public static String summarize(String name, StageHistogram histogram) {
+        long count = histogram.getCount();
+        double avgMs = count == 0 ? 0 : histogram.getTotalNanos() / 1e6 / count;
+        return String.format(Locale.ROOT, "%s: %d calls, total %.1f ms, avg %.3f ms, p99 <= %.3f ms, max %.3f ms",
+                name, count, histogram.getTotalNanos() / 1e6, avgMs,
+                histogram.getQuantileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * Returns a short human readable summary of density lattice cache hits.
+     */
+    public static String summarizeLattice() {
+        long hits = getLatticeHits();
+        long total = hits + getLatticeMisses();
+        return String.format(Locale.ROOT, "density lattice: %d points, %d from cache (%.1f%%)",
+                total, hits, total == 0 ? 0 : hits * 100.0 / total);
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || !isEnabled() || CustomCubicConfig.profilerExportInterval <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastExportTime < CustomCubicConfig.profilerExportInterval * 1_000_000_000L) {
+            return;
+        }
+        lastExportTime = now;
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        if (server == null) {
+            return;
+        }
+        File file = server.getFile(CustomCubicConfig.profilerExportFile);
+        try {
+            writePrometheus(file);
+        } catch (IOException e) {
+            CustomCubicMod.LOGGER.error("Failed to write world generation profiler data to " + file, e);
+        }
+    }
+
+    public enum Stage {
+        DENSITY("density"),
+        REPLACERS("replacers"),
+        CAVES("caves"),
+        NOISE_CAVES("noise_caves"),
+        RAVINES("ravines"),
+        STRONGHOLDS("strongholds"),
+        /**
+         * All biome decorators combined, per-biome times are in {@link #getDecoratorHistograms()}
+         */
+        DECORATORS("decorators"),
+        POPULATORS("populators");
+
+        static final String DECORATOR_NAME = "decorator";
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
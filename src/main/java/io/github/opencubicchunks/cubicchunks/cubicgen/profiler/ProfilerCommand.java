@@ -0,0 +1,125 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.profiler;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraftforge.server.permission.PermissionAPI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Shows, resets or exports the data collected by {@link GenerationProfiler}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ProfilerCommand extends CommandBase {
+
+    public static final String PERMISSION = CustomCubicMod.MODID + ".command.profiler";
+
+    @Override
+    public String getName() {
+        return "customcubic_profiler";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "/customcubic_profiler <dump|decorators|reset|write [file]>";
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0) {
+            throw new WrongUsageException(getUsage(sender));
+        }
+        if (!GenerationProfiler.isEnabled()) {
+            sender.sendMessage(new TextComponentString("World generation profiling is disabled in config"));
+        }
+        switch (args[0]) {
+            case "dump":
+                for (GenerationProfiler.Stage stage : GenerationProfiler.Stage.values()) {
+                    sender.sendMessage(new TextComponentString(
+                            GenerationProfiler.summarize(stage.getName(), GenerationProfiler.getHistogram(stage))));
+                }
+                sender.sendMessage(new TextComponentString(GenerationProfiler.summarizeLattice()));
+                break;
+            case "decorators":
+                for (Map.Entry<ResourceLocation, StageHistogram> e : GenerationProfiler.getDecoratorHistograms().entrySet()) {
+                    sender.sendMessage(new TextComponentString(GenerationProfiler.summarize(e.getKey().toString(), e.getValue())));
+                }
+                break;
+            case "reset":
+                GenerationProfiler.reset();
+                sender.sendMessage(new TextComponentString("World generation profiler data has been reset"));
+                break;
+            case "write":
+                File file = server.getFile(args.length > 1 ? args[1] : CustomCubicConfig.profilerExportFile);
+                try {
+                    GenerationProfiler.writePrometheus(file);
+                    sender.sendMessage(new TextComponentString("Written world generation profiler data to " + file));
+                } catch (IOException e) {
+                    CustomCubicMod.LOGGER.error("Failed to write world generation profiler data to " + file, e);
+                    sender.sendMessage(new TextComponentString("ERROR: writing " + file + " failed, see log for details"));
+                }
+                break;
+            default:
+                throw new WrongUsageException(getUsage(sender));
+        }
+    }
+
+    @Override
+    public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            return getListOfStringsMatchingLastWord(args, Arrays.asList("dump", "decorators", "reset", "write"));
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean checkPermission(MinecraftServer server, ICommandSender sender) {
+        if (sender instanceof EntityPlayer) {
+            return PermissionAPI.hasPermission((EntityPlayer) sender, PERMISSION);
+        } else {
+            return super.checkPermission(server, sender);
+        }
+    }
+}
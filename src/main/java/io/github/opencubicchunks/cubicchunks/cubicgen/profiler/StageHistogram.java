@@ -0,0 +1,131 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.profiler;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Lock-free histogram of durations. Bucket i counts durations up to 2^i microseconds, the last bucket counts
+ * everything longer.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class StageHistogram {
+
+    // 2^23 microseconds is a bit over 8 seconds
+    public static final int BUCKETS = 24;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalNanos.add(nanos);
+        long max;
+        while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos)) {
+            // retry
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i <= BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * Returns a copy of the bucket counts, not cumulative. The last entry counts durations longer than all buckets.
+     */
+    public long[] getCounts() {
+        long[] out = new long[BUCKETS + 1];
+        for (int i = 0; i <= BUCKETS; i++) {
+            out[i] = counts.get(i);
+        }
+        return out;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given quantile, or the maximum recorded duration if it's in
+     * the overflow bucket.
+     */
+    public long getQuantileNanos(double quantile) {
+        long[] c = getCounts();
+        long total = 0;
+        for (long v : c) {
+            total += v;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += c[i];
+            if (seen >= rank) {
+                return bucketUpperBoundNanos(i);
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public static long bucketUpperBoundNanos(int bucket) {
+        return 1000L << bucket;
+    }
+
+    static int bucketIndex(long nanos) {
+        long micros = (nanos + 999) / 1000;
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CubeAreaIndex;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.IntAABB;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestCubeAreaIndex {
+
+    @Test public void testEmpty() {
+        CubeAreaIndex<Integer> index = new CubeAreaIndex<>(Collections.emptyList());
+        assertTrue(index.isEmpty());
+        assertNull(index.get(0, 0, 0));
+    }
+
+    @Test public void testFirstAreaWins() {
+        List<Map.Entry<IntAABB, Integer>> areas = new ArrayList<>();
+        areas.add(entry(box(0, 0, 0, 10, 10, 10), 1));
+        areas.add(entry(box(5, 5, 5, 20, 20, 20), 2));
+        CubeAreaIndex<Integer> index = new CubeAreaIndex<>(areas);
+
+        assertEquals(Integer.valueOf(1), index.get(7, 7, 7));
+        assertEquals(Integer.valueOf(2), index.get(15, 7, 15));
+        assertEquals(Integer.valueOf(2), index.get(7, 15, 7));
+        assertNull(index.get(7, 21, 7));
+        assertNull(index.get(-1, 5, 5));
+    }
+
+    @Test public void testSameAsLinearScan() {
+        Random rand = new Random(42);
+        List<Map.Entry<IntAABB, Integer>> areas = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int x = rand.nextInt(64) - 32, y = rand.nextInt(64) - 32, z = rand.nextInt(64) - 32;
+            areas.add(entry(box(x, y, z, x + rand.nextInt(20) - 2, y + rand.nextInt(20) - 2, z + rand.nextInt(20) - 2), i));
+        }
+        areas.add(entry(box(Integer.MIN_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 0), -1));
+        CubeAreaIndex<Integer> index = new CubeAreaIndex<>(areas);
+
+        for (int x = -40; x <= 40; x++) {
+            for (int y = -40; y <= 40; y++) {
+                for (int z = -40; z <= 40; z++) {
+                    Integer expected = null;
+                    for (Map.Entry<IntAABB, Integer> area : areas) {
+                        if (area.getKey().contains(x, y, z)) {
+                            expected = area.getValue();
+                            break;
+                        }
+                    }
+                    assertEquals(expected, index.get(x, y, z));
+                }
+            }
+        }
+        assertEquals(Integer.valueOf(-1), index.get(0, Integer.MAX_VALUE, 0));
+        assertEquals(Integer.valueOf(-1), index.get(0, Integer.MIN_VALUE, 0));
+    }
+
+    private static IntAABB box(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        IntAABB box = new IntAABB();
+        box.minX = minX;
+        box.minY = minY;
+        box.minZ = minZ;
+        box.maxX = maxX;
+        box.maxY = maxY;
+        box.maxZ = maxZ;
+        return box;
+    }
+
+    private static Map.Entry<IntAABB, Integer> entry(IntAABB box, int value) {
+        return new AbstractMap.SimpleImmutableEntry<>(box, value);
+    }
+}
@@ -26,6 +26,7 @@ package io.github.opencubicchunks.cubicchunks.cubicgen;
 import static org.junit.Assert.assertEquals;
 
 import com.flowpowered.noise.Noise;
+import io.github.opencubicchunks.cubicchunks.api.util.MathUtil;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
@@ -39,6 +40,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -90,4 +92,60 @@ public class TestCustomGeneratorSettingsUserFunction {
             assertEquals(Math.abs(yTest), func.getValue(yTest), 0.00001);
         }
     }
+
+    @Test public void testSameAsLinearScan() {
+        Random rand = new Random(42);
+        for (int test = 0; test < 1000; test++) {
+            int count = rand.nextInt(8);
+            CustomGeneratorSettings.UserFunction.Entry[] entries = new CustomGeneratorSettings.UserFunction.Entry[count];
+            for (int i = 0; i < count; i++) {
+                double y = rand.nextBoolean() ? rand.nextInt(20) - 10 : (rand.nextDouble() - 0.5) * 300;
+                entries[i] = new CustomGeneratorSettings.UserFunction.Entry(y, rand.nextDouble());
+            }
+            // entries loaded from presets don't have to be sorted
+            if (rand.nextBoolean()) {
+                Arrays.sort(entries, Comparator.comparingDouble(e -> e.y));
+            }
+            CustomGeneratorSettings.UserFunction func = new CustomGeneratorSettings.UserFunction(entries);
+
+            for (int i = 0; i < 200; i++) {
+                double y = rand.nextBoolean() ? rand.nextInt(400) - 200 : (rand.nextDouble() - 0.5) * 400;
+                assertEquals(linearScanValue(entries, y), func.getValue(y), 0);
+            }
+        }
+    }
+
+    @Test public void testReplacedValues() {
+        CustomGeneratorSettings.UserFunction func = CustomGeneratorSettings.UserFunction.builder()
+                .point(-10, 0).point(0, 5).point(10, 0).build();
+        assertEquals(5, func.getValue(0), 0);
+        // entries can't be modified, editing a function replaces the array
+        func.values = new CustomGeneratorSettings.UserFunction.Entry[]{
+                new CustomGeneratorSettings.UserFunction.Entry(-10, 0),
+                new CustomGeneratorSettings.UserFunction.Entry(0, 7),
+                new CustomGeneratorSettings.UserFunction.Entry(10, 0)
+        };
+        for (int y = -20; y <= 20; y++) {
+            assertEquals(linearScanValue(func.values, y), func.getValue(y), 0);
+        }
+    }
+
+    private static double linearScanValue(CustomGeneratorSettings.UserFunction.Entry[] values, double y) {
+        if (values.length == 0) {
+            return 0;
+        }
+        if (values.length == 1) {
+            return values[0].v;
+        }
+        CustomGeneratorSettings.UserFunction.Entry e1 = values[0];
+        CustomGeneratorSettings.UserFunction.Entry e2 = values[1];
+        for (int i = 2; i < values.length; i++) {
+            if (values[i - 1].y < y) {
+                e1 = e2;
+                e2 = values[i];
+            }
+        }
+        double yFract = MathUtil.unlerp(y, e1.y, e2.y);
+        return MathUtil.lerp(yFract, e1.v, e2.v);
+    }
 }
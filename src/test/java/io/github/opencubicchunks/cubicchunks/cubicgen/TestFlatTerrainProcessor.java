@@ -28,10 +28,13 @@ import static org.mockito.Mockito.when;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
 import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.cubicgen.preset.wrapper.BlockStateDesc;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.CubePrimerAssert;
 import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
 import net.minecraft.world.World;
 import org.junit.Before;
@@ -48,6 +51,9 @@ import org.mockito.Mockito;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
 
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
@@ -107,4 +113,91 @@ public class TestFlatTerrainProcessor {
             assertEquals(CubePrimer.DEFAULT_STATE, primer.getBlockState(8, 11, 8));
         }
     }
+
+    @Test
+    public void testDefaultLayers() {
+        World world = Mockito.mock(World.class, Mockito.withSettings().extraInterfaces(ICubicWorld.class));
+        WorldInfo worldInfo = Mockito.mock(WorldInfo.class);
+        when(world.getWorldInfo()).thenReturn(worldInfo);
+        when(worldInfo.getGeneratorOptions()).thenReturn(FlatGeneratorSettings.defaults().toJson());
+        FlatTerrainProcessor ftp = new FlatTerrainProcessor(world);
+
+        CubePrimer surface = ftp.generateCube(0, -1, 0);
+        for (int y = 0; y < 16; y++) {
+            IBlockState expected = y == 15 ? Blocks.GRASS.getDefaultState() :
+                    y >= 8 ? Blocks.DIRT.getDefaultState() : Blocks.STONE.getDefaultState();
+            assertEquals(expected, surface.getBlockState(3, y, 12));
+        }
+        assertEquals(Blocks.STONE.getDefaultState(), ftp.generateCube(0, -1000, 0).getBlockState(0, 0, 0));
+        assertEquals(Blocks.STONE.getDefaultState(), ftp.generateCube(0, -1000, 0).getBlockState(15, 15, 15));
+        assertEquals(CubePrimer.DEFAULT_STATE, ftp.generateCube(0, 0, 0).getBlockState(0, 0, 0));
+        assertEquals(CubePrimer.DEFAULT_STATE, ftp.generateCube(0, 1000, 0).getBlockState(15, 15, 15));
+    }
+
+    @Test
+    public void testSameAsLayerLookup() {
+        IBlockState[] states = {Blocks.STONE.getDefaultState(), Blocks.DIRT.getDefaultState(), Blocks.GRASS.getDefaultState(),
+                Blocks.SANDSTONE.getDefaultState(), nw};
+        World world = Mockito.mock(World.class, Mockito.withSettings().extraInterfaces(ICubicWorld.class));
+        WorldInfo worldInfo = Mockito.mock(WorldInfo.class);
+        when(world.getWorldInfo()).thenReturn(worldInfo);
+        Random rand = new Random(42);
+        for (int test = 0; test < 200; test++) {
+            FlatGeneratorSettings fgs = new FlatGeneratorSettings();
+            fgs.layers.clear();
+            int layerCount = rand.nextInt(12);
+            int y = rand.nextInt(400) - 200;
+            for (int i = 0; i < layerCount; i++) {
+                // mostly stacked layers, sometimes with gaps, overlaps or inside a single cube
+                y += rand.nextInt(4) == 0 ? rand.nextInt(64) - 16 : 0;
+                int height = rand.nextBoolean() ? 1 + rand.nextInt(8) : 1 + rand.nextInt(80);
+                fgs.layers.put(y, new FlatLayer(y, y + height, new BlockStateDesc(states[rand.nextInt(states.length)])));
+                y += height;
+            }
+            when(worldInfo.getGeneratorOptions()).thenReturn(fgs.toJson());
+            FlatTerrainProcessor ftp = new FlatTerrainProcessor(world);
+            FlatGeneratorSettings loaded = FlatGeneratorSettings.fromJson(fgs.toJson());
+
+            for (int cubeY = -24; cubeY <= 24; cubeY++) {
+                CubePos pos = new CubePos(0, cubeY, 0);
+                CubePrimerAssert.assertSameBlocks(pos, generateByLayerLookup(loaded, cubeY), ftp.generateCube(0, cubeY, 0));
+            }
+            for (int cubeY : new int[]{-100000, 100000}) {
+                CubePos pos = new CubePos(0, cubeY, 0);
+                CubePrimerAssert.assertSameBlocks(pos, generateByLayerLookup(loaded, cubeY), ftp.generateCube(0, cubeY, 0));
+            }
+        }
+    }
+
+    /**
+     * Looks up the layers in each cube and places their blocks, the way cubes were generated before templates
+     */
+    private static CubePrimer generateByLayerLookup(FlatGeneratorSettings conf, int cubeY) {
+        CubePrimer primer = new CubePrimer();
+        int floorY = Coords.cubeToMinBlock(cubeY);
+        int topY = Coords.cubeToMaxBlock(cubeY);
+        int floorKeyI = floorY;
+        int topKeyI = topY;
+        Integer floorKey = conf.layers.floorKey(floorY);
+        if (floorKey != null)
+            floorKeyI = floorKey;
+        Integer ceilingKey = conf.layers.ceilingKey(topY);
+        if (ceilingKey != null)
+            topKeyI = ceilingKey;
+        NavigableMap<Integer, FlatLayer> cubeLayerSubMap = conf.layers.subMap(floorKeyI, true, topKeyI, true);
+        for (Map.Entry<Integer, FlatLayer> entry : cubeLayerSubMap.entrySet()) {
+            FlatLayer layer = entry.getValue();
+            int fromY = layer.fromY - floorY;
+            int toY = layer.toY - floorY;
+            IBlockState iBlockState = layer.blockState.getOrDefault(Blocks.STONE.getDefaultState());
+            int maxY = Math.min(toY, ICube.SIZE);
+            for (int y = Math.max(fromY, 0); y < maxY; y++)
+                for (int x = 0; x < ICube.SIZE; x++) {
+                    for (int z = 0; z < ICube.SIZE; z++) {
+                        primer.setBlockState(x, y, z, iBlockState);
+                    }
+                }
+        }
+        return primer;
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.pregen.ParallelPregenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.CubePrimerAssert;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TestParallelPregenerator {
+
+    @Before
+    public void setUp() {
+        MinecraftEnvironment.init();
+    }
+
+    @Test
+    public void testGeneratesEveryCubeOnce() throws Exception {
+        Map<CubePos, Integer> generated = new ConcurrentHashMap<>();
+        ParallelPregenerator pregen = new ParallelPregenerator((x, y, z) -> new CubePrimer(),
+                (x, y, z, primer) -> generated.merge(new CubePos(x, y, z), 1, Integer::sum),
+                -5, -2, -3, 6, 3, 4, 4, 0, null);
+        pregen.start().get();
+
+        assertEquals(12 * 6 * 8, generated.size());
+        assertTrue(generated.values().stream().allMatch(count -> count == 1));
+        assertEquals(12 * 6 * 8, pregen.getProgress().getGenerated());
+        assertEquals(12 * 6 * 8, pregen.getProgress().getTotal());
+    }
+
+    @Test
+    public void testStackedSourceGetsEveryCubeOnce() throws Exception {
+        Map<CubePos, CubePrimer> generated = new ConcurrentHashMap<>();
+        Map<CubePos, CubePrimer> sunk = new ConcurrentHashMap<>();
+        ParallelPregenerator.CubeSource source = new ParallelPregenerator.CubeSource() {
+            @Override public CubePrimer generate(int cubeX, int cubeY, int cubeZ) {
+                throw new AssertionError("Single cube generated at " + cubeX + ", " + cubeY + ", " + cubeZ);
+            }
+
+            @Override public void generateStack(int cubeX, int minCubeY, int cubeZ, CubePrimer[] primers) {
+                for (int i = 0; i < primers.length; i++) {
+                    primers[i] = new CubePrimer();
+                    assertEquals(null, generated.put(new CubePos(cubeX, minCubeY + i, cubeZ), primers[i]));
+                }
+            }
+        };
+        ParallelPregenerator pregen = new ParallelPregenerator(source,
+                (x, y, z, primer) -> assertEquals(null, sunk.put(new CubePos(x, y, z), primer)),
+                0, -11, 0, 2, 9, 1, 2, 0, null);
+        pregen.start().get();
+
+        assertEquals(3 * 21 * 2, generated.size());
+        assertEquals(generated, sunk);
+        assertEquals(3 * 21 * 2, pregen.getProgress().getGenerated());
+    }
+
+    // all threads share one generator, like the server and the generation benchmark do
+    @Test
+    public void testCustomTerrainGeneratorSameAsSingleThreaded() throws Exception {
+        long seed = 42;
+        boolean concurrent = CustomCubicConfig.concurrentGeneration;
+        CustomCubicConfig.concurrentGeneration = true;
+        try {
+            CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), seed);
+            Map<CubePos, CubePrimer> generated = new ConcurrentHashMap<>();
+            ParallelPregenerator pregen = new ParallelPregenerator(ParallelPregenerator.CubeSource.of(generator),
+                    (x, y, z, primer) -> generated.put(new CubePos(x, y, z), primer),
+                    -3, -2, -3, 3, 9, 3, 4, 0, null);
+            pregen.start().get();
+            assertEquals(7 * 12 * 7, generated.size());
+
+            CustomCubicConfig.concurrentGeneration = false;
+            CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), seed);
+            for (Map.Entry<CubePos, CubePrimer> entry : generated.entrySet()) {
+                CubePos pos = entry.getKey();
+                CubePrimerAssert.assertSameBlocks(pos, reference.generateCube(pos.getX(), pos.getY(), pos.getZ()), entry.getValue());
+            }
+        } finally {
+            CustomCubicConfig.concurrentGeneration = concurrent;
+        }
+    }
+}
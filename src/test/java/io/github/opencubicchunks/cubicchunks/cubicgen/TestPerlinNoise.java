@@ -0,0 +1,120 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import static org.junit.Assert.assertEquals;
+
+import com.flowpowered.noise.module.Module;
+import com.flowpowered.noise.module.modifier.ScaleBias;
+import com.flowpowered.noise.module.modifier.ScalePoint;
+import com.flowpowered.noise.module.source.Perlin;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.IBuilder;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder.NoiseSource;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestPerlinNoise {
+
+    @Test public void testSameAsFlowNoiseNormalized() {
+        Random rand = new Random(42);
+        for (int octaves = 1; octaves <= 16; octaves++) {
+            long seed = rand.nextLong();
+            double fx = rand.nextDouble() * 0.1, fy = rand.nextDouble() * 0.1, fz = rand.nextDouble() * 0.1;
+            IBuilder noise = NoiseSource.perlin().seed(seed).normalizeTo(-1, 1).frequency(fx, fy, fz).octaves(octaves).create();
+            Module reference = flowNoise(seed, octaves, fx, fy, fz, true, -1, 1);
+            assertSameValues(reference, noise, rand);
+        }
+    }
+
+    @Test public void testSameAsFlowNoiseNotNormalized() {
+        Random rand = new Random(123);
+        for (int octaves = 1; octaves <= 16; octaves++) {
+            long seed = rand.nextLong();
+            double f = rand.nextDouble() * 0.1;
+            IBuilder noise = NoiseSource.perlin().seed(seed).frequency(f).octaves(octaves).create();
+            Module reference = flowNoise(seed, octaves, f, f, f, false, 0, 0);
+            assertSameValues(reference, noise, rand);
+        }
+    }
+
+    @Test public void testFillSameAsGet() {
+        IBuilder noise = NoiseSource.perlin().seed(1234).normalizeTo(-1, 1).frequency(0.01, 0.02, 0.03).octaves(8).create();
+        int sizeX = 5, sizeY = 3, sizeZ = 4;
+        double[] values = new double[sizeX * sizeY * sizeZ];
+        noise.fill(values, -8, -4, 12, sizeX, sizeY, sizeZ, 4, 8, 4);
+        int i = 0;
+        for (int iy = 0; iy < sizeY; iy++) {
+            for (int iz = 0; iz < sizeZ; iz++) {
+                for (int ix = 0; ix < sizeX; ix++) {
+                    assertEquals(noise.get(-8 + ix * 4, -4 + iy * 8, 12 + iz * 4), values[i++], 0);
+                }
+            }
+        }
+    }
+
+    private static void assertSameValues(Module reference, IBuilder noise, Random rand) {
+        for (int i = 0; i < 1000; i++) {
+            int x = rand.nextInt(20000) - 10000;
+            int y = rand.nextInt(512) - 256;
+            int z = rand.nextInt(20000) - 10000;
+            assertEquals(reference.getValue(x, y, z), noise.get(x, y, z), 0);
+        }
+        assertEquals(reference.getValue(0, 0, 0), noise.get(0, 0, 0), 0);
+    }
+
+    // the way NoiseSource.PerlinBuilder used to create noise
+    private static Module flowNoise(long seed, int octaves, double fx, double fy, double fz, boolean normalized, double min, double max) {
+        Module mod;
+        Perlin perlin = new Perlin();
+        perlin.setSeed((int) ((seed & 0xFFFFFFFF) ^ (seed >>> 32)));
+        perlin.setOctaveCount(octaves);
+        mod = perlin;
+        if (normalized) {
+            ScaleBias scaleBias = new ScaleBias();
+            scaleBias.setScale(2 / perlin.getMaxValue());
+            scaleBias.setBias(-1);
+            scaleBias.setSourceModule(0, mod);
+            mod = scaleBias;
+
+            scaleBias = new ScaleBias();
+            scaleBias.setScale((max - min) / 2);
+            scaleBias.setBias((max + min) / 2);
+            scaleBias.setSourceModule(0, mod);
+            mod = scaleBias;
+        } else {
+            ScaleBias scaleBias = new ScaleBias();
+            scaleBias.setScale(2);
+            scaleBias.setBias(-perlin.getMaxValue());
+            scaleBias.setSourceModule(0, mod);
+            mod = scaleBias;
+        }
+        ScalePoint scaled = new ScalePoint();
+        scaled.setXScale(fx);
+        scaled.setYScale(fy);
+        scaled.setZScale(fz);
+        scaled.setSourceModule(0, mod);
+        return scaled;
+    }
+}
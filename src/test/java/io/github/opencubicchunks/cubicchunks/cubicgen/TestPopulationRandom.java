@@ -0,0 +1,106 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TestPopulationRandom {
+
+    @Test public void testSameCubeSameStream() {
+        Random rand = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            long seed = rand.nextLong();
+            int x = rand.nextInt(), y = rand.nextInt(), z = rand.nextInt();
+            assertSameValues(PopulationRandom.forCube(seed, x, y, z), PopulationRandom.forCube(seed, x, y, z));
+            assertSameValues(PopulationRandom.forCube(seed, x, y, z).fork(7), PopulationRandom.forCube(seed, x, y, z).fork(7));
+        }
+    }
+
+    @Test public void testDifferentCubesDifferentStreams() {
+        assertNotEquals(PopulationRandom.forCube(1, 0, 0, 0).nextLong(), PopulationRandom.forCube(1, 0, 1, 0).nextLong());
+        assertNotEquals(PopulationRandom.forCube(1, 0, 0, 0).nextLong(), PopulationRandom.forCube(2, 0, 0, 0).nextLong());
+        PopulationRandom cube = PopulationRandom.forCube(1, 0, 0, 0);
+        assertNotEquals(cube.fork(1).nextLong(), cube.fork(2).nextLong());
+    }
+
+    @Test public void testForkIndependentOfDrawnValues() {
+        PopulationRandom cube = PopulationRandom.forCube(42, 1, 2, 3);
+        PopulationRandom before = cube.fork(5);
+        for (int i = 0; i < 100; i++) {
+            cube.nextInt();
+        }
+        assertSameValues(before, cube.fork(5));
+    }
+
+    @Test public void testSetSeedRestartsStream() {
+        PopulationRandom cube = PopulationRandom.forCube(42, 1, 2, 3);
+        long first = cube.nextLong();
+        cube.nextLong();
+        cube.setSeed(RngHash.xxHash64(42, 1, 2, 3, 0));
+        assertEquals(first, cube.nextLong());
+    }
+
+    @Test public void testOtherRandomNotForked() {
+        Random random = new Random(42);
+        assertSame(random, PopulationRandom.fork(random, "stage"));
+    }
+
+    @Test public void testUnrelatedStageKeepsStreams() {
+        List<String> stages = Arrays.asList("ores", "trees", "ore", "ore", "flowers");
+        List<String> withUnrelated = Arrays.asList("lakes", "ores", "trees", "ore", "other", "ore", "flowers");
+        // positions of the stages above in the longer list
+        int[] positions = {1, 2, 3, 5, 6};
+        int[] numbers = stageNumbers(stages);
+        int[] numbersWithUnrelated = stageNumbers(withUnrelated);
+        // stages with the same name get different streams
+        assertNotEquals(numbers[2], numbers[3]);
+
+        PopulationRandom cube = PopulationRandom.forCube(42, 1, 2, 3);
+        for (int i = 0; i < stages.size(); i++) {
+            assertEquals(stages.get(i), numbers[i], numbersWithUnrelated[positions[i]]);
+            assertSameValues(cube.fork(numbers[i]), PopulationRandom.forCube(42, 1, 2, 3).fork(numbersWithUnrelated[positions[i]]));
+        }
+    }
+
+    private static int[] stageNumbers(List<String> names) {
+        PopulationRandom.StageNames stageNames = new PopulationRandom.StageNames();
+        return names.stream().mapToInt(stageNames::stage).toArray();
+    }
+
+    private static void assertSameValues(Random expected, Random actual) {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected.nextLong(), actual.nextLong());
+            assertEquals(expected.nextInt(1000), actual.nextInt(1000));
+            assertEquals(expected.nextDouble(), actual.nextDouble(), 0);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiomeBlockReplacer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChain;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChainCompiler;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerColumn;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.world.biome.Biome;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TestReplacerChainCompiler {
+
+    private static final IBlockState[] STATES = new IBlockState[64];
+
+    static {
+        for (int i = 0; i < STATES.length; i++) {
+            STATES[i] = mock(IBlockState.class);
+        }
+    }
+
+    private static int indexOf(IBlockState state) {
+        return Arrays.asList(STATES).indexOf(state);
+    }
+
+    private static IBiomeBlockReplacer[] randomReplacers(Random rand) {
+        IBiomeBlockReplacer[] replacers = new IBiomeBlockReplacer[70];
+        for (int i = 0; i < replacers.length; i++) {
+            int minY = rand.nextInt(64) - 32;
+            int maxY = minY + rand.nextInt(64);
+            if (rand.nextInt(4) == 0) {
+                minY = Integer.MIN_VALUE;
+                maxY = Integer.MAX_VALUE;
+            }
+            switch (rand.nextInt(4)) {
+                case 0:
+                    replacers[i] = new PublicReplacer(minY, maxY, i);
+                    break;
+                case 1:
+                    replacers[i] = new PrivateReplacer(minY, maxY, i);
+                    break;
+                case 2:
+                    replacers[i] = new ColumnReplacer(minY, maxY, i);
+                    break;
+                default:
+                    replacers[i] = new OwnRangeCheckReplacer(minY, maxY, i);
+            }
+        }
+        return replacers;
+    }
+
+    private static int[] randomActive(Random rand, int count) {
+        List<Integer> activeList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (rand.nextInt(5) != 0) {
+                activeList.add(i);
+            }
+        }
+        return activeList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test public void testBiomeChainsSameAsDirectLookup() {
+        Random rand = new Random(42);
+        IBiomeBlockReplacer[] replacers = randomReplacers(rand);
+        ReplacerChainCompiler compiler = new ReplacerChainCompiler(replacers, true);
+        long[][] biomeFlags = new long[8][];
+        ReplacerChainCompiler.BiomeChains[] biomes = new ReplacerChainCompiler.BiomeChains[biomeFlags.length];
+        for (int i = 0; i < biomes.length; i++) {
+            biomeFlags[i] = new long[]{rand.nextLong(), rand.nextLong() & 63};
+            biomes[i] = compiler.forBiome(biomeFlags[i]);
+        }
+        int[][] actives = new int[4][];
+        for (int i = 0; i < actives.length; i++) {
+            actives[i] = randomActive(rand, replacers.length);
+        }
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            int biome = rand.nextInt(biomes.length);
+            int[] active = actives[rand.nextInt(actives.length)];
+            int minY = (rand.nextInt(8) - 4) * 16;
+            ReplacerChainCompiler.Selection selection = compiler.select(active, minY, minY + 15);
+            ReplacerChain chain = biomes[biome].getChain(selection);
+            assertSame(compiler.getChain(active, biomeFlags[biome], minY, minY + 15), chain);
+            assertSame(chain, biomes[biome].getChain(compiler.select(active, minY, minY + 15)));
+        }
+    }
+
+    @Test public void testCompiledSameAsInterpreted() {
+        Random rand = new Random(42);
+        IBiomeBlockReplacer[] replacers = randomReplacers(rand);
+        ReplacerChainCompiler compiler = new ReplacerChainCompiler(replacers, true);
+        for (int iteration = 0; iteration < 100; iteration++) {
+            long[] flags = {rand.nextLong(), rand.nextLong() & 63};
+            int[] active = randomActive(rand, replacers.length);
+            int minY = (rand.nextInt(8) - 4) * 16;
+            int maxY = minY + 15;
+
+            ReplacerChain chain = compiler.getChain(active, flags, minY, maxY);
+            assertTrue(chain.getClass().getName().startsWith(ReplacerChain.class.getName() + "$Generated"));
+            for (int n = 0; n < 100; n++) {
+                int x = rand.nextInt(100), y = minY + rand.nextInt(16), z = rand.nextInt(100);
+                double dx = rand.nextDouble(), dy = rand.nextDouble(), dz = rand.nextDouble(), density = rand.nextDouble() * 8;
+                IBlockState expected = STATES[0];
+                for (int i : active) {
+                    if ((flags[i >> 6] & (1L << (i & 63))) != 0) {
+                        expected = replacers[i].getReplacedBlock(expected, null, x, y, z, dx, dy, dz, density);
+                    }
+                }
+                assertSame(expected, chain.getReplacedBlock(STATES[0], null, x, y, z, dx, dy, dz, density));
+            }
+
+            ReplacerColumn column = new ReplacerColumn();
+            column.x = rand.nextInt(100);
+            column.z = rand.nextInt(100);
+            column.minY = minY;
+            for (int i = 0; i < ReplacerColumn.SIZE; i++) {
+                column.dx[i] = rand.nextDouble();
+                column.dy[i] = rand.nextDouble();
+                column.dz[i] = rand.nextDouble();
+                column.density[i] = rand.nextDouble() * 8;
+                column.blocks[i] = STATES[0];
+            }
+            chain.replaceColumn(column);
+            for (int i = 0; i < ReplacerColumn.SIZE; i++) {
+                assertSame(chain.getReplacedBlock(STATES[0], null, column.x, minY + i, column.z,
+                        column.dx[i], column.dy[i], column.dz[i], column.density[i]), column.blocks[i]);
+            }
+        }
+    }
+
+    @Test public void testColumnReplacedInGeneratedCode() {
+        IBiomeBlockReplacer[] replacers = {
+                new CallerCheckingReplacer(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                new CallerCheckingReplacer(4, 10)
+        };
+        ReplacerChainCompiler compiler = new ReplacerChainCompiler(replacers, true);
+        ReplacerChain chain = compiler.getChain(new int[]{0, 1}, new long[]{3}, 0, 15);
+
+        ReplacerColumn column = new ReplacerColumn();
+        Arrays.fill(column.blocks, STATES[0]);
+        chain.replaceColumn(column);
+        for (int i = 0; i < ReplacerColumn.SIZE; i++) {
+            assertSame(STATES[i >= 4 && i <= 10 ? 2 : 1], column.blocks[i]);
+        }
+    }
+
+    public static class PublicReplacer extends IBiomeBlockReplacer {
+
+        final int k;
+
+        public PublicReplacer(int minY, int maxY, int k) {
+            super(minY, maxY);
+            this.k = k;
+        }
+
+        @Override public IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome,
+                int x, int y, int z, double dx, double dy, double dz, double density) {
+            if (density <= k * 0.1) {
+                return previousBlock;
+            }
+            return STATES[(indexOf(previousBlock) * 7 + k + (int) (dx * 3) + x + z) & 63];
+        }
+    }
+
+    static class PrivateReplacer extends PublicReplacer {
+
+        PrivateReplacer(int minY, int maxY, int k) {
+            super(minY, maxY, k);
+        }
+
+        @Override public IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome,
+                int x, int y, int z, double dx, double dy, double dz, double density) {
+            return STATES[(indexOf(previousBlock) + y + k) & 63];
+        }
+    }
+
+    public static class ColumnReplacer extends PublicReplacer {
+
+        public ColumnReplacer(int minY, int maxY, int k) {
+            super(minY, maxY, k);
+        }
+
+        @Override public void replaceColumn(ReplacerColumn column) {
+            for (int i = column.startIndex(minY), end = column.endIndex(maxY); i < end; i++) {
+                column.blocks[i] = getReplacedBlockImpl(column.blocks[i], column.biome, column.x, column.minY + i, column.z,
+                        column.dx[i], column.dy[i], column.dz[i], column.density[i]);
+            }
+        }
+    }
+
+    // fails unless called directly from a generated chain, not through IBiomeBlockReplacer.replaceColumn
+    public static class CallerCheckingReplacer extends IBiomeBlockReplacer {
+
+        public CallerCheckingReplacer(int minY, int maxY) {
+            super(minY, maxY);
+        }
+
+        @Override public IBlockState getReplacedBlockImpl(IBlockState previousBlock, Biome biome,
+                int x, int y, int z, double dx, double dy, double dz, double density) {
+            String caller = new Throwable().getStackTrace()[1].getClassName();
+            assertTrue(caller, caller.startsWith(ReplacerChain.class.getName() + "$Generated"));
+            return STATES[indexOf(previousBlock) + 1];
+        }
+    }
+
+    public static class OwnRangeCheckReplacer extends PublicReplacer {
+
+        public OwnRangeCheckReplacer(int minY, int maxY, int k) {
+            super(minY, maxY, k);
+        }
+
+        @Override public IBlockState getReplacedBlock(IBlockState previousBlock, Biome biome,
+                int x, int y, int z, double dx, double dy, double dz, double density) {
+            return Math.floorMod(y, 3) == 0 ? STATES[indexOf(previousBlock) ^ (k & 63)] : previousBlock;
+        }
+    }
+}
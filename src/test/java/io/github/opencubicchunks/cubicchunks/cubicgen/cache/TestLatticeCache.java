@@ -0,0 +1,97 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestLatticeCache {
+
+    @Test public void testPartiallyKnownBlock() {
+        LatticeCache cache = LatticeCache.create(16, 4, 2, 4);
+        double[] out = new double[1];
+        cache.put(-5, 3, 7, 1.5);
+        assertTrue(cache.get(-5, 3, 7, out, 0));
+        assertEqualsExact(1.5, out[0]);
+        // same block, not known yet
+        assertFalse(cache.get(-6, 3, 7, out, 0));
+        assertFalse(cache.get(-5, 2, 7, out, 0));
+        cache.put(-6, 3, 7, 2.5);
+        assertTrue(cache.get(-6, 3, 7, out, 0));
+        assertEqualsExact(2.5, out[0]);
+        assertTrue(cache.get(-5, 3, 7, out, 0));
+        assertEqualsExact(1.5, out[0]);
+    }
+
+    @Test public void testEviction() {
+        // a single slot, every block evicts the previous one
+        LatticeCache cache = LatticeCache.create(1, 2, 2, 2);
+        double[] out = new double[1];
+        cache.put(0, 0, 0, 1);
+        cache.put(1, 1, 1, 2);
+        cache.put(2, 0, 0, 3);
+        assertFalse(cache.get(0, 0, 0, out, 0));
+        assertFalse(cache.get(1, 1, 1, out, 0));
+        assertTrue(cache.get(2, 0, 0, out, 0));
+        assertEqualsExact(3, out[0]);
+        assertFalse(cache.get(3, 0, 0, out, 0));
+    }
+
+    @Test public void testKnownValuesCorrect() {
+        Random rand = new Random(17);
+        LatticeCache cache = LatticeCache.create(64, 4, 4, 4);
+        double[] out = new double[2];
+        for (int i = 0; i < 100000; i++) {
+            int x = rand.nextInt(64) - 32, y = rand.nextInt(64) - 32, z = rand.nextInt(64) - 32;
+            if (cache.get(x, y, z, out, 1)) {
+                assertEqualsExact(value(x, y, z), out[1]);
+            } else {
+                cache.put(x, y, z, value(x, y, z));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeNotPowerOf2() {
+        LatticeCache.create(100, 2, 2, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlockTooLarge() {
+        LatticeCache.create(16, 4, 8, 4);
+    }
+
+    private static double value(int x, int y, int z) {
+        return x * 31.0 + y * 17.0 - z * 0.5;
+    }
+
+    private void assertEqualsExact(double expected, double value) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(value));
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings.IntAABB;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.ReplacerChain;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.CubePrimerAssert;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.biome.Biome;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestCustomTerrainGenerator {
+
+    // biomes with different surface replacers
+    private static final Biome[] BIOMES = {Biomes.PLAINS, Biomes.OCEAN, Biomes.DESERT, Biomes.MESA, Biomes.MESA_ROCK, Biomes.TAIGA,
+            Biomes.REDWOOD_TAIGA, Biomes.MUTATED_SAVANNA, Biomes.SWAMPLAND, Biomes.EXTREME_HILLS};
+
+    @Before
+    public void setUp() {
+        MinecraftEnvironment.init();
+    }
+
+    @Test
+    public void testStackSameAsSingleCubes() {
+        assertStackSameAsSingleCubes(MinecraftEnvironment.createSettings());
+    }
+
+    // cubes in an area are generated by the area generator, splitting the stack into runs around them
+    @Test
+    public void testStackSplitByAreaSameAsSingleCubes() {
+        CustomGeneratorSettings settings = MinecraftEnvironment.createSettings();
+        CustomGeneratorSettings areaSettings = MinecraftEnvironment.createSettings();
+        // below sea level, so the area is water where the rest is stone
+        areaSettings.heightOffset = -100;
+        settings.cubeAreas.map.add(new AbstractMap.SimpleImmutableEntry<>(box(0, 2, 0, 1, 3, 0), areaSettings));
+
+        assertStackSameAsSingleCubes(settings);
+
+        // and the area is really generated with its own settings
+        CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(settings, 42);
+        CustomTerrainGenerator withoutAreas = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42);
+        CubePrimer[] primers = generator.generateCubeStack(0, -2, 0, new CubePrimer[8]);
+        assertSame(Blocks.WATER, primers[4].getBlockState(8, 8, 8).getBlock());
+        assertNotSame(Blocks.WATER, withoutAreas.generateCube(0, 2, 0).getBlockState(8, 8, 8).getBlock());
+    }
+
+    // all threads generate the same columns in different orders, so they use the generator caches at the same places
+    @Test
+    public void testConcurrentSameAsSingleThreaded() throws Exception {
+        long seed = 42;
+        boolean concurrent = CustomCubicConfig.concurrentGeneration;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CustomCubicConfig.concurrentGeneration = true;
+            CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), seed);
+            assertTrue(generator.isConcurrent());
+
+            List<Future<Map<CubePos, CubePrimer>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                Random rand = new Random(thread);
+                // half of the threads generate whole stacks, the others single cubes
+                boolean stacks = thread % 2 == 0;
+                results.add(pool.submit(() -> {
+                    List<CubePos> columns = new ArrayList<>();
+                    for (int cubeX = -3; cubeX <= 3; cubeX++) {
+                        for (int cubeZ = -3; cubeZ <= 3; cubeZ++) {
+                            columns.add(new CubePos(cubeX, -2, cubeZ));
+                        }
+                    }
+                    Collections.shuffle(columns, rand);
+                    Map<CubePos, CubePrimer> generated = new HashMap<>();
+                    for (CubePos column : columns) {
+                        CubePrimer[] primers = new CubePrimer[8];
+                        if (stacks) {
+                            generator.generateCubeStack(column.getX(), column.getY(), column.getZ(), primers);
+                        } else {
+                            for (int i = 0; i < primers.length; i++) {
+                                primers[i] = generator.generateCube(column.getX(), column.getY() + i, column.getZ());
+                            }
+                        }
+                        for (int i = 0; i < primers.length; i++) {
+                            generated.put(new CubePos(column.getX(), column.getY() + i, column.getZ()), primers[i]);
+                        }
+                    }
+                    return generated;
+                }));
+            }
+
+            CustomCubicConfig.concurrentGeneration = false;
+            CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), seed);
+            Map<CubePos, CubePrimer> expected = new HashMap<>();
+            for (Future<Map<CubePos, CubePrimer>> result : results) {
+                Map<CubePos, CubePrimer> generated = result.get();
+                assertEquals(7 * 7 * 8, generated.size());
+                for (Map.Entry<CubePos, CubePrimer> entry : generated.entrySet()) {
+                    CubePos pos = entry.getKey();
+                    CubePrimer expectedPrimer = expected.computeIfAbsent(pos, p -> reference.generateCube(p.getX(), p.getY(), p.getZ()));
+                    CubePrimerAssert.assertSameBlocks(pos, expectedPrimer, entry.getValue());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            CustomCubicConfig.concurrentGeneration = concurrent;
+        }
+    }
+
+    @Test
+    public void testConcurrentOnlyWithoutGenLayers() {
+        boolean concurrent = CustomCubicConfig.concurrentGeneration;
+        try {
+            CustomCubicConfig.concurrentGeneration = false;
+            assertFalse(MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42).isConcurrent());
+
+            CustomCubicConfig.concurrentGeneration = true;
+            CustomGeneratorSettings settings = MinecraftEnvironment.createSettings();
+            // default settings generate biomes with vanilla GenLayers
+            CustomGeneratorSettings areaSettings = MinecraftEnvironment.createSettings();
+            settings.cubeAreas.map.add(new AbstractMap.SimpleImmutableEntry<>(box(0, 0, 0, 1, 1, 1), areaSettings));
+            assertFalse(MinecraftEnvironment.createTerrainGenerator(settings, 42).isConcurrent());
+
+            areaSettings.biome = Biome.getIdForBiome(Biomes.DESERT);
+            assertTrue(MinecraftEnvironment.createTerrainGenerator(settings, 42).isConcurrent());
+        } finally {
+            CustomCubicConfig.concurrentGeneration = concurrent;
+        }
+    }
+
+    // sky and deep cubes are generated from density bounds alone, cubes near the surface are on the boundary
+    @Test
+    public void testWithoutDensitySameAsWithDensity() {
+        for (Biome biome : BIOMES) {
+            CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+            CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+            reference.generateWithoutDensity = false;
+            assertSameCubes(reference, generator, -24, 24);
+        }
+    }
+
+    @Test
+    public void testSkippingReplacersSameAsAllReplacers() {
+        for (Biome biome : BIOMES) {
+            CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+            CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+            reference.skipNoOpReplacers = false;
+            assertSameCubes(reference, generator, -24, 24);
+        }
+    }
+
+    @Test
+    public void testCompiledReplacersUsedByGenerator() {
+        boolean compileReplacers = CustomCubicConfig.compileReplacers;
+        try {
+            for (Biome biome : BIOMES) {
+                CustomCubicConfig.compileReplacers = false;
+                CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+                CustomCubicConfig.compileReplacers = true;
+                CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42, biome);
+
+                Set<ReplacerChain> chains = new HashSet<>();
+                generator.replacerChainListener = chains::add;
+                assertSameCubes(reference, generator, -8, 8);
+
+                assertFalse(chains.isEmpty());
+                for (ReplacerChain chain : chains) {
+                    assertTrue(chain.getClass().getName(), chain.getClass().getName().startsWith(ReplacerChain.class.getName() + "$Generated"));
+                }
+            }
+        } finally {
+            CustomCubicConfig.compileReplacers = compileReplacers;
+        }
+    }
+
+    private static void assertSameCubes(CustomTerrainGenerator expected, CustomTerrainGenerator actual, int minCubeY, int maxCubeY) {
+        for (int cubeX = -1; cubeX <= 1; cubeX++) {
+            for (int cubeZ = -1; cubeZ <= 1; cubeZ++) {
+                for (int cubeY = minCubeY; cubeY <= maxCubeY; cubeY++) {
+                    CubePrimerAssert.assertSameBlocks(new CubePos(cubeX, cubeY, cubeZ),
+                            expected.generateCube(cubeX, cubeY, cubeZ), actual.generateCube(cubeX, cubeY, cubeZ));
+                }
+            }
+        }
+    }
+
+    private static void assertStackSameAsSingleCubes(CustomGeneratorSettings settings) {
+        long seed = 42;
+        CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(settings, seed);
+        CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(settings, seed);
+        for (int cubeX = -1; cubeX <= 1; cubeX++) {
+            for (int cubeZ = -1; cubeZ <= 1; cubeZ++) {
+                // null entries are allocated, others are generated into
+                CubePrimer[] primers = new CubePrimer[12];
+                CubePrimer given = new CubePrimer();
+                primers[5] = given;
+                generator.generateCubeStack(cubeX, -4, cubeZ, primers);
+                assertSame(given, primers[5]);
+                for (int i = 0; i < primers.length; i++) {
+                    int cubeY = -4 + i;
+                    assertNotNull(primers[i]);
+                    CubePrimerAssert.assertSameBlocks(new CubePos(cubeX, cubeY, cubeZ),
+                            reference.generateCube(cubeX, cubeY, cubeZ), primers[i]);
+                }
+            }
+        }
+    }
+
+    private static IntAABB box(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        IntAABB box = new IntAABB();
+        box.minX = minX;
+        box.minY = minY;
+        box.minZ = minZ;
+        box.maxX = maxX;
+        box.maxY = maxY;
+        box.maxZ = maxZ;
+        return box;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import java.util.Random;
+import java.util.function.DoublePredicate;
+
+/**
+ * Creates random builder trees using all combinators, for comparing different ways of evaluating the same tree.
+ */
+final class RandomBuilders {
+
+    private static final DoublePredicate[] CONDITIONS = {
+            IBuilder.NEGATIVE, IBuilder.POSITIVE, IBuilder.NOT_NEGATIVE, IBuilder.NOT_POSITIVE, x -> x > 0.25
+    };
+
+    private RandomBuilders() {
+    }
+
+    static IBuilder create(Random rand, int depth) {
+        if (depth == 0) {
+            return leaf(rand);
+        }
+        IBuilder source = create(rand, depth - 1);
+        double c = constant(rand);
+        DoublePredicate condition = CONDITIONS[rand.nextInt(CONDITIONS.length)];
+        switch (rand.nextInt(21)) {
+            case 0:
+                return source.add(c);
+            case 1:
+                return source.sub(c);
+            case 2:
+                return source.mul(c);
+            case 3:
+                return source.div(c);
+            case 4:
+                return source.clamp(-Math.abs(c), Math.abs(c));
+            case 5:
+                return source.signum();
+            case 6:
+                return source.apply(v -> v * v - 0.5);
+            case 7:
+                return source.addIf(condition, c);
+            case 8:
+                return source.mulIf(condition, c);
+            case 9:
+                return source.divIf(condition, c);
+            case 10:
+                return source.clampIf(condition, -Math.abs(c), Math.abs(c));
+            case 11:
+                // the common pattern, fused by the compiler
+                return source.mul(c).add(constant(rand));
+            case 12:
+                return source.add(create(rand, depth - 1));
+            case 13:
+                return source.sub(create(rand, depth - 1));
+            case 14:
+                return source.mul(create(rand, depth - 1));
+            case 15:
+                return source.div(create(rand, depth - 1));
+            case 16:
+                return source.addIf(condition, create(rand, depth - 1));
+            case 17:
+                return source.mulIf(condition, create(rand, depth - 1));
+            case 18:
+                // selector is often exactly 0 or 1
+                return source.mul(4).clamp(0, 1).lerp(create(rand, depth - 1), create(rand, depth - 1));
+            case 19:
+                return source.cached(64, (x, y, z) -> x + y * 7 + z * 31);
+            default:
+                return source.subIf(condition, create(rand, depth - 1));
+        }
+    }
+
+    private static IBuilder leaf(Random rand) {
+        double fx = rand.nextDouble() * 0.1, fy = rand.nextDouble() * 0.1, fz = rand.nextDouble() * 0.1;
+        double amplitude = constant(rand);
+        switch (rand.nextInt(4)) {
+            case 0:
+                return (x, y, z) -> Math.sin(x * fx + y * fy) * Math.cos(z * fz) * amplitude;
+            case 1:
+                return (x, y, z) -> y;
+            case 2:
+                return (x, y, z) -> amplitude;
+            default:
+                return (x, y, z) -> (x * fx - z * fz) * amplitude;
+        }
+    }
+
+    private static double constant(Random rand) {
+        switch (rand.nextInt(4)) {
+            case 0:
+                return 0;
+            case 1:
+                return 1;
+            default:
+                return (rand.nextDouble() - 0.5) * 10;
+        }
+    }
+}
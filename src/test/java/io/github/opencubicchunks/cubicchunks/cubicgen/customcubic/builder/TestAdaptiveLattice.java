@@ -0,0 +1,83 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestAdaptiveLattice {
+
+    @Test public void testAdaptiveLatticeSameInEveryFill() {
+        Random rand = new Random(13);
+        int[] evaluated = new int[1];
+        IBuilder source = ((IBuilder) (x, y, z) -> {
+            evaluated[0]++;
+            return Math.sin(x * 0.013 + y * 0.021) * Math.cos(z * 0.017) * 40 - y * 0.5;
+        });
+        double threshold = 4;
+        IBuilder adaptive = source.cachedLattice(1024, 4, 8, 4, 4, 2, 4).adaptiveLattice(2, 2, 2, threshold);
+
+        // a large region, containing every smaller fill below
+        int sizeX = 33, sizeY = 33, sizeZ = 33;
+        int minX = -64, minY = -128, minZ = -64;
+        double[] all = new double[sizeX * sizeY * sizeZ];
+        adaptive.fill(all, minX, minY, minZ, sizeX, sizeY, sizeZ, 4, 8, 4);
+        assertTrue(evaluated[0] < all.length);
+        for (int iy = 0; iy < sizeY; iy++) {
+            for (int iz = 0; iz < sizeZ; iz++) {
+                for (int ix = 0; ix < sizeX; ix++) {
+                    double value = all[(iy * sizeZ + iz) * sizeX + ix];
+                    double expected = source.get(minX + ix * 4, minY + iy * 8, minZ + iz * 4);
+                    // interpolated only far from 0, and coarse lattice points are always computed
+                    if (value != expected) {
+                        assertTrue(Math.abs(value) > threshold);
+                        assertFalse(ix % 2 == 0 && iy % 2 == 0 && iz % 2 == 0);
+                    }
+                }
+            }
+        }
+
+        // fills of a few coarse cells, starting on the coarse lattice
+        for (int n = 0; n < 100; n++) {
+            int cellX = rand.nextInt(15), cellY = rand.nextInt(15), cellZ = rand.nextInt(15);
+            int cellsY = 1 + rand.nextInt(Math.min(4, 16 - cellY));
+            double[] values = new double[5 * (cellsY * 2 + 1) * 5];
+            adaptive.fill(values, minX + cellX * 8, minY + cellY * 16, minZ + cellZ * 8, 5, cellsY * 2 + 1, 5, 4, 8, 4);
+            int i = 0;
+            for (int iy = 0; iy <= cellsY * 2; iy++) {
+                for (int iz = 0; iz < 5; iz++) {
+                    for (int ix = 0; ix < 5; ix++) {
+                        double expected = all[((cellY * 2 + iy) * sizeZ + cellZ * 2 + iz) * sizeX + cellX * 2 + ix];
+                        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(values[i++]));
+                    }
+                }
+            }
+        }
+    }
+}
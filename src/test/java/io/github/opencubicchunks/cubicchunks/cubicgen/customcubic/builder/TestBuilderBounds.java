@@ -0,0 +1,75 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestBuilderBounds {
+
+    @Test public void testUnknownLeafUnbounded() {
+        IBuilder builder = ((IBuilder) (x, y, z) -> x).add(1).mul(2);
+        assertFalse(builder.getBounds(0, 0, 0, 16, 16, 16).isBounded());
+    }
+
+    @Test public void testWithBounds() {
+        IBuilder blockY = ((IBuilder) (x, y, z) -> y).withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> Interval.of(minY, maxY));
+        Interval bounds = blockY.mul(-2).add(10).getBounds(0, 16, 0, 16, 32, 16);
+        assertTrue(bounds.contains(-54));
+        assertTrue(bounds.contains(-22));
+        assertEquals(-54, bounds.min, 1e-9);
+        assertEquals(-22, bounds.max, 1e-9);
+    }
+
+    @Test public void testTerrainLikeBuilderContainsValues() {
+        Random rand = new Random(42);
+        IBuilder selector = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.01).octaves(8).create()
+                .mul(12).add(0.5).clamp(0, 1);
+        IBuilder low = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.002).octaves(16).create();
+        IBuilder high = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.002).octaves(16).create();
+        IBuilder height2d = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.001, 0, 0.001).octaves(10).create()
+                .mulIf(IBuilder.NEGATIVE, -0.3).mul(3).sub(2).clamp(-2, 1).divIf(IBuilder.POSITIVE, 8)
+                .cached2d(256, (x, z) -> x + z * 16);
+        IBuilder blockY = ((IBuilder) (x, y, z) -> y).withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> Interval.of(minY, maxY));
+        IBuilder terrain = selector.lerp(low, high).add(height2d).mul(64).add(64).sub(blockY);
+
+        for (int i = 0; i < 200; i++) {
+            int minX = (rand.nextInt(2000) - 1000) * 16;
+            int minY = (rand.nextInt(400) - 200) * 16;
+            int minZ = (rand.nextInt(2000) - 1000) * 16;
+            Interval bounds = terrain.getBounds(minX, minY, minZ, minX + 16, minY + 16, minZ + 16);
+            assertTrue(bounds.isBounded());
+            for (int j = 0; j < 50; j++) {
+                int x = minX + rand.nextInt(17), y = minY + rand.nextInt(17), z = minZ + rand.nextInt(17);
+                double value = terrain.get(x, y, z);
+                assertTrue(value + " not in " + bounds, bounds.contains(value));
+            }
+        }
+    }
+}
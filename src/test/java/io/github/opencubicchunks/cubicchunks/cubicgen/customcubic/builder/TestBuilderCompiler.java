@@ -0,0 +1,60 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestBuilderCompiler {
+
+    // compiled builders do the same operations in the same order, so values must be bit-for-bit identical
+    @Test public void testCompiledSameAsInterpreted() {
+        Random rand = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            IBuilder builder = RandomBuilders.create(rand, 1 + rand.nextInt(5));
+            IBuilder compiled = builder.compile();
+            for (int j = 0; j < 200; j++) {
+                int x = rand.nextInt(2000) - 1000, y = rand.nextInt(512) - 256, z = rand.nextInt(2000) - 1000;
+                assertEquals(builder.toString(), Double.doubleToLongBits(builder.get(x, y, z)), Double.doubleToLongBits(compiled.get(x, y, z)));
+            }
+        }
+    }
+
+    @Test public void testSharedNodeCompiledOnce() {
+        int[] evaluated = new int[1];
+        IBuilder shared = ((IBuilder) (x, y, z) -> {
+            evaluated[0]++;
+            return x + y + z;
+        }).cached(16, (x, y, z) -> x + y * 7 + z * 31);
+        IBuilder compiled = shared.mul(2).add(shared.add(1)).compile();
+
+        // both uses of the cached node still share one cache after compiling
+        compiled.get(1, 2, 3);
+        assertEquals(1, evaluated[0]);
+        assertEquals(Double.doubleToLongBits(6 * 2 + 6 + 1), Double.doubleToLongBits(compiled.get(1, 2, 3)));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TestBuilderFill {
+
+    @Test public void testFillSameAsGet() {
+        Random rand = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            IBuilder builder = RandomBuilders.create(rand, 1 + rand.nextInt(5));
+            for (IBuilder tested : new IBuilder[]{builder, builder.compile()}) {
+                int sizeX = 1 + rand.nextInt(6), sizeY = 1 + rand.nextInt(6), sizeZ = 1 + rand.nextInt(6);
+                int stepX = rand.nextInt(9), stepY = rand.nextInt(9), stepZ = rand.nextInt(9);
+                int startX = rand.nextInt(2000) - 1000, startY = rand.nextInt(512) - 256, startZ = rand.nextInt(2000) - 1000;
+                double[] values = new double[sizeX * sizeY * sizeZ];
+                tested.fill(values, startX, startY, startZ, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+                int idx = 0;
+                for (int iy = 0; iy < sizeY; iy++) {
+                    for (int iz = 0; iz < sizeZ; iz++) {
+                        for (int ix = 0; ix < sizeX; ix++) {
+                            double expected = builder.get(startX + ix * stepX, startY + iy * stepY, startZ + iz * stepZ);
+                            assertEquals(builder.toString(), Double.doubleToLongBits(expected), Double.doubleToLongBits(values[idx++]));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // fill skips parts of the tree based on bounds, the result must still be exactly the same as get
+    @Test public void testSkippingFillSameAsGet() {
+        Random rand = new Random(7);
+        IBuilder selector = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.01).octaves(4).create()
+                .mul(12).add(0.5).clamp(0, 1);
+        IBuilder low = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.02).octaves(4).create();
+        IBuilder high = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.02).octaves(4).create();
+        IBuilder volatility = NoiseSource.perlin().seed(rand.nextLong()).normalizeTo(-1, 1).frequency(0.01).octaves(2).create()
+                .clamp(0, 1);
+        IBuilder blockY = ((IBuilder) (x, y, z) -> y).withBounds((minX, minY, minZ, maxX, maxY, maxZ) -> Interval.of(minY, maxY));
+        IBuilder terrain = selector.lerp(low, high).mul(volatility.add(1)).sub(volatility.signum().mul(blockY))
+                .addIf(IBuilder.NEGATIVE, volatility.mul(high.sub(2)));
+
+        for (IBuilder builder : new IBuilder[]{terrain, terrain.compile()}) {
+            for (int n = 0; n < 50; n++) {
+                int startX = rand.nextInt(2000) - 1000, startY = rand.nextInt(200) - 100, startZ = rand.nextInt(2000) - 1000;
+                double[] values = new double[5 * 3 * 5];
+                builder.fill(values, startX, startY, startZ, 5, 3, 5, 4, 8, 4);
+                int i = 0;
+                for (int iy = 0; iy < 3; iy++) {
+                    for (int iz = 0; iz < 5; iz++) {
+                        for (int ix = 0; ix < 5; ix++) {
+                            double expected = terrain.get(startX + ix * 4, startY + iy * 8, startZ + iz * 4);
+                            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(values[i++]));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // forEachScaled gets the lattice with one fill, it must give the same results as computing each point with get
+    @Test public void testForEachScaledSameAsPointByPoint() {
+        Random rand = new Random(9);
+        for (int i = 0; i < 100; i++) {
+            IBuilder builder = RandomBuilders.create(rand, 1 + rand.nextInt(4));
+            IBuilder pointByPoint = builder::get;
+            BlockPos start = new BlockPos(rand.nextInt(100) - 50, rand.nextInt(40) - 20, rand.nextInt(100) - 50);
+            BlockPos end = start.add(1 + rand.nextInt(3), 1 + rand.nextInt(3), 1 + rand.nextInt(3));
+            Vec3i scale = new Vec3i(4, 8, 4);
+            List<double[]> expected = new ArrayList<>();
+            pointByPoint.forEachScaled(start, end, scale, (x, y, z, dx, dy, dz, v) -> expected.add(new double[]{x, y, z, dx, dy, dz, v}));
+            List<double[]> values = new ArrayList<>();
+            builder.forEachScaled(start, end, scale, (x, y, z, dx, dy, dz, v) -> values.add(new double[]{x, y, z, dx, dy, dz, v}));
+            assertEquals(expected.size(), values.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertArrayEquals(expected.get(j), values.get(j), 0);
+            }
+        }
+    }
+
+    @Test public void testForEachScaledGradientSubsets() {
+        IBuilder builder = ((IBuilder) (x, y, z) -> Math.sin(x * 0.013 + y * 0.021) * Math.cos(z * 0.017) * 40 - y * 0.3);
+        BlockPos start = new BlockPos(-3, -2, 5);
+        BlockPos end = start.add(2, 3, 2);
+        Vec3i scale = new Vec3i(4, 8, 4);
+        List<double[]> expected = new ArrayList<>();
+        builder.forEachScaled(start, end, scale, (x, y, z, dx, dy, dz, v) -> expected.add(new double[]{x, y, z, dx, dy, dz, v}));
+
+        for (Gradients gradients : Gradients.values()) {
+            List<double[]> values = new ArrayList<>();
+            builder.forEachScaled(start, end, scale, (x, y, z, dx, dy, dz, v) -> values.add(new double[]{x, y, z, dx, dy, dz, v}), gradients);
+            assertEquals(expected.size(), values.size());
+            for (int i = 0; i < expected.size(); i++) {
+                double[] e = expected.get(i);
+                boolean hasY = gradients != Gradients.NONE, hasXZ = gradients == Gradients.XYZ;
+                assertArrayEquals(new double[]{e[0], e[1], e[2], hasXZ ? e[3] : 0, hasY ? e[4] : 0, hasXZ ? e[5] : 0, e[6]}, values.get(i), 0);
+            }
+        }
+    }
+}
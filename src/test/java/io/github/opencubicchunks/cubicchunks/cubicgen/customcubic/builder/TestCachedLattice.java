@@ -0,0 +1,62 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestCachedLattice {
+
+    @Test public void testCachedLatticeSameAsSource() {
+        Random rand = new Random(11);
+        int[] evaluated = new int[1];
+        IBuilder source = ((IBuilder) (x, y, z) -> {
+            evaluated[0]++;
+            return Math.sin(x * 0.013 + y * 0.021) * Math.cos(z * 0.017);
+        });
+        IBuilder cached = source.cachedLattice(1024, 4, 8, 4, 4, 2, 4);
+
+        for (int n = 0; n < 200; n++) {
+            int startX = (rand.nextInt(20) - 10) * 4, startY = (rand.nextInt(20) - 10) * 8, startZ = (rand.nextInt(20) - 10) * 4;
+            int sizeY = 1 + rand.nextInt(6);
+            double[] expected = new double[5 * sizeY * 5];
+            double[] values = new double[5 * sizeY * 5];
+            source.fill(expected, startX, startY, startZ, 5, sizeY, 5, 4, 8, 4);
+            cached.fill(values, startX, startY, startZ, 5, sizeY, 5, 4, 8, 4);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(values[i]));
+            }
+        }
+
+        // the same region again is entirely in the cache
+        double[] values = new double[5 * 3 * 5];
+        cached.fill(values, 16, 32, -16, 5, 3, 5, 4, 8, 4);
+        evaluated[0] = 0;
+        cached.fill(values, 16, 32, -16, 5, 3, 5, 4, 8, 4);
+        assertEquals(0, evaluated[0]);
+    }
+}
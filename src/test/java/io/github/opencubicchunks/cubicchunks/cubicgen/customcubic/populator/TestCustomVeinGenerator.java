@@ -0,0 +1,198 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.populator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import net.minecraft.block.BlockStone;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class TestCustomVeinGenerator {
+
+    private static IBlockState[] terrainStates;
+    private static IBlockState[] ores;
+
+    @BeforeClass
+    public static void setUp() {
+        MinecraftEnvironment.init();
+        IBlockState stone = Blocks.STONE.getDefaultState();
+        terrainStates = new IBlockState[]{
+                stone, stone, stone, stone,
+                stone.withProperty(BlockStone.VARIANT, BlockStone.EnumType.GRANITE),
+                stone.withProperty(BlockStone.VARIANT, BlockStone.EnumType.DIORITE),
+                // not natural stone
+                stone.withProperty(BlockStone.VARIANT, BlockStone.EnumType.GRANITE_SMOOTH),
+                Blocks.DIRT.getDefaultState(),
+                // different light value, opacity, and a tile entity
+                Blocks.GLOWSTONE.getDefaultState(),
+                Blocks.GLASS.getDefaultState(),
+                Blocks.CHEST.getDefaultState()
+        };
+        ores = new IBlockState[]{
+                Blocks.COAL_ORE.getDefaultState(),
+                Blocks.DIRT.getDefaultState(),
+                // can never be written directly over stone
+                Blocks.LIT_REDSTONE_ORE.getDefaultState(),
+                Blocks.MOB_SPAWNER.getDefaultState()
+        };
+    }
+
+    /**
+     * Generates veins around a populated cube with all cubes of its population area loaded, and with none of them
+     * loaded, so that every block goes through {@link World#setBlockState(BlockPos, IBlockState, int)}.
+     */
+    @Test
+    public void testDirectWritesSameAsWorld() {
+        Random rand = new Random(42);
+        CustomGeneratorSettings.GenerationCondition[] conditions = {
+                null,
+                (r, w, p) -> w.getBlockState(p).getBlock() == Blocks.DIRT || r.nextInt(3) == 0
+        };
+        int directWrites = 0, worldWrites = 0, crossingVeins = 0;
+        for (int i = 0; i < 400; i++) {
+            long terrainSeed = rand.nextLong();
+            long veinSeed = rand.nextLong();
+            IBlockState ore = ores[rand.nextInt(ores.length)];
+            CustomGeneratorSettings.GenerationCondition condition = conditions[rand.nextInt(conditions.length)];
+            CustomVeinGenerator generator = condition == null
+                    ? new CustomVeinGenerator(ore, 4 + rand.nextInt(30))
+                    : new CustomVeinGenerator(ore, 4 + rand.nextInt(30), condition);
+            // features of the cube at 0, 0, 0 are placed with an offset of half a cube
+            BlockPos pos = new BlockPos(8 + rand.nextInt(16), 8 + rand.nextInt(16), 8 + rand.nextInt(16));
+
+            FakeWorld loaded = new FakeWorld(terrainSeed, true);
+            FakeWorld unloaded = new FakeWorld(terrainSeed, false);
+            generator.generate(loaded.world, new Random(veinSeed), pos);
+            generator.generate(unloaded.world, new Random(veinSeed), pos);
+
+            assertEquals(0, unloaded.directWrites);
+            Set<BlockPos> positions = new HashSet<>(loaded.blocks.keySet());
+            positions.addAll(unloaded.blocks.keySet());
+            for (BlockPos p : positions) {
+                assertSame("Block at " + p, unloaded.getBlockState(p), loaded.getBlockState(p));
+            }
+            directWrites += loaded.directWrites;
+            worldWrites += loaded.worldWrites;
+            if (loaded.writtenCubes.size() > 1) {
+                crossingVeins++;
+            }
+        }
+        assertTrue(directWrites > 0);
+        assertTrue(worldWrites > 0);
+        assertTrue(crossingVeins > 0);
+    }
+
+    /**
+     * Blocks of a world, and of cubes 0..1 on each axis when they are loaded
+     */
+    private static final class FakeWorld {
+
+        final World world = mock(World.class, withSettings().extraInterfaces(ICubicWorld.class).defaultAnswer(RETURNS_DEEP_STUBS));
+        final Map<BlockPos, IBlockState> blocks = new HashMap<>();
+        final Set<CubePos> writtenCubes = new HashSet<>();
+        final long seed;
+        int directWrites, worldWrites;
+
+        FakeWorld(long seed, boolean cubesLoaded) {
+            this.seed = seed;
+            when(((ICubicWorld) world).isCubicWorld()).thenReturn(true);
+            when(((ICubicWorld) world).getCubeCache().getLoadedCube(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+                int x = (int) invocation.getArguments()[0];
+                int y = (int) invocation.getArguments()[1];
+                int z = (int) invocation.getArguments()[2];
+                return cubesLoaded && x >= 0 && x <= 1 && y >= 0 && y <= 1 && z >= 0 && z <= 1 ? createCube(new CubePos(x, y, z)) : null;
+            });
+            when(world.getBlockState(any(BlockPos.class))).thenAnswer(invocation -> getBlockState((BlockPos) invocation.getArguments()[0]));
+            when(world.setBlockState(any(BlockPos.class), any(IBlockState.class), anyInt())).thenAnswer(invocation -> {
+                worldWrites++;
+                blocks.put(((BlockPos) invocation.getArguments()[0]).toImmutable(), (IBlockState) invocation.getArguments()[1]);
+                return true;
+            });
+        }
+
+        private ICube createCube(CubePos cubePos) {
+            ICube cube = mock(ICube.class);
+            when(cube.getBlockState(any(BlockPos.class))).thenAnswer(invocation -> {
+                BlockPos pos = (BlockPos) invocation.getArguments()[0];
+                assertEquals(cubePos, cubeOf(pos));
+                return getBlockState(pos);
+            });
+            doAnswer(invocation -> {
+                BlockPos pos = (BlockPos) invocation.getArguments()[0];
+                IBlockState state = (IBlockState) invocation.getArguments()[1];
+                assertEquals(cubePos, cubeOf(pos));
+                IBlockState old = getBlockState(pos);
+                // these are the only cases where placing through the world could differ
+                assertEquals(old.getLightOpacity(), state.getLightOpacity());
+                assertEquals(old.getLightValue(), state.getLightValue());
+                assertFalse(old.getBlock().hasTileEntity(old));
+                assertFalse(state.getBlock().hasTileEntity(state));
+                directWrites++;
+                writtenCubes.add(cubePos);
+                return blocks.put(pos.toImmutable(), state);
+            }).when(cube).setBlockState(any(BlockPos.class), any(IBlockState.class));
+            return cube;
+        }
+
+        private static CubePos cubeOf(BlockPos pos) {
+            return new CubePos(Coords.blockToCube(pos.getX()), Coords.blockToCube(pos.getY()), Coords.blockToCube(pos.getZ()));
+        }
+
+        IBlockState getBlockState(BlockPos pos) {
+            IBlockState state = blocks.get(pos);
+            if (state != null) {
+                return state;
+            }
+            Random rand = new Random(seed ^ pos.toLong() * 0x9E3779B97F4A7C15L);
+            return terrainStates[rand.nextInt(terrainStates.length)];
+        }
+    }
+}
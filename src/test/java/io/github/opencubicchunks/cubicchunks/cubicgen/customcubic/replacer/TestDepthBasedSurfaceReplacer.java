@@ -0,0 +1,51 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.ReplacerAssert;
+import net.minecraft.init.Biomes;
+import net.minecraft.world.biome.Biome;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestDepthBasedSurfaceReplacer {
+
+    @Before
+    public void setUp() {
+        MinecraftEnvironment.init();
+    }
+
+    @Test
+    public void testNoOpWithinBounds() {
+        Random rand = new Random(42);
+        Biome[] biomes = {Biomes.MUTATED_SAVANNA, Biomes.REDWOOD_TAIGA, Biomes.MUTATED_REDWOOD_TAIGA};
+        for (IBiomeBlockReplacer replacer : ReplacerAssert.defaultReplacers(CustomGeneratorSettings.DepthBasedSurfaceReplacerConfig.class, 42)) {
+            ReplacerAssert.assertNoOpWithinBounds(replacer, biomes, -40, 120, rand);
+        }
+    }
+}
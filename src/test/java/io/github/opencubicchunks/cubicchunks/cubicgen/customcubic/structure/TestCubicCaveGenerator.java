@@ -0,0 +1,75 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicConfig;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.CubePrimerAssert;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import net.minecraft.world.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestCubicCaveGenerator {
+
+    @Before
+    public void setUp() {
+        MinecraftEnvironment.init();
+    }
+
+    /**
+     * Generates cubes along random walks, so that cached skeletons are reused by neighbouring cubes, and compares them
+     * with cubes where all caves were walked again.
+     */
+    @Test
+    public void testSkeletonsSameAsWalking() {
+        boolean concurrent = CustomCubicConfig.concurrentGeneration;
+        try {
+            Random rand = new Random(42);
+            for (int i = 0; i < 16; i++) {
+                CustomCubicConfig.concurrentGeneration = rand.nextBoolean();
+                World world = MinecraftEnvironment.createWorld(rand.nextLong());
+                IFlexHandlerStructureGenerator generator = new CubicCaveGenerator();
+                IFlexHandlerStructureGenerator reference = new WalkingCubicCaveGenerator();
+                int x = rand.nextInt(10000) - 5000, y = rand.nextInt(12) - 8, z = rand.nextInt(10000) - 5000;
+                for (int n = 0; n < 128; n++) {
+                    x += rand.nextInt(3) - 1;
+                    y += rand.nextInt(3) - 1;
+                    z += rand.nextInt(3) - 1;
+                    CubePos pos = new CubePos(x, y, z);
+                    CubePrimer expected = UndergroundPrimers.create(rand);
+                    CubePrimer actual = UndergroundPrimers.copy(expected);
+                    reference.generate(world, expected, pos);
+                    generator.generate(world, actual, pos);
+                    CubePrimerAssert.assertSameBlocks(pos, expected, actual);
+                }
+            }
+        } finally {
+            CustomCubicConfig.concurrentGeneration = concurrent;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import io.github.opencubicchunks.cubicchunks.cubicgen.preset.CustomGenSettingsSerialization;
+import io.github.opencubicchunks.cubicchunks.cubicgen.preset.fixer.CustomGeneratorSettingsFixer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.CubePrimerAssert;
+import io.github.opencubicchunks.cubicchunks.cubicgen.testutil.MinecraftEnvironment;
+import net.minecraft.world.World;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestCubicNoiseCaveGenerator {
+
+    @BeforeClass
+    public static void setUp() {
+        MinecraftEnvironment.initWorldGen();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(CustomGeneratorSettings.defaults().noiseCaves);
+    }
+
+    @Test
+    public void testDisabledLeavesTerrainUnchanged() {
+        CustomTerrainGenerator reference = MinecraftEnvironment.createTerrainGenerator(MinecraftEnvironment.createSettings(), 42);
+        CustomTerrainGenerator generator = MinecraftEnvironment.createTerrainGenerator(carveEverything(false), 42);
+        CustomTerrainGenerator enabled = MinecraftEnvironment.createTerrainGenerator(carveEverything(true), 42);
+        boolean carved = false;
+        for (int x = -2; x <= 2; x++) {
+            for (int y = -3; y <= 2; y++) {
+                for (int z = -2; z <= 2; z++) {
+                    CubePos pos = new CubePos(x, y, z);
+                    CubePrimer expected = reference.generateCube(x, y, z);
+                    CubePrimerAssert.assertSameBlocks(pos, expected, generator.generateCube(x, y, z));
+                    carved |= !sameBlocks(expected, enabled.generateCube(x, y, z));
+                }
+            }
+        }
+        assertTrue(carved);
+    }
+
+    @Test
+    public void testSameForSameSeed() {
+        CustomGeneratorSettings settings = MinecraftEnvironment.createSettings();
+        Random rand = new Random(42);
+        boolean carved = false;
+        for (int i = 0; i < 8; i++) {
+            long seed = rand.nextLong();
+            World world = MinecraftEnvironment.createWorld(seed);
+            CubicNoiseCaveGenerator generator = new CubicNoiseCaveGenerator(settings, seed);
+            CubicNoiseCaveGenerator other = new CubicNoiseCaveGenerator(settings, seed);
+            for (int n = 0; n < 32; n++) {
+                CubePos pos = new CubePos(rand.nextInt(1000) - 500, rand.nextInt(64) - 48, rand.nextInt(1000) - 500);
+                CubePrimer original = UndergroundPrimers.create(rand);
+                CubePrimer expected = UndergroundPrimers.copy(original);
+                CubePrimer again = UndergroundPrimers.copy(original);
+                CubePrimer fromOther = UndergroundPrimers.copy(original);
+                generator.generate(world, expected, pos);
+                generator.generate(world, again, pos);
+                other.generate(world, fromOther, pos);
+                CubePrimerAssert.assertSameBlocks(pos, expected, again);
+                CubePrimerAssert.assertSameBlocks(pos, expected, fromOther);
+                carved |= !sameBlocks(original, expected);
+            }
+        }
+        assertTrue(carved);
+    }
+
+    @Test
+    public void testPresetRoundTrip() throws Exception {
+        CustomGeneratorSettings settings = CustomGeneratorSettings.defaults();
+        settings.noiseCaves = true;
+        settings.noiseCaveFrequencyX = 0.011f;
+        settings.noiseCaveFrequencyY = 0.023f;
+        settings.noiseCaveFrequencyZ = 0.017f;
+        settings.noiseCaveOctaves = 5;
+        settings.noiseCaveThreshold = 0.43f;
+        settings.noiseTunnelFrequencyX = 0.031f;
+        settings.noiseTunnelFrequencyY = 0.047f;
+        settings.noiseTunnelFrequencyZ = 0.029f;
+        settings.noiseTunnelOctaves = 3;
+        settings.noiseTunnelWidth = 0.12f;
+
+        String json = settings.toJsonObject().toJson(CustomGenSettingsSerialization.OUT_GRAMMAR);
+        CustomGeneratorSettings loaded = CustomGeneratorSettingsFixer.INSTANCE.fixPreset(json);
+
+        assertTrue(loaded.noiseCaves);
+        assertEquals(settings.noiseCaveFrequencyX, loaded.noiseCaveFrequencyX, 0);
+        assertEquals(settings.noiseCaveFrequencyY, loaded.noiseCaveFrequencyY, 0);
+        assertEquals(settings.noiseCaveFrequencyZ, loaded.noiseCaveFrequencyZ, 0);
+        assertEquals(settings.noiseCaveOctaves, loaded.noiseCaveOctaves);
+        assertEquals(settings.noiseCaveThreshold, loaded.noiseCaveThreshold, 0);
+        assertEquals(settings.noiseTunnelFrequencyX, loaded.noiseTunnelFrequencyX, 0);
+        assertEquals(settings.noiseTunnelFrequencyY, loaded.noiseTunnelFrequencyY, 0);
+        assertEquals(settings.noiseTunnelFrequencyZ, loaded.noiseTunnelFrequencyZ, 0);
+        assertEquals(settings.noiseTunnelOctaves, loaded.noiseTunnelOctaves);
+        assertEquals(settings.noiseTunnelWidth, loaded.noiseTunnelWidth, 0);
+    }
+
+    // with noise caves enabled this carves nearly everything
+    private static CustomGeneratorSettings carveEverything(boolean noiseCaves) {
+        CustomGeneratorSettings settings = MinecraftEnvironment.createSettings();
+        settings.noiseCaves = noiseCaves;
+        settings.noiseCaveThreshold = -1;
+        settings.noiseTunnelWidth = 10;
+        return settings;
+    }
+
+    private static boolean sameBlocks(CubePrimer a, CubePrimer b) {
+        for (int x = 0; x < ICube.SIZE; x++) {
+            for (int y = 0; y < ICube.SIZE; y++) {
+                for (int z = 0; z < ICube.SIZE; z++) {
+                    if (a.getBlockState(x, y, z) != b.getBlockState(x, y, z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+
+import java.util.Random;
+
+final class UndergroundPrimers {
+
+    private UndergroundPrimers() {
+    }
+
+    /**
+     * Mostly stone with some dirt, grass and air. Some cubes also get lava and water, which stop carving near them.
+     */
+    static CubePrimer create(Random rand) {
+        IBlockState[] liquids = {Blocks.LAVA.getDefaultState(), Blocks.FLOWING_LAVA.getDefaultState(),
+                Blocks.WATER.getDefaultState(), Blocks.FLOWING_WATER.getDefaultState()};
+        int liquidChance = rand.nextInt(3) == 0 ? 200 + rand.nextInt(2000) : 0;
+        CubePrimer primer = new CubePrimer();
+        for (int x = 0; x < ICube.SIZE; x++) {
+            for (int y = 0; y < ICube.SIZE; y++) {
+                for (int z = 0; z < ICube.SIZE; z++) {
+                    IBlockState state;
+                    int n = rand.nextInt(100);
+                    if (liquidChance != 0 && rand.nextInt(liquidChance) == 0) {
+                        state = liquids[rand.nextInt(liquids.length)];
+                    } else if (n < 10) {
+                        state = Blocks.DIRT.getDefaultState();
+                    } else if (n < 14) {
+                        state = Blocks.GRASS.getDefaultState();
+                    } else if (n < 18) {
+                        state = Blocks.AIR.getDefaultState();
+                    } else {
+                        state = Blocks.STONE.getDefaultState();
+                    }
+                    primer.setBlockState(x, y, z, state);
+                }
+            }
+        }
+        return primer;
+    }
+
+    static CubePrimer copy(CubePrimer primer) {
+        CubePrimer copy = new CubePrimer();
+        for (int x = 0; x < ICube.SIZE; x++) {
+            for (int y = 0; y < ICube.SIZE; y++) {
+                for (int z = 0; z < ICube.SIZE; z++) {
+                    copy.setBlockState(x, y, z, primer.getBlockState(x, y, z));
+                }
+            }
+        }
+        return copy;
+    }
+}
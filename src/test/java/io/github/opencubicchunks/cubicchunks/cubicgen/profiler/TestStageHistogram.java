@@ -0,0 +1,75 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.profiler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestStageHistogram {
+
+    @Test public void testBuckets() {
+        StageHistogram histogram = new StageHistogram();
+        histogram.record(1000); // 1us -> bucket 0
+        histogram.record(1001); // just over 1us -> bucket 1
+        histogram.record(1_000_000); // 1ms -> bucket 10 (1024us)
+        histogram.record(100_000_000_000L); // 100s -> overflow
+        long[] counts = histogram.getCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[10]);
+        assertEquals(1, counts[StageHistogram.BUCKETS]);
+        assertEquals(4, histogram.getCount());
+        assertEquals(100_000_000_000L, histogram.getMaxNanos());
+    }
+
+    @Test public void testConcurrentRecord() throws InterruptedException {
+        StageHistogram histogram = new StageHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4 * (9999L * 10000 / 2), histogram.getTotalNanos());
+        assertEquals(9999, histogram.getMaxNanos());
+    }
+
+    @Test public void testQuantile() {
+        StageHistogram histogram = new StageHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(500);
+        }
+        histogram.record(3_000_000);
+        assertEquals(StageHistogram.bucketUpperBoundNanos(0), histogram.getQuantileNanos(0.99));
+        assertEquals(StageHistogram.bucketUpperBoundNanos(12), histogram.getQuantileNanos(1.0));
+    }
+}
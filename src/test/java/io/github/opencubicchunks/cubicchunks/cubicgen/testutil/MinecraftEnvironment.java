@@ -23,10 +23,29 @@
  */
 package io.github.opencubicchunks.cubicchunks.cubicgen.testutil;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.cubicgen.CustomCubicMod;
+import io.github.opencubicchunks.cubicchunks.cubicgen.common.biome.CubicBiome;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomTerrainGenerator;
+import net.minecraft.init.Biomes;
 import net.minecraft.init.Bootstrap;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeProviderSingle;
+import net.minecraft.world.storage.WorldInfo;
+import org.apache.logging.log4j.LogManager;
 
 public class MinecraftEnvironment {
     private static boolean isInit = false;
+    private static boolean isWorldGenInit = false;
 
     /**
      * Does whatever is needed to initialize minecraft and mod environment
@@ -38,4 +57,55 @@ public class MinecraftEnvironment {
         isInit = true;
         Bootstrap.register();
     }
+
+    /**
+     * Also registers cubic biomes, needed to create terrain generators
+     */
+    public static void initWorldGen() {
+        init();
+        if (isWorldGenInit) {
+            return;
+        }
+        isWorldGenInit = true;
+        if (CustomCubicMod.LOGGER == null) {
+            CustomCubicMod.LOGGER = LogManager.getLogger(CustomCubicMod.MODID);
+        }
+        CubicBiome.init();
+        CubicBiome.postInit();
+    }
+
+    /**
+     * A mock world that only provides the seed and world info, world info is needed by cube area generators
+     */
+    public static World createWorld(long seed) {
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorld.class));
+        when(world.getSeed()).thenReturn(seed);
+        when(world.getWorldInfo()).thenReturn(new WorldInfo(new WorldSettings(seed, GameType.SURVIVAL, true, false, WorldType.DEFAULT), "test"));
+        return world;
+    }
+
+    /**
+     * Default preset with strongholds disabled, they need real world storage
+     */
+    public static CustomGeneratorSettings createSettings() {
+        CustomGeneratorSettings settings = CustomGeneratorSettings.defaults();
+        settings.strongholds = false;
+        return settings;
+    }
+
+    /**
+     * Terrain generator for a single plains biome. Config options that select generator caches have to be set before
+     * this is called.
+     */
+    public static CustomTerrainGenerator createTerrainGenerator(CustomGeneratorSettings settings, long seed) {
+        return createTerrainGenerator(settings, seed, Biomes.PLAINS);
+    }
+
+    /**
+     * Same as {@link #createTerrainGenerator(CustomGeneratorSettings, long)}, but for the given biome
+     */
+    public static CustomTerrainGenerator createTerrainGenerator(CustomGeneratorSettings settings, long seed, Biome biome) {
+        initWorldGen();
+        return new CustomTerrainGenerator(createWorld(seed), new BiomeProviderSingle(biome), settings, seed);
+    }
 }
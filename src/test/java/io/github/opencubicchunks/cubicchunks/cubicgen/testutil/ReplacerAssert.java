@@ -0,0 +1,105 @@
+/*
+ *  This file is part of Cubic World Generation, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2020 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.cubicgen.testutil;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiomeBlockReplacer;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.biome.Biome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ReplacerAssert {
+
+    private static final IBlockState[] BLOCKS = {
+            Blocks.AIR.getDefaultState(), Blocks.STONE.getDefaultState(), Blocks.WATER.getDefaultState(),
+            Blocks.GRASS.getDefaultState(), Blocks.DIRT.getDefaultState(), Blocks.SAND.getDefaultState()
+    };
+
+    /**
+     * Replacers of the default preset with exactly the given config class
+     */
+    public static List<IBiomeBlockReplacer> defaultReplacers(Class<? extends CustomGeneratorSettings.ReplacerConfig> configClass, long seed) {
+        List<IBiomeBlockReplacer> replacers = new ArrayList<>();
+        for (CustomGeneratorSettings.ReplacerConfig config : CustomGeneratorSettings.defaults().replacers) {
+            if (config.getClass() == configClass) {
+                replacers.add(IBiomeBlockReplacer.create(seed, config));
+            }
+        }
+        assertTrue(!replacers.isEmpty());
+        return replacers;
+    }
+
+    /**
+     * Picks random bounds, and for the ones {@link IBiomeBlockReplacer#isNoOp} returns true for, checks that
+     * {@link IBiomeBlockReplacer#getReplacedBlock} returns the previous block at random points within them.
+     */
+    public static void assertNoOpWithinBounds(IBiomeBlockReplacer replacer, Biome[] biomes, int minY, int maxY, Random rand) {
+        int noOpBounds = 0;
+        for (int i = 0; i < 20000; i++) {
+            int minBlockY = minY + rand.nextInt(maxY - minY + 1);
+            int maxBlockY = minBlockY + rand.nextInt(16);
+            double minDensity = (rand.nextDouble() - 0.5) * 60;
+            double maxDensity = minDensity + rand.nextDouble() * rand.nextDouble() * 30;
+            double maxGradient = rand.nextDouble() * rand.nextDouble() * 4;
+            if (!replacer.isNoOp(minBlockY, maxBlockY, minDensity, maxDensity, maxGradient)) {
+                continue;
+            }
+            noOpBounds++;
+            for (int j = 0; j < 20; j++) {
+                IBlockState previous = BLOCKS[rand.nextInt(BLOCKS.length)];
+                Biome biome = biomes[rand.nextInt(biomes.length)];
+                int x = rand.nextInt(4000) - 2000, y = minBlockY + rand.nextInt(maxBlockY - minBlockY + 1), z = rand.nextInt(4000) - 2000;
+                double dx = sample(rand, -maxGradient, maxGradient);
+                double dy = sample(rand, -maxGradient, maxGradient);
+                double dz = sample(rand, -maxGradient, maxGradient);
+                double density = sample(rand, minDensity, maxDensity);
+                assertSame("Replaced " + previous + " in " + biome.getBiomeName() + " at y=" + y + ", density=" + density
+                                + ", gradient=(" + dx + ", " + dy + ", " + dz + ")", previous,
+                        replacer.getReplacedBlock(previous, biome, x, y, z, dx, dy, dz, density));
+            }
+        }
+        // the test is meaningless if bounds are rarely skipped, and a replacer that is always a no-op is wrong
+        assertTrue("Too few no-op bounds: " + noOpBounds, noOpBounds > 1000);
+        assertTrue("Always a no-op", noOpBounds < 20000);
+    }
+
+    // bounds are inclusive, so ends of the range are picked more often
+    private static double sample(Random rand, double min, double max) {
+        switch (rand.nextInt(8)) {
+            case 0:
+                return min;
+            case 1:
+                return max;
+            default:
+                return min + (max - min) * rand.nextDouble();
+        }
+    }
+}
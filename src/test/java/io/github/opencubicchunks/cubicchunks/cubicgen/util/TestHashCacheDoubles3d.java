@@ -29,35 +29,38 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCacheDoubles;
+import io.github.opencubicchunks.cubicchunks.cubicgen.cache.HashCacheDoubles3d;
 import org.junit.Test;
 
 import java.util.Random;
-import java.util.function.ToDoubleFunction;
 
-public class TestHashCacheDoubles {
+public class TestHashCacheDoubles3d {
 
     @Test public void testSingleEntryOneGet() {
-        String key = "test";
-        ToDoubleFunction<String> source = mock(ToDoubleFunction.class);
-        when(source.applyAsDouble(key)).thenReturn(42.0);
-        HashCacheDoubles<String> cache = HashCacheDoubles.create(10, source);
-        assertEqualsExact(42.0, cache.get("test"));
-        assertEqualsExact(42.0, cache.get("test"));
-        verify(source, times(1)).applyAsDouble(key);
+        HashCacheDoubles3d.Source source = mock(HashCacheDoubles3d.Source.class);
+        when(source.get(1, 2, 3)).thenReturn(42.0);
+        HashCacheDoubles3d cache = HashCacheDoubles3d.create(10, (x, y, z) -> x + y + z, source);
+        assertEqualsExact(42.0, cache.get(1, 2, 3));
+        assertEqualsExact(42.0, cache.get(1, 2, 3));
+        verify(source, times(1)).get(1, 2, 3);
+    }
+
+    @Test public void testZeroKeyNotCachedInitially() {
+        HashCacheDoubles3d cache = HashCacheDoubles3d.create(10, (x, y, z) -> 0, (x, y, z) -> 42.0);
+        assertEqualsExact(42.0, cache.get(0, 0, 0));
     }
 
     @Test public void test() {
-        ToDoubleFunction<Integer> source = i -> i * i;
-        HashCacheDoubles<Integer> cache = HashCacheDoubles.create(50, source);
+        HashCacheDoubles3d.Source source = (x, y, z) -> x * 31.0 + y * 17.0 + z;
+        HashCacheDoubles3d cache = HashCacheDoubles3d.create(50, (x, y, z) -> x + z * 5 + y * 25, source);
         Random rand = new Random();
         for (int i = 0; i < 100000; i++) {
             int randBig = rand.nextInt();
             for (int j = 0; j < 100; j++) {
-                int randSmall = rand.nextInt(20);
-
-                int key = randBig + randSmall;
-                assertEqualsExact(source.applyAsDouble(key), cache.get(key));
+                int x = randBig + rand.nextInt(20);
+                int y = rand.nextInt(20) - 10;
+                int z = randBig - rand.nextInt(20);
+                assertEqualsExact(source.get(x, y, z), cache.get(x, y, z));
             }
         }
     }